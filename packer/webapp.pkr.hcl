@@ -178,6 +178,7 @@ build {
   #    ]
   #  }
 
+  # Empty placeholder; the user data fills it in at launch with the variables listed in webapp.service
   provisioner "shell" {
     inline = [
       "sudo touch /opt/webapp/.env",
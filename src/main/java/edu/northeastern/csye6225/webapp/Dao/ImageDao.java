@@ -1,12 +1,37 @@
 package edu.northeastern.csye6225.webapp.Dao;
 
+import edu.northeastern.csye6225.webapp.dto.ImageDTO;
+import edu.northeastern.csye6225.webapp.dto.ImageVersion;
 import edu.northeastern.csye6225.webapp.model.Image;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
-public interface ImageDao extends JpaRepository<Image, Long> {
+public interface ImageDao extends JpaRepository<Image, UUID> {
     Image findByUserId(UUID userId);
-}
\ No newline at end of file
+
+    boolean existsByUserId(UUID userId);
+
+    Optional<Image> findFirstByContentHash(String contentHash);
+
+    // The hashes among these that some image still points to
+    @Query("SELECT DISTINCT i.contentHash FROM Image i WHERE i.contentHash IN :hashes")
+    List<String> findReferencedContentHashes(@Param("hashes") Collection<String> hashes);
+
+    // Only the columns the /pic response needs; i.user.id reads the foreign key without loading the user
+    @Query("SELECT new edu.northeastern.csye6225.webapp.dto.ImageDTO(i.fileName, i.id, i.url, i.uploadDate, i.user.id, i.variants) "
+            + "FROM Image i WHERE i.user.id = :userId")
+    ImageDTO findDtoByUserId(@Param("userId") UUID userId);
+
+    // Conditional GETs of /pic compare against this before reading the rest of the row
+    @Query("SELECT new edu.northeastern.csye6225.webapp.dto.ImageVersion(i.id, i.uploadDate, i.variants) "
+            + "FROM Image i WHERE i.user.id = :userId")
+    ImageVersion findVersionByUserId(@Param("userId") UUID userId);
+}
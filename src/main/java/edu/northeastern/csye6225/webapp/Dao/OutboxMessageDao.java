@@ -0,0 +1,22 @@
+package edu.northeastern.csye6225.webapp.Dao;
+
+import edu.northeastern.csye6225.webapp.model.OutboxMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface OutboxMessageDao extends JpaRepository<OutboxMessage, Long> {
+
+    // Locks the due rows for this transaction; other instances skip them instead of waiting
+    @Query(value = "SELECT * FROM outbox_messages WHERE next_attempt_at <= :now ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<OutboxMessage> lockDue(@Param("now") Instant now, @Param("limit") int limit);
+
+    @Query("SELECT MIN(o.createdAt) FROM OutboxMessage o")
+    Instant findOldestCreatedAt();
+}
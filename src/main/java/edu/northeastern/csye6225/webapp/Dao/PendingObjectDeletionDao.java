@@ -0,0 +1,36 @@
+package edu.northeastern.csye6225.webapp.Dao;
+
+import edu.northeastern.csye6225.webapp.model.PendingObjectDeletion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface PendingObjectDeletionDao extends JpaRepository<PendingObjectDeletion, Long> {
+
+    // Locks the due rows for this transaction; other instances skip them instead of waiting
+    @Query(value = "SELECT * FROM pending_object_deletions WHERE next_attempt_at <= :now ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<PendingObjectDeletion> lockDue(@Param("now") Instant now, @Param("limit") int limit);
+
+    // Waits for a relay that is claiming the same rows; uploads of that content must not slip past it
+    @Query(value = "SELECT * FROM pending_object_deletions WHERE content_hash = :contentHash FOR UPDATE",
+            nativeQuery = true)
+    List<PendingObjectDeletion> lockByContentHash(@Param("contentHash") String contentHash);
+
+    // Claimed rows are left alone: the relay owns them until it settles
+    @Modifying
+    @Query("UPDATE PendingObjectDeletion p SET p.nextAttemptAt = :at "
+            + "WHERE p.contentHash = :contentHash AND p.claimedUntil IS NULL AND p.nextAttemptAt < :at")
+    int postponeUnclaimed(@Param("contentHash") String contentHash, @Param("at") Instant at);
+
+    boolean existsByContentHashAndClaimedUntilIsNull(String contentHash);
+
+    @Query("SELECT MIN(p.createdAt) FROM PendingObjectDeletion p")
+    Instant findOldestCreatedAt();
+}
@@ -1,8 +1,11 @@
 package edu.northeastern.csye6225.webapp.Dao;
 
 
+import edu.northeastern.csye6225.webapp.dto.UserDTO;
 import edu.northeastern.csye6225.webapp.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.UUID;
@@ -11,4 +14,9 @@ import java.util.UUID;
 public interface UserDao extends JpaRepository<User, UUID> {
     boolean existsByEmail(String email);
     User findByEmail(String username);
+
+    // Selects straight into the response shape: no entity, no password hash, no persistence-context snapshot
+    @Query("SELECT new edu.northeastern.csye6225.webapp.dto.UserDTO(u.id, u.email, u.firstName, u.lastName, "
+            + "u.accountCreated, u.accountUpdated, u.verified) FROM User u WHERE u.id = :id")
+    UserDTO findDtoById(@Param("id") UUID id);
 }
\ No newline at end of file
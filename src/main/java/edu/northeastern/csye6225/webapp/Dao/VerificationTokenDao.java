@@ -2,9 +2,11 @@ package edu.northeastern.csye6225.webapp.Dao;
 
 import edu.northeastern.csye6225.webapp.model.VerificationToken;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
 import java.util.Optional;
@@ -16,8 +18,17 @@ public interface VerificationTokenDao extends JpaRepository<VerificationToken, L
     // Find a token by its value
     Optional<VerificationToken> findByToken(String token);
 
+    // Token and its user in one round trip
+    @Query("SELECT t FROM VerificationToken t JOIN FETCH t.user WHERE t.token = :token")
+    Optional<VerificationToken> findWithUserByToken(@Param("token") String token);
+
     // Delete all tokens associated with a specific user ID
     void deleteAllByUser_Id(UUID userId); // Corrected to navigate the user relationship
 
+    // Bounded delete of expired rows, walking the expiry index; returns the number removed
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM verification_tokens WHERE expiry < :now ORDER BY expiry LIMIT :limit", nativeQuery = true)
+    int purgeExpired(@Param("now") Instant now, @Param("limit") int limit);
 
 }
\ No newline at end of file
@@ -2,8 +2,10 @@ package edu.northeastern.csye6225.webapp;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class WebappApplication {
 
 	public static void main(String[] args) {
@@ -1,29 +1,111 @@
 package edu.northeastern.csye6225.webapp.config;
 
-import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.timgroup.statsd.StatsDClient;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.ProfileCredentialsProvider;
+import software.amazon.awssdk.awscore.retry.AwsRetryStrategy;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.client.config.SdkAdvancedAsyncClientOption;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 import software.amazon.awssdk.services.sns.SnsClient;
 import software.amazon.awssdk.regions.Region;
 
+import java.time.Duration;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 @Configuration
 public class AwsConfig {
 
     @Value("${aws.region}")
     private String region;
 
-    @Bean
-    public AmazonS3 amazonS3() {
+    // Connections shared by all S3 calls; callers beyond this wait for one instead of opening more
+    @Value("${aws.s3.async.max-concurrency:64}")
+    private int s3MaxConcurrency;
+
+    @Value("${aws.s3.async.max-pending-acquires:1000}")
+    private int s3MaxPendingAcquires;
+
+    @Value("${aws.s3.async.connection-acquire-timeout-ms:5000}")
+    private long s3ConnectionAcquireTimeoutMillis;
+
+    @Value("${aws.s3.async.connection-timeout-ms:2000}")
+    private long s3ConnectionTimeoutMillis;
+
+    @Value("${aws.s3.async.read-timeout-ms:30000}")
+    private long s3ReadTimeoutMillis;
+
+    @Value("${aws.s3.async.write-timeout-ms:30000}")
+    private long s3WriteTimeoutMillis;
+
+    @Value("${aws.s3.async.max-attempts:3}")
+    private int s3MaxAttempts;
+
+    @Value("${aws.s3.async.api-call-timeout-ms:120000}")
+    private long s3ApiCallTimeoutMillis;
+
+    // Threads that run what callers chain onto S3 futures, kept off the Netty event loops
+    @Value("${aws.s3.async.completion-threads:16}")
+    private int s3CompletionThreads;
+
+    private ThreadPoolExecutor s3CompletionExecutor;
+
+    @Bean(destroyMethod = "close")
+    public S3AsyncClient s3AsyncClient(StatsDClient statsDClient) {
+        AtomicInteger threadCount = new AtomicInteger();
+        s3CompletionExecutor = new ThreadPoolExecutor(s3CompletionThreads, s3CompletionThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "s3-completion-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        s3CompletionExecutor.allowCoreThreadTimeOut(true);
+
         // Use the default credential provider chain
-        return AmazonS3ClientBuilder.standard()
-                .withRegion(region)
+        return S3AsyncClient.builder()
+                .region(Region.of(region))
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder()
+                        .maxConcurrency(s3MaxConcurrency)
+                        .maxPendingConnectionAcquires(s3MaxPendingAcquires)
+                        .connectionAcquisitionTimeout(Duration.ofMillis(s3ConnectionAcquireTimeoutMillis))
+                        .connectionTimeout(Duration.ofMillis(s3ConnectionTimeoutMillis))
+                        .readTimeout(Duration.ofMillis(s3ReadTimeoutMillis))
+                        .writeTimeout(Duration.ofMillis(s3WriteTimeoutMillis))
+                        .tcpKeepAlive(true))
+                .asyncConfiguration(async -> async.advancedOption(SdkAdvancedAsyncClientOption.FUTURE_COMPLETION_EXECUTOR, s3CompletionExecutor))
+                .overrideConfiguration(ClientOverrideConfiguration.builder()
+                        .retryStrategy(AwsRetryStrategy.standardRetryStrategy().toBuilder().maxAttempts(s3MaxAttempts).build())
+                        .apiCallTimeout(Duration.ofMillis(s3ApiCallTimeoutMillis))
+                        .addMetricPublisher(new StatsDMetricPublisher(statsDClient, "aws.s3"))
+                        .build())
+                .build();
+    }
+
+    // Signs direct-upload URLs locally; it never opens a connection
+    @Bean(destroyMethod = "close")
+    public S3Presigner s3Presigner() {
+        return S3Presigner.builder()
+                .region(Region.of(region))
                 .build();
     }
 
+    // The client does not shut down an executor it was handed
+    @PreDestroy
+    public void shutdown() {
+        if (s3CompletionExecutor != null) {
+            s3CompletionExecutor.shutdown();
+        }
+    }
+
     @Bean
     public SnsClient snsClient() {
         return SnsClient.builder()
@@ -31,4 +113,4 @@ public class AwsConfig {
                 //.credentialsProvider(ProfileCredentialsProvider.create("dev")) //testing
                 .build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,55 @@
+package edu.northeastern.csye6225.webapp.config;
+
+import edu.northeastern.csye6225.webapp.model.AuthenticatedUser;
+import edu.northeastern.csye6225.webapp.service.CredentialCache;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+
+/**
+ * Puts the {@link CredentialCache} in front of the DAO provider so a repeated
+ * Basic auth request skips the user lookup and the BCrypt comparison.
+ */
+public class CachingAuthenticationProvider implements AuthenticationProvider {
+
+    private final AuthenticationProvider delegate;
+    private final CredentialCache credentialCache;
+
+    public CachingAuthenticationProvider(AuthenticationProvider delegate, CredentialCache credentialCache) {
+        this.delegate = delegate;
+        this.credentialCache = credentialCache;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        String email = authentication.getName();
+        Object credentials = authentication.getCredentials();
+        if (credentials == null) {
+            return delegate.authenticate(authentication);
+        }
+
+        String password = credentials.toString();
+        UserDetails cached = credentialCache.get(email, password);
+        if (cached != null) {
+            return UsernamePasswordAuthenticationToken.authenticated(cached, null, cached.getAuthorities());
+        }
+
+        // Taken before the stored hash is read, so a password change committed meanwhile is noticed at put
+        long generation = credentialCache.generation(email);
+        Authentication result = delegate.authenticate(authentication);
+        if (result != null && result.getPrincipal() instanceof AuthenticatedUser authenticatedUser) {
+            // Never keep the password hash around once BCrypt is done with it
+            AuthenticatedUser principal = authenticatedUser.withoutPassword();
+            credentialCache.put(email, password, principal, generation);
+            return UsernamePasswordAuthenticationToken.authenticated(principal, null, principal.getAuthorities());
+        }
+        return result;
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return delegate.supports(authentication);
+    }
+}
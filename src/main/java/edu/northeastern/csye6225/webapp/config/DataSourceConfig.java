@@ -0,0 +1,108 @@
+package edu.northeastern.csye6225.webapp.config;
+
+import com.timgroup.statsd.StatsDClient;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Primary pool from spring.datasource.*, plus optional replica pools from db.replica.urls.
+ * Connections are fetched lazily, so by the time one is needed the transaction's
+ * read-only flag is known: read-only transactions go to a replica, everything else to
+ * the primary. With no replicas configured every connection comes from the primary.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private StatsDClient statsDClient;
+
+    @Value("${db.replica.urls:}")
+    private String replicaUrls;
+
+    @Value("${db.replica.username:${spring.datasource.username:}}")
+    private String replicaUsername;
+
+    @Value("${db.replica.password:${spring.datasource.password:}}")
+    private String replicaPassword;
+
+    @Value("${db.replica.max-lag-seconds:5}")
+    private long replicaMaxLagSeconds;
+
+    private HikariDataSource primaryPool;
+    private ReplicaRoutingDataSource replicaRouting;
+
+    @Bean(destroyMethod = "close")
+    public HikariDataSource primaryPool(DataSourceProperties properties) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        // Same spring.datasource.hikari.* settings Boot would have applied to its own pool
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        if (pool.getPoolName() == null) {
+            pool.setPoolName("primary");
+        }
+        // Copied to the replica pools by copyStateTo
+        pool.setMetricsTrackerFactory(new StatsDMetricsTrackerFactory(statsDClient));
+        this.primaryPool = pool;
+        return pool;
+    }
+
+    @Bean(destroyMethod = "close")
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryPool) {
+        List<HikariDataSource> replicas = new ArrayList<>();
+        int index = 0;
+        for (String url : replicaUrls.split(",")) {
+            if (url.isBlank()) {
+                continue;
+            }
+            HikariConfig config = new HikariConfig();
+            primaryPool.copyStateTo(config);
+            config.setPoolName("replica-" + (++index));
+            config.setJdbcUrl(url.trim());
+            config.setUsername(replicaUsername);
+            config.setPassword(replicaPassword);
+            config.setReadOnly(true);
+            // A replica that is down must not stop the application from starting
+            config.setInitializationFailTimeout(-1);
+            replicas.add(new HikariDataSource(config));
+        }
+        this.replicaRouting = new ReplicaRoutingDataSource(primaryPool, replicas, replicaMaxLagSeconds, statsDClient);
+        return replicaRouting;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryPool, ReplicaRoutingDataSource replicaRoutingDataSource) {
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(primaryPool);
+        proxy.setReadOnlyDataSource(replicaRoutingDataSource);
+        return proxy;
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${db.replica.probe-interval-ms:5000}")
+    public void probeReplicas() {
+        if (replicaRouting == null) {
+            return;
+        }
+        replicaRouting.probe();
+        ReplicaRoutingDataSource.recordPoolMetrics(primaryPool, statsDClient);
+        for (HikariDataSource replica : replicaRouting.getReplicaPools()) {
+            ReplicaRoutingDataSource.recordPoolMetrics(replica, statsDClient);
+        }
+    }
+}
@@ -2,41 +2,130 @@ package edu.northeastern.csye6225.webapp.config;
 import com.timgroup.statsd.StatsDClient;
 import edu.northeastern.csye6225.webapp.filter.GetRequestAuthFilter;
 import edu.northeastern.csye6225.webapp.filter.ResponseFilter;
+import edu.northeastern.csye6225.webapp.filter.RoutePolicy;
+import edu.northeastern.csye6225.webapp.filter.RoutePolicyTable;
+import edu.northeastern.csye6225.webapp.service.RequestRateLimiter;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
-import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
 import org.springframework.beans.factory.annotation.Autowired;
 
 @Configuration
 public class FilterConfig {
 
+    private static final String HEALTHZ = "/healthz";
+    private static final String REGISTER = "/api/v1/users/register";
+    private static final String VERIFY = "/api/v1/users/verify";
+    private static final String SELF = "/api/v1/users/self";
+    private static final String UPDATE = "/api/v1/users/update";
+    private static final String PIC = "/api/v1/users/pic";
+    private static final String PIC_UPLOAD_URL = "/api/v1/users/pic/upload-url";
+    private static final String PIC_COMPLETE = "/api/v1/users/pic/complete";
+    private static final String TOKEN = "/api/v1/users/token";
+    private static final String IMPORT = "/api/v1/users/import";
+
     @Autowired
     private DataSource source;
 
     @Autowired
     private StatsDClient statsDClient;
 
+    // Every route GetRequestAuthFilter knows about; anything else falls back to the per-method default
+    @Bean
+    public RoutePolicyTable routePolicyTable() {
+        return RoutePolicyTable.builder()
+                .defaultPolicy("GET", RoutePolicy.authenticated()
+                        .authHeaderRequired("GET request except verify requires Authorization header.").build())
+                .defaultPolicy("POST", RoutePolicy.authenticated()
+                        .authHeaderForbidden("POST request with Authorization header is not required.", "api.request.postWithAuthHeader.failure").build())
+                .defaultPolicy("PUT", RoutePolicy.authenticated()
+                        .authHeaderRequired("PUT request requires Authorization header.").build())
+                .defaultPolicy("DELETE", RoutePolicy.reject(HttpServletResponse.SC_METHOD_NOT_ALLOWED,
+                        "DELETE method is not allowed for this endpoint.", "api.request.delete.failure").build())
+                .defaultPolicy("PATCH", RoutePolicy.reject(HttpServletResponse.SC_METHOD_NOT_ALLOWED,
+                        "HTTP method PATCH is not supported.", "api.request.unsupportedMethod").build())
+                .defaultPolicy("HEAD", RoutePolicy.reject(HttpServletResponse.SC_METHOD_NOT_ALLOWED,
+                        null, "api.request.head.failure").build())
+                .defaultPolicy("OPTIONS", RoutePolicy.reject(HttpServletResponse.SC_METHOD_NOT_ALLOWED,
+                        null, "api.request.options.failure").build())
+                .defaultPolicy("TRACE", RoutePolicy.reject(HttpServletResponse.SC_METHOD_NOT_ALLOWED,
+                        "HTTP method TRACE is not supported.", "api.request.unsupportedMethod").build())
+
+                // /healthz reports database state itself; other methods get their 405 from the controller
+                .route("GET", HEALTHZ, RoutePolicy.publicRoute()
+                        .authHeaderForbidden("healthz request with Authorization header is not required.", "api.request.healthz.authHeaderPresent")
+                        .noPayload(null)
+                        .skipDatabaseCheck()
+                        .successMetric("api.request.healthz.success").build())
+                .route("POST", HEALTHZ, RoutePolicy.publicRoute().skipDatabaseCheck()
+                        .successMetric("api.request.healthz.success").build())
+                .route("PUT", HEALTHZ, RoutePolicy.publicRoute().skipDatabaseCheck()
+                        .successMetric("api.request.healthz.success").build())
+
+                .route("POST", REGISTER, RoutePolicy.publicRoute()
+                        .authHeaderForbidden("POST request with Authorization header is not required.", "api.request.postWithAuthHeader.failure")
+                        .rateLimit(RequestRateLimiter.REGISTER).build())
+                .route("GET", VERIFY, RoutePolicy.publicRoute()
+                        .authHeaderForbidden("Authorization header is not allowed for verify", "api.request.user.verifyWithAuthHeader.failure")
+                        .skipDatabaseCheck()
+                        .successMetric("api.request.user.verify").build())
+
+                .route("GET", SELF, RoutePolicy.authenticated()
+                        .authHeaderRequired("GET request except verify requires Authorization header.")
+                        .noPayload(null)
+                        .cacheControl(RoutePolicy.PRIVATE_REVALIDATE).build())
+                .route("PUT", UPDATE, RoutePolicy.authenticated()
+                        .authHeaderRequired("PUT request requires Authorization header.").build())
+
+                .route("POST", TOKEN, RoutePolicy.authenticated()
+                        .authHeaderRequired("POST request requires Authorization header.")
+                        .noPayload(null)
+                        .rateLimit(RequestRateLimiter.TOKEN).build())
+                .route("POST", IMPORT, RoutePolicy.authenticated()
+                        .authHeaderRequired("POST request requires Authorization header.").build())
+
+                .route("GET", PIC, RoutePolicy.authenticated()
+                        .authHeaderRequired("GET request requires Authorization header.")
+                        .noPayload("{\"error\":\"GET request should not contain a payload.\"}".getBytes(StandardCharsets.UTF_8))
+                        .cacheControl(RoutePolicy.PRIVATE_REVALIDATE).build())
+                .route("POST", PIC, RoutePolicy.authenticated()
+                        .authHeaderRequired("POST request requires Authorization header.").build())
+                .route("POST", PIC_UPLOAD_URL, RoutePolicy.authenticated()
+                        .authHeaderRequired("POST request requires Authorization header.").build())
+                .route("POST", PIC_COMPLETE, RoutePolicy.authenticated()
+                        .authHeaderRequired("POST request requires Authorization header.").build())
+                .route("DELETE", PIC, RoutePolicy.authenticated()
+                        .authHeaderRequired("DELETE request requires Authorization header.")
+                        .noPayload("{\"error\":\"DELETE request should not contain a payload.\"}".getBytes(StandardCharsets.UTF_8)).build())
+                .build();
+    }
+
+    @Bean
+    public GetRequestAuthFilter getRequestAuthFilter(RoutePolicyTable routePolicyTable) {
+        return new GetRequestAuthFilter(statsDClient, routePolicyTable);
+    }
+
+    // The filter runs inside the Spring Security chain (see SecurityConfig), so keep the
+    // servlet container from registering it a second time
     @Bean
-    public FilterRegistrationBean<GetRequestAuthFilter> registerGetRequestAuthFilter() {
-        FilterRegistrationBean<GetRequestAuthFilter> registrationBean = new FilterRegistrationBean<>();
-        //registrationBean.setFilter(new GetRequestAuthFilter());
-        registrationBean.setFilter(new GetRequestAuthFilter(statsDClient));
-        registrationBean.addUrlPatterns("/*"); // Apply to all URL patterns or specify a path
-        registrationBean.setOrder(1);
+    public FilterRegistrationBean<GetRequestAuthFilter> registerGetRequestAuthFilter(GetRequestAuthFilter getRequestAuthFilter) {
+        FilterRegistrationBean<GetRequestAuthFilter> registrationBean = new FilterRegistrationBean<>(getRequestAuthFilter);
+        registrationBean.setEnabled(false);
         return registrationBean;
     }
 
     @Bean
-    public FilterRegistrationBean<ResponseFilter> headerFilter(){
+    public FilterRegistrationBean<ResponseFilter> headerFilter(RoutePolicyTable routePolicyTable){
         FilterRegistrationBean<ResponseFilter> filter = new FilterRegistrationBean<>();
         //filter.setFilter(new ResponseFilter());
-        filter.setFilter(new ResponseFilter(statsDClient));
+        filter.setFilter(new ResponseFilter(statsDClient, routePolicyTable));
         filter.addUrlPatterns("/*");
         filter.setOrder(2);
         return  filter;
     }
 
 
-}
\ No newline at end of file
+}
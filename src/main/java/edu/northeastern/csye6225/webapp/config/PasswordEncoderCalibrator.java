@@ -0,0 +1,150 @@
+package edu.northeastern.csye6225.webapp.config;
+
+import com.timgroup.statsd.StatsDClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds the application's password encoder with a work factor measured on the current
+ * machine, so hashing cost tracks {@code auth.password.target-millis} instead of the
+ * instance type. Hashes are stored with an algorithm prefix: {bcrypt} (the cost is in the
+ * hash itself) or {pbkdf2-<iterations>}, since PBKDF2 output does not record its iteration
+ * count. Legacy unprefixed values are treated as BCrypt, legacy {pbkdf2} values as
+ * {@link #MIN_PBKDF2_ITERATIONS}; anything not written with today's parameters is rehashed
+ * on the next login.
+ */
+public final class PasswordEncoderCalibrator {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordEncoderCalibrator.class);
+
+    public static final String BCRYPT = "bcrypt";
+    public static final String PBKDF2 = "pbkdf2";
+
+    // Never go below the library defaults, even on very slow hardware
+    static final int MIN_BCRYPT_STRENGTH = 10;
+    static final int MAX_BCRYPT_STRENGTH = 16;
+    static final int MIN_PBKDF2_ITERATIONS = 310_000;
+    private static final int PBKDF2_PROBE_ITERATIONS = 100_000;
+    private static final int PBKDF2_SALT_LENGTH = 16;
+
+    private static final String PROBE_PASSWORD = "calibration-probe-password";
+
+    private PasswordEncoderCalibrator() {
+    }
+
+    public static PasswordEncoder calibrate(String algorithm, long targetMillis, StatsDClient statsDClient) {
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        // Fixed forever: hashes written under this id carry no iteration count
+        encoders.put(PBKDF2, pbkdf2(MIN_PBKDF2_ITERATIONS));
+
+        String idForEncode;
+        if (PBKDF2.equals(algorithm)) {
+            int iterations = calibratePbkdf2(targetMillis);
+            statsDClient.recordGaugeValue("auth.password.pbkdf2.iterations", iterations);
+            idForEncode = pbkdf2Id(iterations);
+            encoders.put(idForEncode, pbkdf2(iterations));
+            encoders.put(BCRYPT, new BCryptPasswordEncoder(MIN_BCRYPT_STRENGTH));
+        } else if (BCRYPT.equals(algorithm)) {
+            int strength = calibrateBcrypt(targetMillis);
+            statsDClient.recordGaugeValue("auth.password.bcrypt.strength", strength);
+            idForEncode = BCRYPT;
+            encoders.put(BCRYPT, new BCryptPasswordEncoder(strength));
+        } else {
+            throw new IllegalArgumentException("Unsupported auth.password.algorithm: " + algorithm);
+        }
+
+        // Ids not registered above always need an upgrade, so the delegate only has to match them
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(idForEncode, encoders);
+        encoder.setDefaultPasswordEncoderForMatches(new EarlierParametersMatcher(encoders.get(BCRYPT)));
+        return encoder;
+    }
+
+    static String pbkdf2Id(int iterations) {
+        return PBKDF2 + "-" + iterations;
+    }
+
+    // Highest cost whose hash still fits in the budget; each step doubles the work
+    static int calibrateBcrypt(long targetMillis) {
+        int chosen = MIN_BCRYPT_STRENGTH;
+        for (int strength = MIN_BCRYPT_STRENGTH; strength <= MAX_BCRYPT_STRENGTH; strength++) {
+            long millis = measure(new BCryptPasswordEncoder(strength));
+            logger.info("BCrypt strength {} takes {} ms", strength, millis);
+            if (millis > targetMillis) {
+                break;
+            }
+            chosen = strength;
+        }
+        logger.info("Using BCrypt strength {} for a {} ms target", chosen, targetMillis);
+        return chosen;
+    }
+
+    // PBKDF2 cost is linear in the iteration count, so one probe is enough to scale from
+    static int calibratePbkdf2(long targetMillis) {
+        long millis = Math.max(1, measure(pbkdf2(PBKDF2_PROBE_ITERATIONS)));
+        long iterations = PBKDF2_PROBE_ITERATIONS * targetMillis / millis;
+        int chosen = (int) Math.max(MIN_PBKDF2_ITERATIONS, Math.min(Integer.MAX_VALUE, iterations));
+        logger.info("Using {} PBKDF2 iterations for a {} ms target", chosen, targetMillis);
+        return chosen;
+    }
+
+    static Pbkdf2PasswordEncoder pbkdf2(int iterations) {
+        return new Pbkdf2PasswordEncoder("", PBKDF2_SALT_LENGTH, iterations,
+                Pbkdf2PasswordEncoder.SecretKeyFactoryAlgorithm.PBKDF2WithHmacSHA256);
+    }
+
+    // Warm up once, then take the best of two runs to keep JIT and GC noise out
+    static long measure(PasswordEncoder encoder) {
+        encoder.encode(PROBE_PASSWORD);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 2; i++) {
+            long start = System.nanoTime();
+            encoder.encode(PROBE_PASSWORD);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1_000_000;
+    }
+
+    /**
+     * Matches hashes whose id is not registered for this run: {pbkdf2-<n>} from an earlier
+     * calibration, and unprefixed values from before prefixes were introduced (plain BCrypt).
+     */
+    private static final class EarlierParametersMatcher implements PasswordEncoder {
+
+        private static final String PBKDF2_PREFIX = "{" + PBKDF2 + "-";
+
+        private final PasswordEncoder bcrypt;
+
+        private EarlierParametersMatcher(PasswordEncoder bcrypt) {
+            this.bcrypt = bcrypt;
+        }
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            throw new UnsupportedOperationException("Only used to match existing hashes");
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            if (encodedPassword == null) {
+                return false;
+            }
+            if (!encodedPassword.startsWith(PBKDF2_PREFIX)) {
+                return bcrypt.matches(rawPassword, encodedPassword);
+            }
+            int end = encodedPassword.indexOf('}');
+            try {
+                int iterations = Integer.parseInt(encodedPassword.substring(PBKDF2_PREFIX.length(), end));
+                return iterations > 0 && pbkdf2(iterations).matches(rawPassword, encodedPassword.substring(end + 1));
+            } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package edu.northeastern.csye6225.webapp.config;
+
+import com.timgroup.statsd.StatsDClient;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Connection source for read-only transactions. Hands out connections from healthy
+ * replicas in round-robin order and falls back to the primary when none is healthy or
+ * when the current request is pinned to the primary (read-your-writes).
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private static final ThreadLocal<Boolean> PINNED_TO_PRIMARY = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final long maxLagSeconds;
+    private final StatsDClient statsDClient;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<HikariDataSource> replicaPools, long maxLagSeconds, StatsDClient statsDClient) {
+        this.primary = primary;
+        this.replicas = new ArrayList<>(replicaPools.size());
+        for (HikariDataSource pool : replicaPools) {
+            replicas.add(new Replica(pool));
+        }
+        this.maxLagSeconds = maxLagSeconds;
+        this.statsDClient = statsDClient;
+    }
+
+    // Sends every read on this thread to the primary until clearPin()
+    public static void pinToPrimary() {
+        PINNED_TO_PRIMARY.set(Boolean.TRUE);
+    }
+
+    public static void clearPin() {
+        PINNED_TO_PRIMARY.remove();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (PINNED_TO_PRIMARY.get() == null) {
+            int size = replicas.size();
+            int start = size == 0 ? 0 : Math.floorMod(next.getAndIncrement(), size);
+            for (int i = 0; i < size; i++) {
+                Replica replica = replicas.get((start + i) % size);
+                if (!replica.healthy) {
+                    continue;
+                }
+                try {
+                    Connection connection = replica.pool.getConnection();
+                    statsDClient.incrementCounter("db.route.replica");
+                    return connection;
+                } catch (SQLException e) {
+                    // Take it out of rotation now rather than waiting for the next probe
+                    markUnhealthy(replica, e.getMessage());
+                }
+            }
+        }
+        statsDClient.incrementCounter("db.route.primary");
+        return primary.getConnection();
+    }
+
+    // Replica pools only know their own credentials, so an explicit login always goes to the primary
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        statsDClient.incrementCounter("db.route.primary");
+        return primary.getConnection(username, password);
+    }
+
+    public boolean hasHealthyReplica() {
+        return replicas.stream().anyMatch(replica -> replica.healthy);
+    }
+
+    // Validity plus replication lag; run from the scheduler in DataSourceConfig
+    public void probe() {
+        for (Replica replica : replicas) {
+            String problem = check(replica);
+            if (problem == null && !replica.healthy) {
+                replica.healthy = true;
+                logger.info("Replica {} back in rotation", replica.name());
+                statsDClient.incrementCounter("db.replica." + replica.name() + ".up");
+            } else if (problem != null && replica.healthy) {
+                markUnhealthy(replica, problem);
+            }
+            statsDClient.recordGaugeValue("db.replica." + replica.name() + ".healthy", replica.healthy ? 1 : 0);
+        }
+    }
+
+    private String check(Replica replica) {
+        try (Connection connection = replica.pool.getConnection()) {
+            if (!connection.isValid(1)) {
+                return "connection is not valid";
+            }
+            Long lag = replicationLag(connection);
+            if (lag != null) {
+                statsDClient.recordGaugeValue("db.replica." + replica.name() + ".lag.seconds", lag);
+                if (lag > maxLagSeconds) {
+                    return "replication lag " + lag + " s";
+                }
+            }
+            return null;
+        } catch (SQLException e) {
+            return e.getMessage();
+        }
+    }
+
+    // Null when lag is unknown (no REPLICATION CLIENT privilege, or not a replica at all)
+    private Long replicationLag(Connection connection) {
+        try (Statement statement = connection.createStatement();
+             ResultSet status = statement.executeQuery("SHOW REPLICA STATUS")) {
+            if (!status.next()) {
+                return null;
+            }
+            long lag = status.getLong("Seconds_Behind_Source");
+            return status.wasNull() ? Long.MAX_VALUE : lag;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    private void markUnhealthy(Replica replica, String reason) {
+        if (replica.healthy) {
+            replica.healthy = false;
+            logger.warn("Replica {} out of rotation: {}", replica.name(), reason);
+            statsDClient.incrementCounter("db.replica." + replica.name() + ".down");
+        }
+    }
+
+    public List<HikariDataSource> getReplicaPools() {
+        return replicas.stream().map(replica -> replica.pool).toList();
+    }
+
+    public static void recordPoolMetrics(HikariDataSource pool, StatsDClient statsDClient) {
+        HikariPoolMXBean bean = pool.getHikariPoolMXBean();
+        if (bean == null) {
+            return;
+        }
+        String prefix = "db.pool." + pool.getPoolName();
+        statsDClient.recordGaugeValue(prefix + ".active", bean.getActiveConnections());
+        statsDClient.recordGaugeValue(prefix + ".idle", bean.getIdleConnections());
+        statsDClient.recordGaugeValue(prefix + ".total", bean.getTotalConnections());
+        statsDClient.recordGaugeValue(prefix + ".waiting", bean.getThreadsAwaitingConnection());
+    }
+
+    @Override
+    public void close() {
+        replicas.forEach(replica -> replica.pool.close());
+    }
+
+    private static final class Replica {
+        private final HikariDataSource pool;
+        private volatile boolean healthy = true;
+
+        private Replica(HikariDataSource pool) {
+            this.pool = pool;
+        }
+
+        private String name() {
+            return pool.getPoolName();
+        }
+    }
+}
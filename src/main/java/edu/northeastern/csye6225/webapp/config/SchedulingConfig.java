@@ -0,0 +1,38 @@
+package edu.northeastern.csye6225.webapp.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.task.ThreadPoolTaskSchedulerBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Splits {@code @Scheduled} work across two pools. The outbox and S3 deletion relays
+ * wait on SNS and S3 and run on {@code relayScheduler}; everything else (replica probe,
+ * token wheel, cache and rate-limit sweeps) shares the default {@code taskScheduler},
+ * sized by {@code spring.task.scheduling.pool.size}, so a slow relay cannot stall it.
+ */
+@Configuration
+public class SchedulingConfig {
+
+    public static final String RELAY_SCHEDULER = "relayScheduler";
+
+    @Value("${scheduling.relay.pool-size:2}")
+    private int relayPoolSize;
+
+    // Defining any TaskScheduler switches off Boot's own, so the default one is declared here too
+    @Bean(name = "taskScheduler")
+    public ThreadPoolTaskScheduler taskScheduler(ThreadPoolTaskSchedulerBuilder builder) {
+        return builder.build();
+    }
+
+    @Bean(name = RELAY_SCHEDULER)
+    public ThreadPoolTaskScheduler relayScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(relayPoolSize);
+        scheduler.setThreadNamePrefix("relay-");
+        scheduler.setDaemon(true);
+        scheduler.setWaitForTasksToCompleteOnShutdown(false);
+        return scheduler;
+    }
+}
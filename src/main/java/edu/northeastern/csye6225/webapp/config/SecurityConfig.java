@@ -1,8 +1,13 @@
 package edu.northeastern.csye6225.webapp.config;
 
 import com.timgroup.statsd.StatsDClient;
+import edu.northeastern.csye6225.webapp.filter.BearerTokenAuthenticationFilter;
 import edu.northeastern.csye6225.webapp.filter.GetRequestAuthFilter;
+import edu.northeastern.csye6225.webapp.service.AccessTokenService;
+import edu.northeastern.csye6225.webapp.service.CredentialCache;
+import edu.northeastern.csye6225.webapp.service.IdentityContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -13,8 +18,8 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
@@ -29,15 +34,43 @@ public class SecurityConfig {
     @Autowired
     private UserDetailsService userDetailsService;
 
+    @Autowired
+    private UserDetailsPasswordService userDetailsPasswordService;
+
+    @Value("${auth.password.algorithm:bcrypt}")
+    private String passwordAlgorithm;
+
+    @Value("${auth.password.target-millis:250}")
+    private long passwordTargetMillis;
+
+    // 0 means one hashing thread per core
+    @Value("${auth.hashing.threads:0}")
+    private int hashingThreads;
+
+    @Value("${auth.hashing.queue-capacity:64}")
+    private int hashingQueueCapacity;
+
+    @Value("${auth.hashing.timeout-millis:5000}")
+    private long hashingTimeoutMillis;
+
+    @Value("${auth.hashing.retry-after-seconds:1}")
+    private long hashingRetryAfterSeconds;
+
     @Autowired
     private StatsDClient statsDClient;
 
+    @Autowired
+    private CredentialCache credentialCache;
+
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, GetRequestAuthFilter getRequestAuthFilter,
+                                                   AccessTokenService accessTokenService, IdentityContext identityContext) throws Exception {
         //builder pattern
         http
                 .csrf(AbstractHttpConfigurer::disable)
-                .addFilterBefore(new GetRequestAuthFilter(statsDClient), UsernamePasswordAuthenticationFilter.class)
+                .addFilterBefore(getRequestAuthFilter, UsernamePasswordAuthenticationFilter.class)
+                // Bearer tokens are checked before Basic auth so they never reach the DAO provider
+                .addFilterAfter(new BearerTokenAuthenticationFilter(accessTokenService, identityContext), GetRequestAuthFilter.class)
                 .authorizeHttpRequests(auth -> auth
                         //.requestMatchers("/api/v1/users/register", "/healthz").permitAll()
                         .requestMatchers( "/healthz").permitAll()
@@ -76,7 +109,10 @@ public class SecurityConfig {
 
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        PasswordEncoder calibrated = PasswordEncoderCalibrator.calibrate(passwordAlgorithm, passwordTargetMillis, statsDClient);
+        int threads = hashingThreads > 0 ? hashingThreads : Runtime.getRuntime().availableProcessors();
+        return new BoundedPasswordEncoder(calibrated, threads, hashingQueueCapacity,
+                hashingTimeoutMillis, hashingRetryAfterSeconds, statsDClient);
     }
 
 
@@ -85,7 +121,9 @@ public class SecurityConfig {
         DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
         provider.setPasswordEncoder(passwordEncoder());
         provider.setUserDetailsService(userDetailsService);
-        return provider;
+        // Rehashes stored passwords whose algorithm or cost is out of date after a successful login
+        provider.setUserDetailsPasswordService(userDetailsPasswordService);
+        return new CachingAuthenticationProvider(provider, credentialCache);
     }
 
 
@@ -0,0 +1,79 @@
+package edu.northeastern.csye6225.webapp.config;
+
+import com.timgroup.statsd.StatsDClient;
+import software.amazon.awssdk.core.metrics.CoreMetric;
+import software.amazon.awssdk.http.HttpMetric;
+import software.amazon.awssdk.metrics.MetricCollection;
+import software.amazon.awssdk.metrics.MetricPublisher;
+import software.amazon.awssdk.metrics.SdkMetric;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Forwards the SDK's per-call metrics to StatsD: call latency and retries per operation, and
+ * the connection pool's leased, available and pending counts as seen by the last attempt.
+ */
+public class StatsDMetricPublisher implements MetricPublisher {
+
+    private final StatsDClient statsDClient;
+    private final String prefix;
+
+    public StatsDMetricPublisher(StatsDClient statsDClient, String prefix) {
+        this.statsDClient = statsDClient;
+        this.prefix = prefix;
+    }
+
+    @Override
+    public void publish(MetricCollection apiCall) {
+        String operation = first(apiCall, CoreMetric.OPERATION_NAME);
+        String metric = prefix + "." + (operation == null ? "unknown" : operation);
+
+        Duration duration = first(apiCall, CoreMetric.API_CALL_DURATION);
+        if (duration != null) {
+            statsDClient.recordExecutionTime(metric + ".time.milliseconds", duration.toMillis());
+        }
+        Integer retries = first(apiCall, CoreMetric.RETRY_COUNT);
+        if (retries != null && retries > 0) {
+            statsDClient.count(metric + ".retries", retries);
+        }
+        if (Boolean.FALSE.equals(first(apiCall, CoreMetric.API_CALL_SUCCESSFUL))) {
+            statsDClient.incrementCounter(metric + ".error");
+        }
+
+        publishPool(apiCall);
+    }
+
+    // Attempt -> HTTP client collections carry the pool numbers; the last one is the freshest
+    private void publishPool(MetricCollection collection) {
+        Integer leased = first(collection, HttpMetric.LEASED_CONCURRENCY);
+        if (leased != null) {
+            statsDClient.recordGaugeValue(prefix + ".pool.leased", leased);
+            Integer available = first(collection, HttpMetric.AVAILABLE_CONCURRENCY);
+            if (available != null) {
+                statsDClient.recordGaugeValue(prefix + ".pool.available", available);
+            }
+            Integer pending = first(collection, HttpMetric.PENDING_CONCURRENCY_ACQUIRES);
+            if (pending != null) {
+                statsDClient.recordGaugeValue(prefix + ".pool.pending", pending);
+            }
+            Duration acquire = first(collection, HttpMetric.CONCURRENCY_ACQUIRE_DURATION);
+            if (acquire != null) {
+                statsDClient.recordExecutionTime(prefix + ".pool.acquire.time.milliseconds", acquire.toMillis());
+            }
+        }
+        List<MetricCollection> children = collection.children();
+        if (!children.isEmpty()) {
+            publishPool(children.get(children.size() - 1));
+        }
+    }
+
+    private static <T> T first(MetricCollection collection, SdkMetric<T> metric) {
+        List<T> values = collection.metricValues(metric);
+        return values.isEmpty() ? null : values.get(0);
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,62 @@
+package edu.northeastern.csye6225.webapp.config;
+
+import com.timgroup.statsd.StatsDClient;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports how long each Hikari connection was borrowed for, how long it took to get one and
+ * how often that timed out. Hold times are also summed per thread, so a filter can report
+ * the total a single request kept connections out of the pool.
+ */
+public class StatsDMetricsTrackerFactory implements MetricsTrackerFactory {
+
+    private static final ThreadLocal<long[]> REQUEST_HOLD = new ThreadLocal<>();
+
+    private final StatsDClient statsDClient;
+
+    public StatsDMetricsTrackerFactory(StatsDClient statsDClient) {
+        this.statsDClient = statsDClient;
+    }
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        String prefix = "db.pool." + poolName;
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                statsDClient.recordExecutionTime(prefix + ".acquire.time.milliseconds", TimeUnit.NANOSECONDS.toMillis(elapsedAcquiredNanos));
+            }
+
+            // Called on the thread returning the connection, which is the one that used it
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                statsDClient.recordExecutionTime(prefix + ".hold.time.milliseconds", elapsedBorrowedMillis);
+                long[] hold = REQUEST_HOLD.get();
+                if (hold != null) {
+                    hold[0] += elapsedBorrowedMillis;
+                    hold[1]++;
+                }
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                statsDClient.incrementCounter(prefix + ".acquire.timeout");
+            }
+        };
+    }
+
+    public static void beginRequest() {
+        REQUEST_HOLD.set(new long[2]);
+    }
+
+    // {millis held, connections borrowed} on this thread since beginRequest
+    public static long[] endRequest() {
+        long[] hold = REQUEST_HOLD.get();
+        REQUEST_HOLD.remove();
+        return hold == null ? new long[2] : hold;
+    }
+}
@@ -0,0 +1,88 @@
+package edu.northeastern.csye6225.webapp.config;
+
+import com.timgroup.statsd.StatsDClient;
+import edu.northeastern.csye6225.webapp.Dao.VerificationTokenDao;
+import edu.northeastern.csye6225.webapp.service.InMemoryVerificationTokenStore;
+import edu.northeastern.csye6225.webapp.service.JpaVerificationTokenStore;
+import edu.northeastern.csye6225.webapp.service.VerificationTokenStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Instant;
+
+/**
+ * Chooses the verification token store (verification.token-store=memory|jpa) and runs
+ * its housekeeping: the timing-wheel tick for the in-memory store and the bounded purge
+ * of expired rows, which applies to both.
+ */
+@Configuration
+public class VerificationTokenStoreConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(VerificationTokenStoreConfig.class);
+
+    @Autowired
+    private VerificationTokenDao verificationTokenDao;
+
+    @Autowired
+    private StatsDClient statsDClient;
+
+    @Value("${verification.token-store:memory}")
+    private String storeType;
+
+    @Value("${verification.token-store.tick-ms:1000}")
+    private long tickMillis;
+
+    @Value("${verification.token-store.purge-batch-size:500}")
+    private int purgeBatchSize;
+
+    @Value("${verification.token-store.purge-max-batches:20}")
+    private int purgeMaxBatches;
+
+    private JpaVerificationTokenStore jpaStore;
+    private InMemoryVerificationTokenStore memoryStore;
+
+    @Bean
+    public VerificationTokenStore verificationTokenStore() {
+        jpaStore = new JpaVerificationTokenStore(verificationTokenDao);
+        if ("jpa".equalsIgnoreCase(storeType)) {
+            return jpaStore;
+        }
+        if (!"memory".equalsIgnoreCase(storeType)) {
+            throw new IllegalStateException("Unknown verification.token-store: " + storeType);
+        }
+        memoryStore = new InMemoryVerificationTokenStore(jpaStore, statsDClient, tickMillis);
+        return memoryStore;
+    }
+
+    @Scheduled(fixedRateString = "${verification.token-store.tick-ms:1000}")
+    public void tick() {
+        if (memoryStore != null) {
+            memoryStore.advance();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${verification.token-store.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        if (jpaStore == null) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            int purged = jpaStore.purgeExpired(Instant.now(), purgeBatchSize, purgeMaxBatches);
+            statsDClient.count("verification.token.purged", purged);
+            if (purged > 0) {
+                logger.info("Purged {} expired verification tokens", purged);
+            }
+        } catch (RuntimeException e) {
+            // Next run picks up where this one stopped
+            logger.warn("Verification token purge failed: {}", e.getMessage());
+        } finally {
+            statsDClient.recordExecutionTime("verification.token.purge.time.milliseconds", System.currentTimeMillis() - start);
+        }
+    }
+}
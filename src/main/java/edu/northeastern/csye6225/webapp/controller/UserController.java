@@ -1,27 +1,43 @@
 package edu.northeastern.csye6225.webapp.controller;
 
 import com.timgroup.statsd.StatsDClient;
+import edu.northeastern.csye6225.webapp.dto.DirectUploadRequest;
+import edu.northeastern.csye6225.webapp.dto.ETags;
+import edu.northeastern.csye6225.webapp.exception.PreconditionFailedException;
 import edu.northeastern.csye6225.webapp.exception.ResourceNotFoundException;
+import edu.northeastern.csye6225.webapp.exception.ServiceBusyException;
+import edu.northeastern.csye6225.webapp.model.AuthenticatedUser;
 import edu.northeastern.csye6225.webapp.model.User;
+import edu.northeastern.csye6225.webapp.service.AccessTokenService;
+import edu.northeastern.csye6225.webapp.service.BulkUserImportService;
 import edu.northeastern.csye6225.webapp.service.UserService;
 import edu.northeastern.csye6225.webapp.dto.UserDTO;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import jakarta.servlet.http.HttpServletRequest;
-import org.springframework.security.core.userdetails.UserDetails;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.web.multipart.MultipartFile;
 import edu.northeastern.csye6225.webapp.dto.ImageDTO;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Pattern;
 
 @RestController
 @RequestMapping("/api/v1/users")
@@ -30,9 +46,25 @@ public class UserController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private AccessTokenService accessTokenService;
+
+    @Autowired
+    private BulkUserImportService bulkUserImportService;
+
     @Autowired
     private StatsDClient statsDClient;
 
+    @Value("${import.admin-emails:}")
+    private String importAdminEmails;
+
+    // Enforced by S3 through the signed Content-Length, not by this server
+    @Value("${image.direct-upload.max-bytes:20971520}")
+    private long maxDirectUploadBytes;
+
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-fA-F]{64}");
+    private static final Set<String> DIRECT_UPLOAD_TYPES = Set.of("image/png", "image/jpeg");
+
     private static final Logger logger = LoggerFactory.getLogger(UserController.class);
 
     @PostMapping(value = "/register", produces = "application/json")
@@ -116,28 +148,95 @@ public class UserController {
     }
 
 
+    // Exchanges Basic credentials for a short-lived bearer token, so later calls skip BCrypt and MySQL
+    @PostMapping(value = "/token", produces = "application/json")
+    public ResponseEntity<Map<String, Object>> issueToken(@AuthenticationPrincipal AuthenticatedUser principal, HttpServletRequest request) {
+        statsDClient.incrementCounter("api.user.token");
+        Map<String, Object> response = new HashMap<>();
+
+        String authorizationHeader = request.getHeader("Authorization");
+        if (request.getQueryString() != null || authorizationHeader == null || !authorizationHeader.startsWith("Basic ")) {
+            response.put("error", "A token can only be requested with Basic credentials.");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(response);
+        }
+
+        response.put("token", accessTokenService.issue(principal));
+        response.put("tokenType", "Bearer");
+        response.put("expiresIn", accessTokenService.getTtlSeconds());
+        return ResponseEntity.ok()
+                .body(response);
+    }
+
+    // Streams one NDJSON result line per input row as batches complete; restricted to import.admin-emails
+    @PostMapping(value = "/import", consumes = {"application/x-ndjson", "text/csv"}, produces = "application/x-ndjson")
+    public void importUsers(@AuthenticationPrincipal AuthenticatedUser principal, HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
+        statsDClient.incrementCounter("api.user.importRequest");
+
+        if (!importAdmins().contains(principal.email().toLowerCase(Locale.ROOT))) {
+            statsDClient.incrementCounter("api.user.import.forbidden");
+            response.setStatus(HttpStatus.FORBIDDEN.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getOutputStream().write("{\"error\":\"Bulk import is restricted to administrators.\"}".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+
+        BulkUserImportService.Format format = request.getContentType().startsWith("text/csv")
+                ? BulkUserImportService.Format.CSV
+                : BulkUserImportService.Format.NDJSON;
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        BulkUserImportService.Summary summary = bulkUserImportService.importUsers(request.getInputStream(), format, response.getOutputStream());
+        logger.info("User {} imported {} users ({} rejected)", principal.email(), summary.created(), summary.rejected());
+    }
+
+    private Set<String> importAdmins() {
+        Set<String> admins = new HashSet<>();
+        for (String email : importAdminEmails.split(",")) {
+            if (!email.isBlank()) {
+                admins.add(email.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        return admins;
+    }
+
     @GetMapping("/self")
-    public ResponseEntity<UserDTO> getUser(@AuthenticationPrincipal UserDetails userDetails, HttpServletRequest request) {
+    public ResponseEntity<UserDTO> getUser(@AuthenticationPrincipal AuthenticatedUser principal, HttpServletRequest request) {
         statsDClient.incrementCounter("api.user.getSelf");
         if (request.getContentLength() > 0 || request.getQueryString() != null) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(null);  // Return 400 Bad Request
         }
 
-        User user = userService.findByEmail(userDetails.getUsername());
-        if (user == null) {
+        // The version stamp usually comes from UserCache, so an unchanged resource costs no query or serialization
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            String currentETag = userService.findUserETag(principal.email());
+            if (ETags.noneMatchHits(ifNoneMatch, currentETag)) {
+                statsDClient.incrementCounter("api.user.getSelf.notModified");
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(currentETag)
+                        .build();
+            }
+        }
+
+        // One projection query by id: no entity, no password hash, no lazy image lookup
+        UserDTO userDTO = userService.findUserDTO(principal.id());
+        if (userDTO == null) {
             statsDClient.incrementCounter("api.user.getSelf.failure");
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .build();
         }
 
-        UserDTO userDTO = userService.convertToDTO(user);
         return ResponseEntity.ok()
+                .eTag(ETags.forUser(userDTO))
                 .body(userDTO);
     }
 
     @PutMapping(value = "/update", consumes = "application/json", produces = "application/json")
-    public ResponseEntity<UserDTO> updateUser(@RequestBody User user, @AuthenticationPrincipal UserDetails userDetails, HttpServletRequest request) {
+    public ResponseEntity<UserDTO> updateUser(@RequestBody User user, @AuthenticationPrincipal AuthenticatedUser principal, HttpServletRequest request) {
         statsDClient.incrementCounter("api.user.update");
         if (request.getQueryString() != null) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -149,24 +248,32 @@ public class UserController {
                     .body(null);
         }
 
-        if (!userDetails.getUsername().equals(user.getEmail())) {
+        if (!principal.email().equals(user.getEmail())) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(null);  // User can only update their own information
         }
 
         long start = System.currentTimeMillis();
-        User updatedUser = userService.updateUser(user);
+        User updatedUser;
+        try {
+            // If-Match makes the update conditional on the representation the client last saw
+            updatedUser = userService.updateUser(user, request.getHeader(HttpHeaders.IF_MATCH));
+        } catch (PreconditionFailedException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                    .body(null);
+        }
         long end = System.currentTimeMillis();
         statsDClient.recordExecutionTime("api.user.update.time.milliseconds", end - start);
 
         UserDTO updatedUserDTO = userService.convertToDTO(updatedUser);
         return ResponseEntity.ok()
+                .eTag(ETags.forUser(updatedUserDTO))
                 .body(updatedUserDTO);
     }
 
     @PostMapping(value = "/pic", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<?> uploadProfilePicture(
-            @AuthenticationPrincipal UserDetails userDetails,
+    public CompletableFuture<ResponseEntity<?>> uploadProfilePicture(
+            @AuthenticationPrincipal AuthenticatedUser principal,
             HttpServletRequest request,
             @RequestParam(value = "file", required = false) MultipartFile file) {
 
@@ -177,17 +284,17 @@ public class UserController {
         String contentType = request.getContentType();
         if (contentType == null || !contentType.startsWith("multipart/")) {
             response.put("error", "Request content type must be multipart/form-data");
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .contentType(MediaType.APPLICATION_JSON)
-                    .body(response);
+                    .body(response));
         }
 
         // Check if file is present and not empty
         if (file == null || file.isEmpty()) {
             response.put("error", "File is missing in the request");
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .contentType(MediaType.APPLICATION_JSON)
-                    .body(response);
+                    .body(response));
         }
 
         // Validate MIME type and file extension
@@ -195,43 +302,157 @@ public class UserController {
         String originalFilename = file.getOriginalFilename();
         if (!isValidImageType(fileType, originalFilename)) {
             response.put("error", "Unsupported file type. Only PNG, JPG, and JPEG formats are allowed.");
-            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE) // 415 Unsupported Media Type
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE) // 415 Unsupported Media Type
                     .contentType(MediaType.APPLICATION_JSON)
-                    .body(response);
+                    .body(response));
         }
 
-        try {
-            // Check if the profile picture already exists for the user
-            User existingUser = userService.findByEmail(userDetails.getUsername());
-            if (existingUser.getProfileImage() != null) {
-                response.put("error", "Profile picture already present");
-                return ResponseEntity.status(HttpStatus.CONFLICT) // 409 Conflict
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .body(response);
-            }
+        // Check if the profile picture already exists for the user
+        if (userService.hasProfileImage(principal.id())) {
+            response.put("error", "Profile picture already present");
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.CONFLICT) // 409 Conflict
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(response));
+        }
 
-            long start = System.currentTimeMillis();
+        long start = System.currentTimeMillis();
 
-            ImageDTO imageDTO = userService.updateUserProfilePicture(userDetails.getUsername(), file);
+        // The request thread is released here; the response is written once the upload and its row are saved
+        return userService.updateUserProfilePicture(principal.email(), file)
+                .<ResponseEntity<?>>thenApply(imageDTO -> {
+                    long end = System.currentTimeMillis();
+                    statsDClient.recordExecutionTime("api.user.uploadProfilePicture.time.milliseconds", end - start);
+
+                    // Return the image metadata as JSON
+                    return ResponseEntity.ok()
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .body(imageDTO);
+                })
+                .exceptionally(failure -> {
+                    Throwable e = unwrap(failure);
+                    if (e instanceof ServiceBusyException || e instanceof ResourceNotFoundException) {
+                        throw new CompletionException(e); // Left to the exception handlers
+                    }
+                    statsDClient.incrementCounter("api.user.uploadProfilePicture.failure");
+                    logger.error("Failed to upload profile picture for user {} due to {}: {}", principal.email(), e.getClass().getSimpleName(), e.getMessage());
+                    logger.error("Exception Stack Trace: ", e);
+
+                    response.put("error", "Failed to upload profile picture");
+                    response.put("exceptionMessage", e.getMessage());
+                    return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .body(response);
+                });
+    }
 
-            long end = System.currentTimeMillis();
-            statsDClient.recordExecutionTime("api.user.uploadProfilePicture.time.milliseconds", end - start);
+    // Direct upload, step one: the picture goes from the client to S3 without passing through this server.
+    // The multipart POST /pic stays available for clients that cannot do this
+    @PostMapping(value = "/pic/upload-url", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<?>> requestProfilePictureUploadUrl(@AuthenticationPrincipal AuthenticatedUser principal,
+                                                                               @RequestBody DirectUploadRequest upload) {
+        statsDClient.incrementCounter("api.user.requestProfilePictureUploadUrl");
+        Map<String, String> response = new HashMap<>();
 
-            // Return the image metadata as JSON
-            return ResponseEntity.ok()
+        if (upload.fileName() == null || upload.fileName().isBlank() || upload.size() == null
+                || upload.sha256() == null || !SHA256_HEX.matcher(upload.sha256()).matches()) {
+            response.put("error", "fileName, size and the file's hex SHA-256 (sha256) are required");
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .contentType(MediaType.APPLICATION_JSON)
-                    .body(imageDTO);
-        } catch (IOException e) {
-            statsDClient.incrementCounter("api.user.uploadProfilePicture.failure");
-            logger.error("Failed to upload profile picture for user {} due to IOException: {}", userDetails.getUsername(), e.getMessage());
-            logger.error("Exception Stack Trace: ", e);
+                    .body(response));
+        }
 
-            response.put("error", "Failed to upload profile picture");
-            response.put("exceptionMessage", e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+        // The type is signed into the URL, so it has to be stated exactly; no file-extension fallback here
+        if (upload.contentType() == null || !DIRECT_UPLOAD_TYPES.contains(upload.contentType())) {
+            response.put("error", "Unsupported file type. Only PNG, JPG, and JPEG formats are allowed.");
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE)
                     .contentType(MediaType.APPLICATION_JSON)
-                    .body(response);
+                    .body(response));
+        }
+
+        if (upload.size() <= 0 || upload.size() > maxDirectUploadBytes) {
+            response.put("error", "File size must be between 1 and " + maxDirectUploadBytes + " bytes");
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(response));
         }
+
+        if (userService.hasProfileImage(principal.id())) {
+            response.put("error", "Profile picture already present");
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.CONFLICT)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(response));
+        }
+
+        // alreadyUploaded=true means S3 has this content already: no PUT, go straight to /pic/complete
+        return userService.presignProfilePictureUpload(upload.sha256().toLowerCase(Locale.ROOT), upload.contentType(), upload.size())
+                .<ResponseEntity<?>>thenApply(presigned -> ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(presigned))
+                .exceptionally(failure -> {
+                    Throwable e = unwrap(failure);
+                    if (e instanceof ServiceBusyException) {
+                        throw new CompletionException(e); // Left to the exception handler
+                    }
+                    statsDClient.incrementCounter("api.user.requestProfilePictureUploadUrl.failure");
+                    logger.error("Failed to issue an upload URL for user {} due to {}: {}", principal.email(), e.getClass().getSimpleName(), e.getMessage());
+
+                    response.put("error", "Failed to issue an upload URL");
+                    return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .body(response);
+                });
+    }
+
+    // Direct upload, step two: records the picture once the client's PUT to S3 has succeeded
+    @PostMapping(value = "/pic/complete", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<?>> completeProfilePictureUpload(@AuthenticationPrincipal AuthenticatedUser principal,
+                                                                             @RequestBody DirectUploadRequest upload) {
+        statsDClient.incrementCounter("api.user.completeProfilePictureUpload");
+        Map<String, String> response = new HashMap<>();
+
+        if (upload.fileName() == null || upload.fileName().isBlank()
+                || upload.sha256() == null || !SHA256_HEX.matcher(upload.sha256()).matches()) {
+            response.put("error", "fileName and the sha256 the upload URL was issued for are required");
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(response));
+        }
+
+        if (userService.hasProfileImage(principal.id())) {
+            response.put("error", "Profile picture already present");
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.CONFLICT)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(response));
+        }
+
+        return userService.completeProfilePictureUpload(principal.email(), upload.sha256().toLowerCase(Locale.ROOT), upload.fileName())
+                .<ResponseEntity<?>>thenApply(imageDTO -> ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(imageDTO))
+                .exceptionally(failure -> {
+                    Throwable e = unwrap(failure);
+                    if (e instanceof ResourceNotFoundException) {
+                        response.put("error", e.getMessage());
+                        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .body(response);
+                    }
+                    if (e instanceof ServiceBusyException) {
+                        throw new CompletionException(e); // Left to the exception handler
+                    }
+                    statsDClient.incrementCounter("api.user.completeProfilePictureUpload.failure");
+                    logger.error("Failed to complete profile picture upload for user {} due to {}: {}", principal.email(), e.getClass().getSimpleName(), e.getMessage());
+
+                    response.put("error", "Failed to upload profile picture");
+                    response.put("exceptionMessage", e.getMessage());
+                    return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .body(response);
+                });
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
     }
 
     // Helper method to check if the file type is valid based on MIME type and file extension
@@ -245,7 +466,7 @@ public class UserController {
     }
 
     @DeleteMapping("/pic")
-    public ResponseEntity<Map<String, String>> deleteProfilePicture(@AuthenticationPrincipal UserDetails userDetails, HttpServletRequest request) {
+    public ResponseEntity<Map<String, String>> deleteProfilePicture(@AuthenticationPrincipal AuthenticatedUser principal, HttpServletRequest request) {
         statsDClient.incrementCounter("api.user.deleteProfilePicture");
 
         Map<String, String> response = new HashMap<>();
@@ -258,20 +479,20 @@ public class UserController {
         }
 
         try {
-            User existingUser = userService.findByEmail(userDetails.getUsername());
-            if (existingUser.getProfileImage() == null) {
+            if (!userService.hasProfileImage(principal.id())) {
                 response.put("error", "Profile picture not present");
                 return ResponseEntity.status(HttpStatus.NOT_FOUND) // 409 Conflict
                         .contentType(MediaType.APPLICATION_JSON)
                         .body(response);
             }
 
-            userService.deleteUserProfilePicture(userDetails.getUsername());
+            // Returns once the metadata is gone; the S3 object is removed in the background
+            userService.deleteUserProfilePicture(principal.email());
 
             return ResponseEntity.noContent().build();
         } catch (Exception e) {
             statsDClient.incrementCounter("api.user.deleteProfilePicture.failure");
-            logger.error("Failed to delete profile picture for user {} due to Exception: {}", userDetails.getUsername(), e.getMessage());
+            logger.error("Failed to delete profile picture for user {} due to Exception: {}", principal.email(), e.getMessage());
 
             response.put("error", "Failed to delete profile picture");
             response.put("exceptionMessage", e.getMessage());
@@ -283,7 +504,7 @@ public class UserController {
 
     @GetMapping(value = "/pic", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<?> getProfilePictureMetadata(
-            @AuthenticationPrincipal UserDetails userDetails,
+            @AuthenticationPrincipal AuthenticatedUser principal,
             HttpServletRequest request) {
 
         statsDClient.incrementCounter("api.user.getProfilePictureMetadata");
@@ -297,26 +518,30 @@ public class UserController {
                     .body(response);
         }
 
-        // Retrieve user and image metadata
-        User user = userService.findByEmail(userDetails.getUsername());
-        if (user == null || user.getProfileImage() == null) {
+        // Only the columns the tag is built from are read, so an unchanged picture costs no full read or serialization
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            String currentETag = userService.findProfileImageETag(principal.id());
+            if (ETags.noneMatchHits(ifNoneMatch, currentETag)) {
+                statsDClient.incrementCounter("api.user.getProfilePictureMetadata.notModified");
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(currentETag)
+                        .build();
+            }
+        }
+
+        // The principal already carries the user id, so only the image columns are read
+        ImageDTO imageDTO = userService.findProfileImageDTO(principal.id());
+        if (imageDTO == null) {
             response.put("error", "Profile picture not found for the user.");
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .contentType(MediaType.APPLICATION_JSON)
                     .body(response);
         }
 
-        // Convert image details to ImageDTO for structured response
-        ImageDTO imageDTO = new ImageDTO(
-                user.getProfileImage().getFileName(),
-                user.getProfileImage().getId(),
-                user.getProfileImage().getUrl(),
-                user.getProfileImage().getUploadDate(),
-                user.getId()
-        );
-
         return ResponseEntity.ok()
                 .contentType(MediaType.APPLICATION_JSON)
+                .eTag(ETags.forImage(imageDTO))
                 .body(imageDTO);
     }
 
@@ -0,0 +1,8 @@
+package edu.northeastern.csye6225.webapp.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+// A profile picture the client uploads to S3 itself; sha256 is the hex digest of the file and becomes its key
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record DirectUploadRequest(String fileName, String contentType, Long size, String sha256) {
+}
@@ -0,0 +1,72 @@
+package edu.northeastern.csye6225.webapp.dto;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Strong entity tags for the user and image resources. A user's tag changes whenever
+ * accountUpdated does; an image's whenever it is replaced (new id), re-uploaded or gains
+ * its resized variants.
+ */
+public final class ETags {
+
+    private ETags() {
+    }
+
+    public static String forUser(UUID id, long accountUpdatedMillis) {
+        return "\"u-" + id + "-" + Long.toString(accountUpdatedMillis, 36) + "\"";
+    }
+
+    public static String forUser(UserDTO user) {
+        return forUser(user.getId(), time(user.getAccountUpdated()));
+    }
+
+    public static String forImage(ImageDTO image) {
+        return forImage(image.getId(), image.getUploadDate(), image.getVariants());
+    }
+
+    public static String forImage(ImageVersion image) {
+        return forImage(image.id(), image.uploadDate(), image.variants());
+    }
+
+    private static String forImage(UUID id, Date uploadDate, Map<String, String> variantUrls) {
+        // Variants are added once, after the upload, so their count is enough to tell the two states apart
+        int variants = variantUrls == null ? 0 : variantUrls.size();
+        return "\"i-" + id + "-" + Long.toString(time(uploadDate), 36)
+                + (variants == 0 ? "" : "-" + variants) + "\"";
+    }
+
+    // If-None-Match uses weak comparison, so a W/ prefix on the client's copy still matches
+    public static boolean noneMatchHits(String ifNoneMatch, String etag) {
+        return listContains(ifNoneMatch, etag, true);
+    }
+
+    // If-Match uses strong comparison; a missing header means the client did not ask for a check
+    public static boolean matchFails(String ifMatch, String etag) {
+        return ifMatch != null && !listContains(ifMatch, etag, false);
+    }
+
+    private static boolean listContains(String header, String etag, boolean weak) {
+        if (header == null || etag == null) {
+            return false;
+        }
+        for (String candidate : header.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (weak && tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long time(Date date) {
+        return date == null ? 0 : date.getTime();
+    }
+}
@@ -2,6 +2,7 @@
 package edu.northeastern.csye6225.webapp.dto;
 
 import java.util.Date;
+import java.util.Map;
 import java.util.UUID;
 
 public class ImageDTO {
@@ -10,13 +11,19 @@ public class ImageDTO {
     private String url;
     private Date uploadDate;
     private UUID userId;
+    private Map<String, String> variants;
 
     public ImageDTO(String fileName, UUID id, String url, Date uploadDate, UUID userId) {
+        this(fileName, id, url, uploadDate, userId, null);
+    }
+
+    public ImageDTO(String fileName, UUID id, String url, Date uploadDate, UUID userId, Map<String, String> variants) {
         this.fileName = fileName;
         this.id = id;
         this.url = url;
         this.uploadDate = uploadDate;
         this.userId = userId;
+        this.variants = variants == null ? Map.of() : variants;
     }
 
     public String getFileName() {
@@ -59,4 +66,12 @@ public class ImageDTO {
         this.userId = userId;
     }
 
+    public Map<String, String> getVariants() {
+        return variants;
+    }
+
+    public void setVariants(Map<String, String> variants) {
+        this.variants = variants;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package edu.northeastern.csye6225.webapp.dto;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+
+// Only what the /pic entity tag is built from, read for If-None-Match before the full projection
+public record ImageVersion(UUID id, Date uploadDate, Map<String, String> variants) {
+}
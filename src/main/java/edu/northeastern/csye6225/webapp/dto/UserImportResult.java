@@ -0,0 +1,21 @@
+package edu.northeastern.csye6225.webapp.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.UUID;
+
+// Outcome of one import row, streamed back to the caller as an NDJSON line
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record UserImportResult(long line, String email, String status, UUID id, String error) {
+
+    public static final String CREATED = "created";
+    public static final String REJECTED = "rejected";
+
+    public static UserImportResult created(long line, String email, UUID id) {
+        return new UserImportResult(line, email, CREATED, id, null);
+    }
+
+    public static UserImportResult rejected(long line, String email, String error) {
+        return new UserImportResult(line, email, REJECTED, null, error);
+    }
+}
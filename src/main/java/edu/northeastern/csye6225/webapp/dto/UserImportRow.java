@@ -0,0 +1,8 @@
+package edu.northeastern.csye6225.webapp.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+// One user in a bulk import, from an NDJSON line or a CSV record
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record UserImportRow(String email, String firstName, String lastName, String password) {
+}
@@ -0,0 +1,18 @@
+package edu.northeastern.csye6225.webapp.exception;
+
+// Thrown when a bounded worker pool is full; mapped to 503 with a Retry-After header
+public class ServiceBusyException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterSeconds;
+
+    public ServiceBusyException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,57 @@
+package edu.northeastern.csye6225.webapp.filter;
+
+import edu.northeastern.csye6225.webapp.model.AuthenticatedUser;
+import edu.northeastern.csye6225.webapp.service.AccessTokenService;
+import edu.northeastern.csye6225.webapp.service.IdentityContext;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
+import org.springframework.security.web.context.SecurityContextRepository;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Turns a valid "Authorization: Bearer" token into an authenticated principal, so the
+ * request never reaches the BCrypt-backed Basic auth provider or the database.
+ */
+public class BearerTokenAuthenticationFilter extends OncePerRequestFilter {
+
+    public static final String BEARER_PREFIX = "Bearer ";
+
+    private final AccessTokenService accessTokenService;
+    private final IdentityContext identityContext;
+    // Lets the async dispatch of a deferred response (e.g. the S3-backed /pic endpoints) find the principal again
+    private final SecurityContextRepository securityContextRepository = new RequestAttributeSecurityContextRepository();
+
+    public BearerTokenAuthenticationFilter(AccessTokenService accessTokenService, IdentityContext identityContext) {
+        this.accessTokenService = accessTokenService;
+        this.identityContext = identityContext;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String authorizationHeader = request.getHeader("Authorization");
+        if (authorizationHeader != null && authorizationHeader.startsWith(BEARER_PREFIX)) {
+            // GetRequestAuthFilter has usually validated the token already for this request
+            AuthenticatedUser principal = identityContext.current();
+            if (principal == null) {
+                principal = accessTokenService.validate(authorizationHeader.substring(BEARER_PREFIX.length()));
+            }
+
+            if (principal != null) {
+                SecurityContext context = SecurityContextHolder.createEmptyContext();
+                context.setAuthentication(UsernamePasswordAuthenticationToken.authenticated(principal, null, principal.getAuthorities()));
+                SecurityContextHolder.setContext(context);
+                securityContextRepository.saveContext(context, request, response);
+            }
+        }
+        chain.doFilter(request, response);
+    }
+}
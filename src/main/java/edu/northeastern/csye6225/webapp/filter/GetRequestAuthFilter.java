@@ -1,284 +1,213 @@
 package edu.northeastern.csye6225.webapp.filter;
 
-import edu.northeastern.csye6225.webapp.model.User;
-import edu.northeastern.csye6225.webapp.service.UserService;
-import jakarta.servlet.Filter;
+import edu.northeastern.csye6225.webapp.exception.ServiceBusyException;
+import edu.northeastern.csye6225.webapp.model.AuthenticatedUser;
+import edu.northeastern.csye6225.webapp.service.AccessTokenService;
+import edu.northeastern.csye6225.webapp.service.IdentityContext;
+import edu.northeastern.csye6225.webapp.service.ReadYourWritesTracker;
+import edu.northeastern.csye6225.webapp.service.RequestRateLimiter;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
 
-import org.springframework.stereotype.Component;
 import edu.northeastern.csye6225.webapp.service.AppHealthCheckService;
 import org.springframework.beans.factory.annotation.Autowired;
-import java.util.Arrays;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
-import java.util.List;
-import org.springframework.web.context.WebApplicationContext;
-import org.springframework.web.context.support.WebApplicationContextUtils;
 import com.timgroup.statsd.StatsDClient;
 
-@Component
-public class GetRequestAuthFilter implements Filter {
+public class GetRequestAuthFilter extends OncePerRequestFilter {
+
+    private static final byte[] DATABASE_UNAVAILABLE = RoutePolicy.encode("Service unavailable due to database connection issue.");
+    private static final byte[] INVALID_AUTH_HEADER = RoutePolicy.encode("Invalid Authorization header");
+    private static final byte[] INVALID_ACCESS_TOKEN = RoutePolicy.encode("Invalid or expired access token.");
+    private static final byte[] TOO_MANY_REQUESTS = RoutePolicy.encode("Too many requests, please retry later.");
+    private static final byte[] SERVER_BUSY = RoutePolicy.encode("Server is busy, please retry shortly.");
+    private static final byte[] USER_NOT_FOUND = RoutePolicy.encode("User does not exist.");
+    private static final byte[] USER_NOT_VERIFIED = RoutePolicy.encode("User is not verified. Access is restricted.");
+
     @Autowired
     private AppHealthCheckService appHealthCheckService;
 
     @Autowired
-    private UserService userService;
+    private IdentityContext identityContext;
+
+    @Autowired
+    private AccessTokenService accessTokenService;
+
+    @Autowired
+    private RequestRateLimiter requestRateLimiter;
+
+    @Autowired
+    private ReadYourWritesTracker readYourWritesTracker;
 
     private final StatsDClient statsDClient;
-    public GetRequestAuthFilter(StatsDClient statsDClient) {
+    private final RoutePolicyTable routePolicyTable;
+
+    public GetRequestAuthFilter(StatsDClient statsDClient, RoutePolicyTable routePolicyTable) {
         this.statsDClient = statsDClient;
+        this.routePolicyTable = routePolicyTable;
     }
 
-    // Define the allowed HTTP methods, including DELETE
-    private static final List<String> ALLOWED_METHODS = Arrays.asList("GET", "POST", "PUT", "DELETE");
-
-    private static final List<String> PUBLIC_URIS = Arrays.asList("/api/v1/users/register", "/healthz", "/api/v1/users/verify");
+    @Override
+    protected void doFilterInternal(HttpServletRequest httpRequest,
+                                    HttpServletResponse httpResponse,
+                                    FilterChain chain) throws ServletException, IOException {
+        try {
+            filterRequest(httpRequest, httpResponse, chain);
+        } finally {
+            // Request threads are pooled; a primary pin must not leak into the next request
+            readYourWritesTracker.clear();
+        }
+    }
 
+    private void filterRequest(HttpServletRequest httpRequest,
+                               HttpServletResponse httpResponse,
+                               FilterChain chain) throws ServletException, IOException {
 
-    @Override
-    public void doFilter(jakarta.servlet.ServletRequest request,
-                         jakarta.servlet.ServletResponse response,
-                         FilterChain chain) throws IOException, ServletException {
-
-        // Convert the request and response objects to Http versions
-        HttpServletRequest httpRequest = (HttpServletRequest) request;
-        HttpServletResponse httpResponse = (HttpServletResponse) response;
-        String requestURI = httpRequest.getRequestURI();
         String method = httpRequest.getMethod();
 
         // Increment total request metrics
         statsDClient.incrementCounter("api.request.total");
         statsDClient.incrementCounter("api.request." + method.toLowerCase());
 
-        if ("HEAD".equalsIgnoreCase(httpRequest.getMethod())) {
-            httpResponse.setStatus(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
-            statsDClient.incrementCounter("api.request.head.failure");
+        RoutePolicy policy = routePolicyTable.lookup(method, httpRequest.getRequestURI());
+
+        if (policy.getAccess() == RoutePolicy.Access.REJECT) {
+            sendErrorResponse(httpResponse, policy.getRejectStatus(), policy.getRejectBody());
+            statsDClient.incrementCounter(policy.getRejectMetric());
             return;
         }
 
-        if ("OPTIONS".equalsIgnoreCase(httpRequest.getMethod())) {
-            // Return 405 Method Not Allowed
-            httpResponse.setStatus(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
-            statsDClient.incrementCounter("api.request.options.failure");
+        // Charged before anything that touches the database or a password hash
+        String clientIp = httpRequest.getRemoteAddr();
+        if (policy.getRateLimit() != null && !requestRateLimiter.tryAcquireRoute(policy.getRateLimit(), clientIp)) {
+            sendTooManyRequests(httpResponse);
             return;
         }
 
-        // Allow DELETE and POST for /api/v1/users/pic with Authorization header
-        if ("/api/v1/users/pic".equals(requestURI) &&
-                ("DELETE".equalsIgnoreCase(method) || "POST".equalsIgnoreCase(method) || "GET".equalsIgnoreCase(method))) {
-            String authorizationHeader = httpRequest.getHeader("Authorization");
-
-            if (authorizationHeader == null || authorizationHeader.isEmpty()) {
-                httpResponse.setStatus(HttpServletResponse.SC_BAD_REQUEST); // 400
-                httpResponse.setContentType("application/json");
-                httpResponse.setCharacterEncoding("UTF-8");
-                String jsonMessage = "{\"message\": \"" + method + " request requires Authorization header.\"}";
-                httpResponse.getWriter().write(jsonMessage);
-                statsDClient.incrementCounter("api.request.authHeader.missing");
-                return; // Stop further processing
-            }
-        } else if ("DELETE".equalsIgnoreCase(method)) {
-            // Reject other DELETE requests
-            httpResponse.setStatus(HttpServletResponse.SC_METHOD_NOT_ALLOWED); // 405
-            httpResponse.setContentType("application/json");
-            httpResponse.setCharacterEncoding("UTF-8");
-            String jsonMessage = "{\"message\": \"DELETE method is not allowed for this endpoint.\"}";
-            httpResponse.getWriter().write(jsonMessage);
-            statsDClient.incrementCounter("api.request.delete.failure");
-            return; // Stop further processing
+        String authorizationHeader = httpRequest.getHeader("Authorization");
+        if (policy.getAuthHeader() == RoutePolicy.AuthHeader.REQUIRED
+                && (authorizationHeader == null || authorizationHeader.isEmpty())) {
+            sendErrorResponse(httpResponse, HttpServletResponse.SC_BAD_REQUEST, policy.getAuthHeaderErrorBody());
+            statsDClient.incrementCounter(policy.getAuthHeaderMetric());
+            return;
         }
-
-        // Check if the method is unsupported
-        if (!ALLOWED_METHODS.contains(method)) {
-            httpResponse.setStatus(HttpServletResponse.SC_METHOD_NOT_ALLOWED); // 405
-            httpResponse.setContentType("application/json");
-            httpResponse.setCharacterEncoding("UTF-8");
-            String jsonMessage = "{\"message\": \"HTTP method " + method + " is not supported.\"}";
-            httpResponse.getWriter().write(jsonMessage);
-            statsDClient.incrementCounter("api.request.unsupportedMethod");
-            return; // Stop further processing
+        if (policy.getAuthHeader() == RoutePolicy.AuthHeader.FORBIDDEN && authorizationHeader != null) {
+            sendErrorResponse(httpResponse, HttpServletResponse.SC_BAD_REQUEST, policy.getAuthHeaderErrorBody());
+            statsDClient.incrementCounter(policy.getAuthHeaderMetric());
+            return;
         }
 
-        if ("/healthz".equals(requestURI) && ("GET".equalsIgnoreCase(httpRequest.getMethod()))) {
-            // Check if the Authorization header is present
-            String authorizationHeader = httpRequest.getHeader("Authorization");
-
-            if (authorizationHeader != null) {
-                // If Authorization header is present, return 400 Bad Request
-                httpResponse.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                httpResponse.setContentType("application/json");
-                httpResponse.setCharacterEncoding("UTF-8");
-                String jsonMessage = "{\"message\": \"healthz request with Authorization header is not required.\"}";
-                httpResponse.getWriter().write(jsonMessage);
-                statsDClient.incrementCounter("api.request.healthz.authHeaderPresent");
-                return; // Stop further processing
-            } else {
-                chain.doFilter(request, response);
-                statsDClient.incrementCounter("api.request.healthz.success");
-                return;
-            }
+        if (!policy.isPayloadAllowed() && httpRequest.getContentLength() > 0) {
+            sendErrorResponse(httpResponse, HttpServletResponse.SC_BAD_REQUEST, policy.getPayloadErrorBody());
+            statsDClient.incrementCounter("api.request.payload.rejected");
+            return;
         }
 
-        if ("/healthz".equals(requestURI)) {
-            chain.doFilter(request, response);
-            statsDClient.incrementCounter("api.request.healthz.success");
+        // Check if the database connection is available
+        if (policy.isDatabaseRequired() && !appHealthCheckService.checkDatabaseConnection()) {
+            sendErrorResponse(httpResponse, HttpServletResponse.SC_SERVICE_UNAVAILABLE, DATABASE_UNAVAILABLE);
+            statsDClient.incrementCounter("api.request.dbConnection.failure");
             return;
         }
 
-        // Check if the request is a POST request
-        if ("POST".equalsIgnoreCase(httpRequest.getMethod())) {
-            // Check if the Authorization header is present
-            String authorizationHeader = httpRequest.getHeader("Authorization");
-
-            if ("/api/v1/users/pic".equals(requestURI)) {
-                if (authorizationHeader == null || authorizationHeader.isEmpty()) {
-                    httpResponse.setStatus(HttpServletResponse.SC_BAD_REQUEST); // 400
-                    httpResponse.setContentType("application/json");
-                    httpResponse.setCharacterEncoding("UTF-8");
-                    String jsonMessage = "{\"message\": \"" + method + " profile picture request requires Authorization header.\"}";
-                    httpResponse.getWriter().write(jsonMessage);
-                    statsDClient.incrementCounter("api.request.authHeader.missing");
-                    return; // Stop further processing
-                }
-            } else {
-                if (authorizationHeader != null) {
-                    // If Authorization header is present, return 400 Bad Request
-                    httpResponse.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                    httpResponse.setContentType("application/json");
-                    httpResponse.setCharacterEncoding("UTF-8");
-                    String jsonMessage = "{\"message\": \"POST request with Authorization header is not required.\"}";
-                    httpResponse.getWriter().write(jsonMessage);
-                    statsDClient.incrementCounter("api.request.postWithAuthHeader.failure");
-                    return; // Stop further processing
-                }
-            }
+        if (policy.getAccess() == RoutePolicy.Access.PUBLIC) {
+            chain.doFilter(httpRequest, httpResponse);
+            statsDClient.incrementCounter(policy.getSuccessMetric());
+            return;
         }
 
-        if ("GET".equalsIgnoreCase(httpRequest.getMethod())) {
-            if ("/api/v1/users/verify".equals(requestURI)) {
-                if ( httpRequest.getHeader("Authorization") != null ) {
-                    sendErrorResponse(httpResponse, HttpServletResponse.SC_BAD_REQUEST, "Authorization header is not allowed for verify");
-                    statsDClient.incrementCounter("api.request.user.verifyWithAuthHeader.failure");
-                } else {
-                    chain.doFilter(request, response);
-                    statsDClient.incrementCounter("api.request.user.verify");
-                }
+        AuthenticatedUser user;
+        String basicAuthEmail = null;
+        if (authorizationHeader != null && authorizationHeader.startsWith(BearerTokenAuthenticationFilter.BEARER_PREFIX)) {
+            // Signed token: everything we need is in the token, no database or BCrypt involved
+            user = accessTokenService.validate(authorizationHeader.substring(BearerTokenAuthenticationFilter.BEARER_PREFIX.length()));
+            if (user == null) {
+                sendErrorResponse(httpResponse, HttpServletResponse.SC_UNAUTHORIZED, INVALID_ACCESS_TOKEN);
+                statsDClient.incrementCounter("api.request.token.invalid");
                 return;
-            } else {
-                // Check if the Authorization header is present
-                String authorizationHeader = httpRequest.getHeader("Authorization");
-
-                if (authorizationHeader == null) {
-                    // If Authorization header is present, return 400 Bad Request or 405 Method Not Allowed
-                    httpResponse.setStatus(HttpServletResponse.SC_BAD_REQUEST); // You can use SC_BAD_REQUEST (400) instead
-
-                    httpResponse.setContentType("application/json");
-                    httpResponse.setCharacterEncoding("UTF-8");
-                    String jsonMessage = "{\"message\": \"GET request except verify requires Authorization header.\"}";
-                    httpResponse.getWriter().write(jsonMessage);
-                    statsDClient.incrementCounter("api.request.authHeader.missing");
-                    return; // Stop further processing
-                }
             }
-        }
-
-        if ("PUT".equalsIgnoreCase(httpRequest.getMethod())) {
-            // Check if the Authorization header is present
-            String authorizationHeader = httpRequest.getHeader("Authorization");
-
-            if (authorizationHeader == null) {
-                // If Authorization header is present, return 400 Bad Request or 405 Method Not Allowed
-                httpResponse.setStatus(HttpServletResponse.SC_BAD_REQUEST); // You can use SC_BAD_REQUEST (400) instead
-
-                httpResponse.setContentType("application/json");
-                httpResponse.setCharacterEncoding("UTF-8");
-                String jsonMessage = "{\"message\": \"PUT request requires Authorization header.\"}";
-                httpResponse.getWriter().write(jsonMessage);
-                statsDClient.incrementCounter("api.request.authHeader.missing");
-
-                return; // Stop further processing
+            identityContext.set(user);
+            readYourWritesTracker.pinIfRecentWriter(user.email());
+        } else {
+            statsDClient.incrementCounter("api.auth.basic");
+
+            // Verify user for non-public URIs
+            String email = extractEmailFromBasicAuth(authorizationHeader);
+            if (email == null || email.isEmpty()) {
+                sendErrorResponse(httpResponse, HttpServletResponse.SC_BAD_REQUEST, INVALID_AUTH_HEADER);
+                statsDClient.incrementCounter("api.request.authHeader.invalid");
+                return;
             }
-        }
-
-        // Lazy loading of the AppHealthCheckService
-        if (appHealthCheckService == null) {
-            WebApplicationContext webApplicationContext = WebApplicationContextUtils
-                    .getRequiredWebApplicationContext(httpRequest.getServletContext());
-            appHealthCheckService = webApplicationContext.getBean(AppHealthCheckService.class);
-        }
-
-        if (userService == null) {
-            WebApplicationContext webApplicationContext = WebApplicationContextUtils
-                    .getRequiredWebApplicationContext(httpRequest.getServletContext());
-            userService = webApplicationContext.getBean(UserService.class);
-        }
-
 
-        // Check if the database connection is available
-        if (!appHealthCheckService.checkDatabaseConnection()) {
-            httpResponse.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
-            httpResponse.setContentType("application/json");
-            httpResponse.setCharacterEncoding("UTF-8");
-            String jsonMessage = "{\"message\": \"Service unavailable due to database connection issue.\"}";
-            httpResponse.getWriter().write(jsonMessage);
-            statsDClient.incrementCounter("api.request.dbConnection.failure");
-            return;
-        }
-
-        // Check if the request is for a public URI
-        if (PUBLIC_URIS.contains(requestURI)) {
-            if ("/api/v1/users/register".equals(requestURI) && httpRequest.getHeader("Authorization") != null) {
-                sendErrorResponse(httpResponse, HttpServletResponse.SC_BAD_REQUEST, "Authorization header is not allowed for register");
-                statsDClient.incrementCounter("api.request.registerWithAuthHeader.failure");
+            // Clients with too many recent failures for this IP or email never reach BCrypt
+            if (!requestRateLimiter.allowAuthAttempt(clientIp, email)) {
+                sendTooManyRequests(httpResponse);
                 return;
             }
-            // Allow public URIs to proceed
-            chain.doFilter(request, response);
-            statsDClient.incrementCounter("api.request.public.success");
-            return;
-        }
+            basicAuthEmail = email;
 
-        // Verify user for non-public URIs
-        String authorizationHeader = httpRequest.getHeader("Authorization");
-        String email = extractEmailFromBasicAuth(authorizationHeader);
-        if (email == null || email.isEmpty()) {
-            sendErrorResponse(httpResponse, HttpServletResponse.SC_BAD_REQUEST, "Invalid Authorization header");
-            statsDClient.incrementCounter("api.request.authHeader.invalid");
-            return;
-        }
+            // A user who just wrote reads from the primary until the replicas have caught up
+            readYourWritesTracker.pinIfRecentWriter(email);
 
-        // Fetch the user and verify their status
-        User user = userService.findByEmail(email);
+            // Fetch the user and verify their status; the result is shared with the rest of the request
+            user = identityContext.resolve(email);
+        }
 
         if (user == null) {
-            System.out.println("User not found for email: " + email);
-            sendErrorResponse(httpResponse, HttpServletResponse.SC_FORBIDDEN, "User does not exist.");
+            logger.debug("User not found for Authorization header");
+            sendErrorResponse(httpResponse, HttpServletResponse.SC_FORBIDDEN, USER_NOT_FOUND);
             statsDClient.incrementCounter("api.request.user.notFound");
             return;
         }
 
-        if (!user.isVerified()) {
-            System.out.println("User found but not verified: " + user.getEmail());
-            sendErrorResponse(httpResponse, HttpServletResponse.SC_FORBIDDEN, "User is not verified. Access is restricted.");
+        if (!user.verified()) {
+            logger.debug("User found but not verified: " + user.email());
+            sendErrorResponse(httpResponse, HttpServletResponse.SC_FORBIDDEN, USER_NOT_VERIFIED);
             statsDClient.incrementCounter("api.request.user.notVerified");
             return;
         }
 
+        try {
+            chain.doFilter(httpRequest, httpResponse);
+        } catch (ServiceBusyException e) {
+            // Basic auth verifies the password inside the security chain, before any controller advice
+            if (httpResponse.isCommitted()) {
+                throw e;
+            }
+            httpResponse.setHeader("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+            sendErrorResponse(httpResponse, HttpServletResponse.SC_SERVICE_UNAVAILABLE, SERVER_BUSY);
+            statsDClient.incrementCounter("api.request.serverBusy");
+            return;
+        }
+        if (basicAuthEmail != null && httpResponse.getStatus() == HttpServletResponse.SC_UNAUTHORIZED) {
+            requestRateLimiter.recordAuthFailure(clientIp, basicAuthEmail);
+            return;
+        }
+        statsDClient.incrementCounter(policy.getSuccessMetric());
+    }
 
-        // Continue with the rest of the filter chain if conditions are not met
-        chain.doFilter(request, response);
-        statsDClient.incrementCounter("api.request.success");
+    private void sendTooManyRequests(HttpServletResponse httpResponse) throws IOException {
+        httpResponse.setHeader("Retry-After", String.valueOf(requestRateLimiter.getRetryAfterSeconds()));
+        sendErrorResponse(httpResponse, 429, TOO_MANY_REQUESTS);
+        statsDClient.incrementCounter("api.request.rateLimited");
     }
 
-    private void sendErrorResponse(HttpServletResponse httpResponse, int statusCode, String message) throws IOException {
+    // Bodies are pre-encoded by RoutePolicy, so this is just a byte copy
+    private void sendErrorResponse(HttpServletResponse httpResponse, int statusCode, byte[] body) throws IOException {
         httpResponse.setStatus(statusCode);
+        if (body == null) {
+            return;
+        }
         httpResponse.setContentType("application/json");
         httpResponse.setCharacterEncoding("UTF-8");
-        String jsonMessage = "{\"message\": \"" + message + "\"}";
-        httpResponse.getWriter().write(jsonMessage);
+        httpResponse.setContentLength(body.length);
+        httpResponse.getOutputStream().write(body);
     }
 
     private String extractEmailFromBasicAuth(String authorizationHeader) {
@@ -286,18 +215,18 @@ public class GetRequestAuthFilter implements Filter {
             try {
                 // Decode the base64-encoded credentials
                 String base64Credentials = authorizationHeader.substring("Basic ".length());
-                String credentials = new String(Base64.getDecoder().decode(base64Credentials));
+                String credentials = new String(Base64.getDecoder().decode(base64Credentials), StandardCharsets.UTF_8);
 
                 // Split into username and password
-                String[] parts = credentials.split(":", 2);
-                if (parts.length == 2) {
-                    return parts[0]; // Username (email in this case)
+                int separator = credentials.indexOf(':');
+                if (separator >= 0) {
+                    return credentials.substring(0, separator); // Username (email in this case)
                 }
             } catch (IllegalArgumentException e) {
-                System.err.println("Error decoding Authorization header: " + e.getMessage());
+                logger.debug("Error decoding Authorization header: " + e.getMessage());
             }
         }
         return null; // Return null if decoding fails or header is invalid
     }
 
-}
\ No newline at end of file
+}
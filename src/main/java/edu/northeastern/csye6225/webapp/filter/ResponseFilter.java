@@ -1,8 +1,10 @@
 package edu.northeastern.csye6225.webapp.filter;
 
 import jakarta.servlet.*;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import com.timgroup.statsd.StatsDClient;
+import edu.northeastern.csye6225.webapp.config.StatsDMetricsTrackerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Component;
@@ -13,22 +15,30 @@ import java.io.IOException;
 public class ResponseFilter implements Filter {
 
     private final StatsDClient statsDClient;
-    public ResponseFilter(StatsDClient statsDClient) {
+    private final RoutePolicyTable routePolicyTable;
+    public ResponseFilter(StatsDClient statsDClient, RoutePolicyTable routePolicyTable) {
         this.statsDClient = statsDClient;
+        this.routePolicyTable = routePolicyTable;
     }
 
     @Override
     public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain) throws IOException, ServletException {
         if (servletResponse instanceof HttpServletResponse) {
             HttpServletResponse httpResponse = (HttpServletResponse) servletResponse;
-            httpResponse.setHeader("cache-control", "no-cache, no-store, must-revalidate");
-            httpResponse.setHeader("Pragma", "no-cache");
+            HttpServletRequest httpRequest = (HttpServletRequest) servletRequest;
+            // Decided per route, so ETag-backed resources can be revalidated instead of re-downloaded
+            String cacheControl = routePolicyTable.lookup(httpRequest.getMethod(), httpRequest.getRequestURI()).getCacheControl();
+            httpResponse.setHeader("cache-control", cacheControl);
+            if (RoutePolicy.NO_STORE.equals(cacheControl)) {
+                httpResponse.setHeader("Pragma", "no-cache");
+            }
             httpResponse.setHeader("X-Content-Type-Options", "nosniff");
 
             // Increment the response filter metric for tracking
             statsDClient.incrementCounter("response.filter.invoked");
 
             // Call the next filter in the chain if any
+            StatsDMetricsTrackerFactory.beginRequest();
             try {
                 filterChain.doFilter(servletRequest, httpResponse);
                 // Increment a success metric after a successful filter processing
@@ -37,6 +47,12 @@ public class ResponseFilter implements Filter {
                 // Increment an error metric if an exception occurs during filtering
                 statsDClient.incrementCounter("response.filter.error");
                 throw e; // Re-throw the exception to propagate the error
+            } finally {
+                // Connections held on this thread only; work chained onto S3 futures is in db.pool.*.hold.time
+                long[] hold = StatsDMetricsTrackerFactory.endRequest();
+                if (hold[1] > 0) {
+                    statsDClient.recordExecutionTime("api.request.db.hold.time.milliseconds", hold[0]);
+                }
             }
         } else {
             // Increment the response filter metric even when HttpServletResponse is not used
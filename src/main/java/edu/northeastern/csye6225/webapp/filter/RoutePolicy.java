@@ -0,0 +1,165 @@
+package edu.northeastern.csye6225.webapp.filter;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * What GetRequestAuthFilter and ResponseFilter need for one (method, path) pair. Error bodies are
+ * encoded once when the table is built, not on every rejected request.
+ */
+public final class RoutePolicy {
+
+    public enum Access { PUBLIC, AUTHENTICATED, REJECT }
+
+    public enum AuthHeader { REQUIRED, FORBIDDEN, OPTIONAL }
+
+    // What ResponseFilter used to send on every response
+    public static final String NO_STORE = "no-cache, no-store, must-revalidate";
+
+    // Per-user resources served with an ETag: the client may keep a copy but must revalidate it
+    public static final String PRIVATE_REVALIDATE = "private, no-cache";
+
+    private final Access access;
+    private final AuthHeader authHeader;
+    private final boolean payloadAllowed;
+    private final boolean databaseRequired;
+    private final int rejectStatus;
+    private final byte[] rejectBody;
+    private final byte[] authHeaderErrorBody;
+    private final byte[] payloadErrorBody;
+    private final String rejectMetric;
+    private final String authHeaderMetric;
+    private final String successMetric;
+    private final String rateLimit;
+    private final String cacheControl;
+
+    private RoutePolicy(Builder builder) {
+        this.access = builder.access;
+        this.authHeader = builder.authHeader;
+        this.payloadAllowed = builder.payloadAllowed;
+        this.databaseRequired = builder.databaseRequired;
+        this.rejectStatus = builder.rejectStatus;
+        this.rejectBody = builder.rejectBody;
+        this.authHeaderErrorBody = builder.authHeaderErrorBody;
+        this.payloadErrorBody = builder.payloadErrorBody;
+        this.rejectMetric = builder.rejectMetric;
+        this.authHeaderMetric = builder.authHeaderMetric;
+        this.successMetric = builder.successMetric;
+        this.rateLimit = builder.rateLimit;
+        this.cacheControl = builder.cacheControl;
+    }
+
+    public static Builder publicRoute() {
+        return new Builder(Access.PUBLIC).successMetric("api.request.public.success");
+    }
+
+    public static Builder authenticated() {
+        return new Builder(Access.AUTHENTICATED).successMetric("api.request.success");
+    }
+
+    public static Builder reject(int status, String message, String metric) {
+        Builder builder = new Builder(Access.REJECT);
+        builder.rejectStatus = status;
+        builder.rejectBody = message == null ? null : encode(message);
+        builder.rejectMetric = metric;
+        return builder;
+    }
+
+    // {"message": "..."} as UTF-8, matching what the filter used to build per request
+    public static byte[] encode(String message) {
+        return ("{\"message\": \"" + message + "\"}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    public Access getAccess() { return access; }
+
+    public AuthHeader getAuthHeader() { return authHeader; }
+
+    public boolean isPayloadAllowed() { return payloadAllowed; }
+
+    public boolean isDatabaseRequired() { return databaseRequired; }
+
+    public int getRejectStatus() { return rejectStatus; }
+
+    public byte[] getRejectBody() { return rejectBody; }
+
+    public byte[] getAuthHeaderErrorBody() { return authHeaderErrorBody; }
+
+    public byte[] getPayloadErrorBody() { return payloadErrorBody; }
+
+    public String getRejectMetric() { return rejectMetric; }
+
+    public String getAuthHeaderMetric() { return authHeaderMetric; }
+
+    public String getSuccessMetric() { return successMetric; }
+
+    public String getRateLimit() { return rateLimit; }
+
+    public String getCacheControl() { return cacheControl; }
+
+    public static final class Builder {
+        private final Access access;
+        private AuthHeader authHeader = AuthHeader.OPTIONAL;
+        private boolean payloadAllowed = true;
+        private boolean databaseRequired = true;
+        private int rejectStatus;
+        private byte[] rejectBody;
+        private byte[] authHeaderErrorBody;
+        private byte[] payloadErrorBody;
+        private String rejectMetric;
+        private String authHeaderMetric;
+        private String successMetric;
+        private String rateLimit;
+        private String cacheControl = NO_STORE;
+
+        private Builder(Access access) {
+            this.access = access;
+        }
+
+        public Builder authHeaderRequired(String message) {
+            this.authHeader = AuthHeader.REQUIRED;
+            this.authHeaderErrorBody = encode(message);
+            this.authHeaderMetric = "api.request.authHeader.missing";
+            return this;
+        }
+
+        public Builder authHeaderForbidden(String message, String metric) {
+            this.authHeader = AuthHeader.FORBIDDEN;
+            this.authHeaderErrorBody = encode(message);
+            this.authHeaderMetric = metric;
+            return this;
+        }
+
+        // A null body means "400 with no body", which is what the controllers return today
+        public Builder noPayload(byte[] errorBody) {
+            this.payloadAllowed = false;
+            this.payloadErrorBody = errorBody;
+            return this;
+        }
+
+        // Let the controller answer even when the database is down (/healthz reports it itself)
+        public Builder skipDatabaseCheck() {
+            this.databaseRequired = false;
+            return this;
+        }
+
+        public Builder successMetric(String metric) {
+            this.successMetric = metric;
+            return this;
+        }
+
+        // Name of the per-client limit (ratelimit.<name>.*) charged before any other work
+        public Builder rateLimit(String name) {
+            this.rateLimit = name;
+            return this;
+        }
+
+        // Cache-Control set by ResponseFilter; defaults to NO_STORE
+        public Builder cacheControl(String cacheControl) {
+            this.cacheControl = cacheControl;
+            return this;
+        }
+
+        public RoutePolicy build() {
+            return new RoutePolicy(this);
+        }
+    }
+}
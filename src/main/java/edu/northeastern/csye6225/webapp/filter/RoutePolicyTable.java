@@ -0,0 +1,93 @@
+package edu.northeastern.csye6225.webapp.filter;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Lookup table compiled at startup from (method, path) rules. A request costs one hash
+ * lookup on the path and an array index on the method, instead of a chain of string
+ * comparisons.
+ */
+public final class RoutePolicyTable {
+
+    private static final String[] METHODS = {"GET", "POST", "PUT", "DELETE", "PATCH", "HEAD", "OPTIONS", "TRACE"};
+
+    private final Map<String, RoutePolicy[]> routes;
+    private final RoutePolicy[] defaults;
+
+    private RoutePolicyTable(Map<String, RoutePolicy[]> routes, RoutePolicy[] defaults) {
+        this.routes = routes;
+        this.defaults = defaults;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public RoutePolicy lookup(String method, String path) {
+        int index = indexOf(method);
+        if (index < 0) {
+            // Non-standard methods are rare enough to build the rejection on the spot
+            return RoutePolicy.reject(HttpServletResponse.SC_METHOD_NOT_ALLOWED,
+                    "HTTP method " + method + " is not supported.", "api.request.unsupportedMethod").build();
+        }
+
+        RoutePolicy[] policies = routes.get(path);
+        if (policies != null && policies[index] != null) {
+            return policies[index];
+        }
+        return defaults[index];
+    }
+
+    private static int indexOf(String method) {
+        switch (method) {
+            case "GET": return 0;
+            case "POST": return 1;
+            case "PUT": return 2;
+            case "DELETE": return 3;
+            case "PATCH": return 4;
+            case "HEAD": return 5;
+            case "OPTIONS": return 6;
+            case "TRACE": return 7;
+            default: return -1;
+        }
+    }
+
+    public static final class Builder {
+        private final Map<String, RoutePolicy[]> routes = new HashMap<>();
+        private final RoutePolicy[] defaults = new RoutePolicy[METHODS.length];
+
+        private Builder() {
+        }
+
+        // Policy for a method on any path that has no explicit rule
+        public Builder defaultPolicy(String method, RoutePolicy policy) {
+            defaults[requireIndex(method)] = policy;
+            return this;
+        }
+
+        public Builder route(String method, String path, RoutePolicy policy) {
+            routes.computeIfAbsent(path, p -> new RoutePolicy[METHODS.length])[requireIndex(method)] = policy;
+            return this;
+        }
+
+        public RoutePolicyTable build() {
+            for (int i = 0; i < defaults.length; i++) {
+                if (defaults[i] == null) {
+                    throw new IllegalStateException("No default route policy for " + METHODS[i]);
+                }
+            }
+            return new RoutePolicyTable(Map.copyOf(routes), defaults.clone());
+        }
+
+        private static int requireIndex(String method) {
+            int index = indexOf(method);
+            if (index < 0) {
+                throw new IllegalArgumentException("Unsupported HTTP method: " + method);
+            }
+            return index;
+        }
+    }
+}
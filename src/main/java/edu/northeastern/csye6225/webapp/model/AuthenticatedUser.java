@@ -0,0 +1,68 @@
+package edu.northeastern.csye6225.webapp.model;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Compact, immutable principal resolved once per request. Carries only what the
+ * filter, the authentication provider and the controllers need, instead of the
+ * managed {@link User} entity.
+ */
+public record AuthenticatedUser(UUID id, String email, boolean verified, String passwordHash) implements UserDetails {
+
+    private static final List<GrantedAuthority> AUTHORITIES = List.of(new SimpleGrantedAuthority("USER"));
+
+    public static AuthenticatedUser from(User user) {
+        return new AuthenticatedUser(user.getId(), user.getEmail(), user.isVerified(), user.getPassword());
+    }
+
+    // Copy that is safe to keep around after the password check is done
+    public AuthenticatedUser withoutPassword() {
+        return passwordHash == null ? this : new AuthenticatedUser(id, email, verified, null);
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return AUTHORITIES;
+    }
+
+    @Override
+    public String getPassword() {
+        return passwordHash;
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "AuthenticatedUser[id=" + id + ", email=" + email + ", verified=" + verified + "]";
+    }
+}
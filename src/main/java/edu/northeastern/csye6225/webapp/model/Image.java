@@ -2,15 +2,20 @@
 package edu.northeastern.csye6225.webapp.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 
 @Entity
-@Table(name = "images")
+@Table(name = "images", indexes = @Index(name = "idx_images_content_hash", columnList = "content_hash"))
 public class Image {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @TimeOrderedUuid
     private UUID id;
 
     @Column(name = "file_name", nullable = false)
@@ -23,6 +28,16 @@ public class Image {
     @Column(name = "upload_date")
     private Date uploadDate;
 
+    // SHA-256 of the bytes and the object key; images with the same hash share the object and its variants.
+    // Null for uploads from before content addressing, which own their object outright
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    // Variant name -> URL of a resized copy, filled in by ImageVariantPipeline after the upload
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "variants")
+    private Map<String, String> variants = new HashMap<>();
+
     // Change to @OneToOne to match the relationship in User
     @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false, unique = true) // unique ensures one-to-one mapping
@@ -41,6 +56,12 @@ public class Image {
     public Date getUploadDate() { return uploadDate; }
     public void setUploadDate(Date uploadDate) { this.uploadDate = uploadDate; }
 
+    public String getContentHash() { return contentHash; }
+    public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+
+    public Map<String, String> getVariants() { return variants; }
+    public void setVariants(Map<String, String> variants) { this.variants = variants; }
+
     public User getUser() { return user; }
     public void setUser(User user) { this.user = user; }
 }
\ No newline at end of file
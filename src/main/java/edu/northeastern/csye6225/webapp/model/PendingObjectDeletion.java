@@ -0,0 +1,97 @@
+package edu.northeastern.csye6225.webapp.model;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * An S3 object whose metadata is already gone, written in the same transaction as that
+ * delete and removed from the bucket later by ObjectDeletionRelay. Rows with a content hash
+ * name a shared object, which is only removed if no image refers to that hash by then.
+ */
+@Entity
+@Table(name = "pending_object_deletions", indexes = {
+        @Index(name = "idx_pending_deletion_next_attempt", columnList = "next_attempt_at"),
+        @Index(name = "idx_pending_deletion_content_hash", columnList = "content_hash")
+})
+public class PendingObjectDeletion {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "object_key", nullable = false, length = 1024)
+    private String objectKey;
+
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private Instant nextAttemptAt;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    // Set while a relay instance is deleting the object; the row is left alone until then
+    @Column(name = "claimed_until")
+    private Instant claimedUntil;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getObjectKey() {
+        return objectKey;
+    }
+
+    public void setObjectKey(String objectKey) {
+        this.objectKey = objectKey;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Instant getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(Instant nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public Instant getClaimedUntil() {
+        return claimedUntil;
+    }
+
+    public void setClaimedUntil(Instant claimedUntil) {
+        this.claimedUntil = claimedUntil;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+}
@@ -0,0 +1,45 @@
+package edu.northeastern.csye6225.webapp.model;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * UUIDv7-style identifiers: a 48-bit Unix millisecond timestamp, a 12-bit sequence and
+ * 62 random bits. Stored as BINARY(16) they sort by creation time, so inserts land at the
+ * right edge of the clustered index instead of on random pages. Ids are strictly
+ * increasing within one JVM; the random tail keeps different nodes from colliding.
+ */
+public final class TimeOrderedUuids {
+
+    private static final int SEQUENCE_BITS = 12;
+    private static final long VERSION_7 = 0x7000L;
+    private static final long VARIANT_RFC4122 = 0x8000000000000000L;
+
+    // Last issued (millis << 12 | sequence); bumping it past 4095 borrows from the next millisecond
+    private static final AtomicLong LAST = new AtomicLong();
+    private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(SecureRandom::new);
+
+    private TimeOrderedUuids() {
+    }
+
+    public static UUID next() {
+        return next(System.currentTimeMillis());
+    }
+
+    static UUID next(long nowMillis) {
+        long candidate = nowMillis << SEQUENCE_BITS;
+        long stamp = LAST.accumulateAndGet(candidate, (last, now) -> now > last ? now : last + 1);
+
+        long millis = stamp >>> SEQUENCE_BITS;
+        long sequence = stamp & ((1L << SEQUENCE_BITS) - 1);
+        long mostSignificant = (millis << 16) | VERSION_7 | sequence;
+        long leastSignificant = (RANDOM.get().nextLong() >>> 2) | VARIANT_RFC4122;
+        return new UUID(mostSignificant, leastSignificant);
+    }
+
+    // Creation time embedded in an id produced by this class
+    public static long timestampMillis(UUID id) {
+        return id.getMostSignificantBits() >>> 16;
+    }
+}
@@ -0,0 +1,43 @@
+package edu.northeastern.csye6225.webapp.model;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Immutable copy of a {@link User} row as held by UserCache. Callers get a fresh,
+ * detached entity from {@link #toUser()}, so nothing they do can leak back into the cache.
+ */
+public record UserSnapshot(UUID id, String email, String firstName, String lastName, String passwordHash,
+                           long accountCreated, long accountUpdated, boolean verified) {
+
+    public static UserSnapshot from(User user) {
+        return new UserSnapshot(user.getId(), user.getEmail(), user.getFirstName(), user.getLastName(), user.getPassword(),
+                time(user.getAccountCreated()), time(user.getAccountUpdated()), user.isVerified());
+    }
+
+    public User toUser() {
+        User user = new User();
+        user.setId(id);
+        user.setEmail(email);
+        user.setFirstName(firstName);
+        user.setLastName(lastName);
+        user.setPassword(passwordHash);
+        user.setAccountCreated(accountCreated == 0 ? null : new Date(accountCreated));
+        user.setAccountUpdated(accountUpdated == 0 ? null : new Date(accountUpdated));
+        user.setVerified(verified);
+        return user;
+    }
+
+    public AuthenticatedUser toPrincipal() {
+        return new AuthenticatedUser(id, email, verified, passwordHash);
+    }
+
+    private static long time(Date date) {
+        return date == null ? 0 : date.getTime();
+    }
+
+    @Override
+    public String toString() {
+        return "UserSnapshot[id=" + id + ", email=" + email + ", verified=" + verified + "]";
+    }
+}
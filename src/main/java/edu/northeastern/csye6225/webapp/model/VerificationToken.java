@@ -6,7 +6,7 @@ import java.time.Instant;
 import java.util.UUID;
 
 @Entity
-@Table(name = "verification_tokens")
+@Table(name = "verification_tokens", indexes = @Index(name = "idx_verification_tokens_expiry", columnList = "expiry"))
 public class VerificationToken {
 
     @Id
@@ -0,0 +1,219 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import com.timgroup.statsd.StatsDClient;
+import edu.northeastern.csye6225.webapp.model.AuthenticatedUser;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Issues and validates short-lived bearer tokens signed with HMAC-SHA256.
+ * Signing keys are derived from {@code auth.token.secret} per rotation epoch, so every
+ * node agrees on them and they roll over on their own; tokens signed in the current or
+ * the previous epoch are accepted. Replacing the secret itself takes a rolling restart:
+ * moving the old value to {@code auth.token.previous-secret} keeps the tokens it signed
+ * valid until they expire. Startup fails without a secret outside the dev and test profiles.
+ */
+@Service
+public class AccessTokenService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccessTokenService.class);
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    // epoch(8) + user id(16) + expiry(8) + verified(1), followed by the email
+    private static final int FIXED_PAYLOAD_LENGTH = 33;
+
+    @Autowired
+    private StatsDClient statsDClient;
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${auth.token.secret:}")
+    private String secret;
+
+    // Only ever verified against, never signed with
+    @Value("${auth.token.previous-secret:}")
+    private String previousSecret;
+
+    @Value("${auth.token.ttl-seconds:900}")
+    private long ttlSeconds;
+
+    @Value("${auth.token.rotation-seconds:3600}")
+    private long rotationSeconds;
+
+    // The current key first, which is the one tokens are signed with
+    private final List<KeyRing> keyRings = new ArrayList<>();
+
+    @PostConstruct
+    public void init() {
+        if (ttlSeconds > rotationSeconds) {
+            throw new IllegalStateException("auth.token.ttl-seconds must not exceed auth.token.rotation-seconds");
+        }
+
+        byte[] keyMaterial;
+        if (secret == null || secret.isBlank()) {
+            // Tokens would only validate on the node that issued them, and every restart would log everyone out
+            if (environment == null || !environment.acceptsProfiles(Profiles.of("dev", "test"))) {
+                throw new IllegalStateException("auth.token.secret is not set: set TOKEN_SECRET, or run with the dev or test profile");
+            }
+            logger.warn("auth.token.secret is not set, using a random per-process token key");
+            keyMaterial = new byte[32];
+            new SecureRandom().nextBytes(keyMaterial);
+        } else {
+            keyMaterial = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        keyRings.clear();
+        keyRings.add(new KeyRing(new SecretKeySpec(keyMaterial, HMAC_ALGORITHM)));
+        if (previousSecret != null && !previousSecret.isBlank() && !previousSecret.equals(secret)) {
+            keyRings.add(new KeyRing(new SecretKeySpec(previousSecret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM)));
+        }
+    }
+
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public String issue(AuthenticatedUser user) {
+        long now = Instant.now().getEpochSecond();
+        long epoch = now / rotationSeconds;
+        byte[] email = user.email().getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer payload = ByteBuffer.allocate(FIXED_PAYLOAD_LENGTH + email.length);
+        payload.putLong(epoch);
+        payload.putLong(user.id().getMostSignificantBits());
+        payload.putLong(user.id().getLeastSignificantBits());
+        payload.putLong(now + ttlSeconds);
+        payload.put((byte) (user.verified() ? 1 : 0));
+        payload.put(email);
+
+        byte[] payloadBytes = payload.array();
+        statsDClient.incrementCounter("api.auth.token.issued");
+        return ENCODER.encodeToString(payloadBytes) + "." + ENCODER.encodeToString(keyRings.get(0).sign(epoch, payloadBytes));
+    }
+
+    // Returns the principal carried by the token, or null when it is malformed, forged or expired
+    public AuthenticatedUser validate(String token) {
+        AuthenticatedUser principal = parse(token);
+        statsDClient.incrementCounter(principal != null ? "api.auth.token.valid" : "api.auth.token.invalid");
+        return principal;
+    }
+
+    private AuthenticatedUser parse(String token) {
+        if (token == null) {
+            return null;
+        }
+        int separator = token.indexOf('.');
+        if (separator <= 0 || separator == token.length() - 1) {
+            return null;
+        }
+
+        byte[] payload;
+        byte[] signature;
+        try {
+            payload = DECODER.decode(token.substring(0, separator));
+            signature = DECODER.decode(token.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (payload.length <= FIXED_PAYLOAD_LENGTH) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        long epoch = buffer.getLong();
+        long now = Instant.now().getEpochSecond();
+        long currentEpoch = now / rotationSeconds;
+        if (epoch != currentEpoch && epoch != currentEpoch - 1) {
+            return null;
+        }
+
+        if (!signedByKnownKey(epoch, payload, signature)) {
+            return null;
+        }
+
+        UUID userId = new UUID(buffer.getLong(), buffer.getLong());
+        long expiry = buffer.getLong();
+        if (expiry <= now) {
+            return null;
+        }
+        boolean verified = buffer.get() == 1;
+        String email = new String(payload, FIXED_PAYLOAD_LENGTH, payload.length - FIXED_PAYLOAD_LENGTH, StandardCharsets.UTF_8);
+        return new AuthenticatedUser(userId, email, verified, null);
+    }
+
+    private boolean signedByKnownKey(long epoch, byte[] payload, byte[] signature) {
+        for (KeyRing keyRing : keyRings) {
+            if (MessageDigest.isEqual(keyRing.sign(epoch, payload), signature)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // One configured secret and the per-epoch keys derived from it
+    private static final class KeyRing {
+
+        private final SecretKeySpec masterKey;
+        private final Map<Long, SecretKeySpec> epochKeys = new ConcurrentHashMap<>();
+
+        KeyRing(SecretKeySpec masterKey) {
+            this.masterKey = masterKey;
+        }
+
+        byte[] sign(long epoch, byte[] payload) {
+            try {
+                Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+                mac.init(keyFor(epoch));
+                return mac.doFinal(payload);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HMAC-SHA256 is not available", e);
+            }
+        }
+
+        private SecretKeySpec keyFor(long epoch) {
+            SecretKeySpec key = epochKeys.get(epoch);
+            if (key != null) {
+                return key;
+            }
+
+            try {
+                Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+                mac.init(masterKey);
+                byte[] derived = mac.doFinal(("access-token:" + epoch).getBytes(StandardCharsets.UTF_8));
+                key = new SecretKeySpec(derived, HMAC_ALGORITHM);
+                Arrays.fill(derived, (byte) 0);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HMAC-SHA256 is not available", e);
+            }
+
+            // Only the current and previous epochs are ever needed
+            epochKeys.keySet().removeIf(cached -> cached < epoch - 1);
+            epochKeys.put(epoch, key);
+            return key;
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package edu.northeastern.csye6225.webapp.service;
 
-import edu.northeastern.csye6225.webapp.Dao.AppHealthCheckDao;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -11,29 +10,25 @@ import com.timgroup.statsd.StatsDClient;
 public class AppHealthCheckService {
 
     @Autowired
-    private AppHealthCheckDao appHealthCheckDAO;
+    private DatabaseHealthMonitor databaseHealthMonitor;
 
     @Autowired
     private StatsDClient statsDClient;
 
     private static final Logger logger = LoggerFactory.getLogger(AppHealthCheckService.class);
 
+    // Reads the state kept by DatabaseHealthMonitor instead of borrowing a connection per call
     public boolean checkDatabaseConnection() {
         statsDClient.incrementCounter("api.healthcheck.dbConnectionCheck");
-        long start = System.currentTimeMillis();
 
-        logger.info("Checking DB connection");
-        try {
-            appHealthCheckDAO.checkDBConnection();
+        if (databaseHealthMonitor.isHealthy()) {
             statsDClient.incrementCounter("api.healthcheck.dbConnectionCheck.success");
             return true;
-        } catch (Exception e) {
-            logger.error("Database connection failed", e);
-            statsDClient.incrementCounter("api.healthcheck.dbConnectionCheck.failure");
-            return false;
-        } finally {
-            long end = System.currentTimeMillis();
-            statsDClient.recordExecutionTime("api.healthcheck.dbConnectionCheck.time.milliseconds", end - start);
         }
+
+        // DatabaseHealthMonitor logs the state change once; this runs for every probe during an outage
+        logger.debug("Database is marked unhealthy by the background probe");
+        statsDClient.incrementCounter("api.healthcheck.dbConnectionCheck.failure");
+        return false;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,386 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.timgroup.statsd.StatsDClient;
+import edu.northeastern.csye6225.webapp.dto.UserImportResult;
+import edu.northeastern.csye6225.webapp.dto.UserImportRow;
+import edu.northeastern.csye6225.webapp.exception.ServiceBusyException;
+import edu.northeastern.csye6225.webapp.model.TimeOrderedUuids;
+import edu.northeastern.csye6225.webapp.model.User;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Imports users from an NDJSON or CSV stream. Rows are read and written back one batch at
+ * a time, so memory stays flat regardless of the file size; each batch is validated,
+ * checked against existing emails with one query, hashed in parallel and inserted with
+ * JDBC batch statements in a single short transaction.
+ */
+@Service
+public class BulkUserImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkUserImportService.class);
+
+    // Hibernate binds Instant columns (expiry, created_at) as UTC
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private static final String INSERT_USER = "INSERT INTO users (id, email, first_name, last_name, password, creation_time, update_time, verified) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, false)";
+    private static final String INSERT_TOKEN = "INSERT INTO verification_tokens (user_id, token, expiry) VALUES (?, ?, ?)";
+    private static final String INSERT_OUTBOX = "INSERT INTO outbox_messages (event_type, payload, created_at, next_attempt_at, attempts) "
+            + "VALUES (?, ?, ?, ?, 0)";
+
+    public enum Format { NDJSON, CSV }
+
+    public record Summary(int created, int rejected, long elapsedMillis) {
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private StatsDClient statsDClient;
+
+    @Autowired
+    private VerificationLinkSigner verificationLinkSigner;
+
+    @Value("${import.batch-size:500}")
+    private int batchSize;
+
+    // Hashing goes through the shared bounded pool; keep some of it free for interactive logins
+    @Value("${import.hash-parallelism:0}")
+    private int hashParallelism;
+
+    private ExecutorService hashingExecutor;
+
+    @PostConstruct
+    public void init() {
+        int threads = hashParallelism > 0 ? hashParallelism : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadCount = new AtomicInteger();
+        hashingExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "user-import-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hashingExecutor.shutdownNow();
+    }
+
+    public Summary importUsers(InputStream body, Format format, OutputStream out) throws IOException {
+        statsDClient.incrementCounter("api.user.import");
+        long start = System.currentTimeMillis();
+        int created = 0;
+        int total = 0;
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        String[] csvHeader = format == Format.CSV ? readCsvHeader(reader) : null;
+
+        List<PendingRow> batch = new ArrayList<>(batchSize);
+        long lineNumber = csvHeader == null ? 0 : 1;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            batch.add(parse(lineNumber, line, csvHeader));
+            if (batch.size() >= batchSize) {
+                List<UserImportResult> results = processBatch(batch);
+                created += write(results, out);
+                total += results.size();
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            List<UserImportResult> results = processBatch(batch);
+            created += write(results, out);
+            total += results.size();
+        }
+        int rejected = total - created;
+
+        long elapsed = System.currentTimeMillis() - start;
+        statsDClient.recordExecutionTime("api.user.import.time.milliseconds", elapsed);
+        statsDClient.recordGaugeValue("api.user.import.rowsPerSecond", elapsed == 0 ? created : created * 1000.0 / elapsed);
+        logger.info("Bulk import finished: {} created, {} rejected in {} ms", created, rejected, elapsed);
+        return new Summary(created, rejected, elapsed);
+    }
+
+    List<UserImportResult> processBatch(List<PendingRow> batch) {
+        long start = System.currentTimeMillis();
+        UserImportResult[] results = new UserImportResult[batch.size()];
+
+        // Validate and drop duplicates within the batch
+        Map<String, Integer> candidates = new LinkedHashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            PendingRow pending = batch.get(i);
+            String error = pending.error != null ? pending.error : validate(pending.row);
+            String key = error == null ? pending.row.email().toLowerCase(Locale.ROOT) : null;
+            if (key != null && candidates.containsKey(key)) {
+                error = "Duplicate email in import";
+            }
+            if (error != null) {
+                results[i] = UserImportResult.rejected(pending.line, pending.row == null ? null : pending.row.email(), error);
+            } else {
+                candidates.put(key, i);
+            }
+        }
+
+        // One query for the whole batch instead of a COUNT per row
+        if (!candidates.isEmpty()) {
+            List<String> existing = namedParameterJdbcTemplate.queryForList("SELECT email FROM users WHERE email IN (:emails)",
+                    new MapSqlParameterSource("emails", candidates.keySet()), String.class);
+            for (String email : existing) {
+                Integer index = candidates.remove(email.toLowerCase(Locale.ROOT));
+                if (index != null) {
+                    results[index] = UserImportResult.rejected(batch.get(index).line, batch.get(index).row.email(), "Email already exists");
+                }
+            }
+        }
+
+        List<ImportedUser> users = hash(batch, candidates.values(), results);
+        insert(users, batch, results);
+
+        statsDClient.recordExecutionTime("api.user.import.batch.time.milliseconds", System.currentTimeMillis() - start);
+        return Arrays.asList(results);
+    }
+
+    private List<ImportedUser> hash(List<PendingRow> batch, Collection<Integer> indexes, UserImportResult[] results) {
+        long start = System.currentTimeMillis();
+        Map<Integer, CompletableFuture<String>> hashes = new LinkedHashMap<>();
+        for (Integer index : indexes) {
+            String password = batch.get(index).row.password();
+            hashes.put(index, CompletableFuture.supplyAsync(() -> passwordEncoder.encode(password), hashingExecutor));
+        }
+
+        Instant now = Instant.now();
+        List<ImportedUser> users = new ArrayList<>(hashes.size());
+        for (Map.Entry<Integer, CompletableFuture<String>> entry : hashes.entrySet()) {
+            PendingRow pending = batch.get(entry.getKey());
+            try {
+                UUID id = TimeOrderedUuids.next();
+                String token = verificationLinkSigner.sign(id, pending.row.email(),
+                        now.plusSeconds(UserService.VERIFICATION_TOKEN_TTL_SECONDS));
+                users.add(new ImportedUser(entry.getKey(), id, pending.row, entry.getValue().join(), token, now));
+            } catch (CompletionException e) {
+                String error = e.getCause() instanceof ServiceBusyException ? "Server is busy, please retry this row" : "Password could not be hashed";
+                results[entry.getKey()] = UserImportResult.rejected(pending.line, pending.row.email(), error);
+            }
+        }
+        statsDClient.recordExecutionTime("api.user.import.hash.time.milliseconds", System.currentTimeMillis() - start);
+        return users;
+    }
+
+    private void insert(List<ImportedUser> users, List<PendingRow> batch, UserImportResult[] results) {
+        if (users.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> insertRows(users));
+            for (ImportedUser user : users) {
+                results[user.index] = UserImportResult.created(batch.get(user.index).line, user.row.email(), user.id);
+            }
+        } catch (DataIntegrityViolationException e) {
+            // Someone registered one of these emails since the existence check; retry row by row
+            logger.warn("Bulk insert of {} users failed, retrying individually: {}", users.size(), e.getMessage());
+            for (ImportedUser user : users) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> insertRows(List.of(user)));
+                    results[user.index] = UserImportResult.created(batch.get(user.index).line, user.row.email(), user.id);
+                } catch (DataIntegrityViolationException rowFailure) {
+                    results[user.index] = UserImportResult.rejected(batch.get(user.index).line, user.row.email(), "Email already exists");
+                }
+            }
+        }
+    }
+
+    private void insertRows(List<ImportedUser> users) {
+        Timestamp created = new Timestamp(users.get(0).createdAt.toEpochMilli());
+        Timestamp expiry = Timestamp.from(users.get(0).createdAt.plusSeconds(UserService.VERIFICATION_TOKEN_TTL_SECONDS));
+        Timestamp queuedAt = Timestamp.from(users.get(0).createdAt);
+        Calendar utc = Calendar.getInstance(UTC);
+
+        jdbcTemplate.batchUpdate(INSERT_USER, users, users.size(), (ps, user) -> {
+            ps.setBytes(1, toBytes(user.id));
+            ps.setString(2, user.row.email());
+            ps.setString(3, user.row.firstName());
+            ps.setString(4, user.row.lastName());
+            ps.setString(5, user.passwordHash);
+            ps.setTimestamp(6, created);
+            ps.setTimestamp(7, created);
+        });
+        jdbcTemplate.batchUpdate(INSERT_TOKEN, users, users.size(), (ps, user) -> {
+            ps.setBytes(1, toBytes(user.id));
+            ps.setString(2, user.token);
+            ps.setTimestamp(3, expiry, utc);
+        });
+        jdbcTemplate.batchUpdate(INSERT_OUTBOX, users, users.size(), (ps, user) -> bindOutbox(ps, user, queuedAt, utc));
+    }
+
+    private void bindOutbox(PreparedStatement ps, ImportedUser user, Timestamp queuedAt, Calendar utc) throws SQLException {
+        Map<String, String> messagePayload = new HashMap<>();
+        messagePayload.put("email", user.row.email());
+        messagePayload.put("token", user.token);
+        try {
+            ps.setString(1, UserService.VERIFICATION_EMAIL_EVENT);
+            ps.setString(2, objectMapper.writeValueAsString(messagePayload));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("JSON processing error");
+        }
+        ps.setTimestamp(3, queuedAt, utc);
+        ps.setTimestamp(4, queuedAt, utc);
+    }
+
+    // Reuses the entity's bean validation rules so imported rows meet the same bar as /register
+    private String validate(UserImportRow row) {
+        User user = new User();
+        user.setEmail(row.email());
+        user.setFirstName(row.firstName());
+        user.setLastName(row.lastName());
+        user.setPassword(row.password());
+        Set<ConstraintViolation<User>> violations = validator.validate(user);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream().map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining("; "));
+    }
+
+    private int write(List<UserImportResult> results, OutputStream out) throws IOException {
+        int created = 0;
+        for (UserImportResult result : results) {
+            if (UserImportResult.CREATED.equals(result.status())) {
+                created++;
+            }
+            out.write(objectMapper.writeValueAsBytes(result));
+            out.write('\n');
+        }
+        out.flush();
+
+        statsDClient.count("api.user.import.rows.created", created);
+        statsDClient.count("api.user.import.rows.rejected", results.size() - created);
+        return created;
+    }
+
+    private PendingRow parse(long lineNumber, String line, String[] csvHeader) {
+        try {
+            if (csvHeader == null) {
+                return new PendingRow(lineNumber, objectMapper.readValue(line, UserImportRow.class), null);
+            }
+            List<String> fields = splitCsv(line);
+            Map<String, String> values = new HashMap<>();
+            for (int i = 0; i < csvHeader.length && i < fields.size(); i++) {
+                values.put(csvHeader[i], fields.get(i));
+            }
+            return new PendingRow(lineNumber, new UserImportRow(values.get("email"), values.get("firstname"),
+                    values.get("lastname"), values.get("password")), null);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            return new PendingRow(lineNumber, null, "Malformed row");
+        }
+    }
+
+    // Column names are matched case-insensitively, ignoring '_' (first_name == firstName)
+    private String[] readCsvHeader(BufferedReader reader) throws IOException {
+        String header = reader.readLine();
+        if (header == null) {
+            return new String[0];
+        }
+        return splitCsv(header).stream()
+                .map(name -> name.trim().replace("_", "").toLowerCase(Locale.ROOT))
+                .toArray(String[]::new);
+    }
+
+    // RFC 4180 fields on a single line: commas, double quotes and "" escapes
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static byte[] toBytes(UUID id) {
+        return ByteBuffer.allocate(16)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .array();
+    }
+
+    record PendingRow(long line, UserImportRow row, String error) {
+    }
+
+    private record ImportedUser(int index, UUID id, UserImportRow row, String passwordHash, String token, Instant createdAt) {
+    }
+}
@@ -0,0 +1,189 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import com.timgroup.statsd.StatsDClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded, TTL-evicting cache of credentials that already passed BCrypt.
+ * Entries are keyed by email and hold an HMAC of the presented password under a
+ * per-process random key, so the plaintext is never stored. Every invalidation bumps a
+ * generation (striped by email, so memory stays fixed); a login that verified its password
+ * before an invalidation and tries to cache it afterwards is dropped.
+ */
+@Component
+public class CredentialCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(CredentialCache.class);
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int GENERATION_STRIPES = 1024;
+
+    @Autowired
+    private StatsDClient statsDClient;
+
+    @Value("${auth.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${auth.cache.max-entries:10000}")
+    private int maxEntries;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    private final SecretKeySpec digestKey;
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::newMac);
+
+    public CredentialCache() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        this.digestKey = new SecretKeySpec(key, HMAC_ALGORITHM);
+    }
+
+    public UserDetails get(String email, String presentedPassword) {
+        if (email == null || presentedPassword == null) {
+            return null;
+        }
+
+        Entry entry = entries.get(email);
+        if (entry == null) {
+            statsDClient.incrementCounter("auth.cache.miss");
+            return null;
+        }
+
+        if (entry.expiresAt - System.nanoTime() <= 0) {
+            if (entries.remove(email, entry)) {
+                statsDClient.incrementCounter("auth.cache.eviction");
+            }
+            statsDClient.incrementCounter("auth.cache.miss");
+            return null;
+        }
+
+        // Constant-time comparison so a wrong password doesn't leak how close it was
+        if (!MessageDigest.isEqual(entry.digest, digest(email, presentedPassword))) {
+            statsDClient.incrementCounter("auth.cache.miss");
+            return null;
+        }
+
+        statsDClient.incrementCounter("auth.cache.hit");
+        return entry.principal;
+    }
+
+    // Identity behind a cached login, without checking a password; lets IdentityContext skip the user query
+    public UserDetails peekPrincipal(String email) {
+        Entry entry = email == null ? null : entries.get(email);
+        if (entry == null || entry.expiresAt - System.nanoTime() <= 0) {
+            return null;
+        }
+        return entry.principal;
+    }
+
+    // Read before the password is checked against the database, and handed back to put
+    public long generation(String email) {
+        return generations.get(stripe(email));
+    }
+
+    // Skipped when the email was invalidated since the caller read its generation, so a password
+    // changed while this login was being verified is never cached
+    public void put(String email, String presentedPassword, UserDetails principal, long generation) {
+        if (email == null || presentedPassword == null || principal == null) {
+            return;
+        }
+        if (generation(email) != generation) {
+            statsDClient.incrementCounter("auth.cache.staleWrite");
+            return;
+        }
+
+        if (entries.size() >= maxEntries) {
+            evict();
+        }
+
+        long expiresAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(ttlSeconds);
+        Entry entry = new Entry(digest(email, presentedPassword), principal, expiresAt);
+        entries.put(email, entry);
+        // An invalidation between the check above and the put bumps first and removes second, so
+        // either it removed this entry or the generation has moved by now
+        if (generation(email) != generation) {
+            entries.remove(email, entry);
+            statsDClient.incrementCounter("auth.cache.staleWrite");
+        }
+    }
+
+    public void invalidate(String email) {
+        if (email == null) {
+            return;
+        }
+        generations.incrementAndGet(stripe(email));
+        if (entries.remove(email) != null) {
+            statsDClient.incrementCounter("auth.cache.invalidation");
+            logger.debug("Invalidated cached credentials for {}", email);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // Drop expired entries first, then arbitrary ones until we are back under the limit
+    private void evict() {
+        long now = System.nanoTime();
+        int evicted = 0;
+
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getValue().expiresAt - now <= 0) {
+                iterator.remove();
+                evicted++;
+            }
+        }
+
+        iterator = entries.entrySet().iterator();
+        while (entries.size() >= maxEntries && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evicted++;
+        }
+
+        if (evicted > 0) {
+            statsDClient.count("auth.cache.eviction", evicted);
+        }
+    }
+
+    private static int stripe(String email) {
+        return email == null ? 0 : (email.hashCode() & 0x7fffffff) % GENERATION_STRIPES;
+    }
+
+    private byte[] digest(String email, String presentedPassword) {
+        Mac mac = macs.get();
+        mac.update(email.getBytes(StandardCharsets.UTF_8));
+        mac.update((byte) 0);
+        return mac.doFinal(presentedPassword.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(digestKey);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+
+    private record Entry(byte[] digest, UserDetails principal, long expiresAt) {
+    }
+}
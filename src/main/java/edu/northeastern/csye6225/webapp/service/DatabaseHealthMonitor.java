@@ -0,0 +1,107 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import com.timgroup.statsd.StatsDClient;
+import edu.northeastern.csye6225.webapp.Dao.AppHealthCheckDao;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Probes the database in the background and keeps the result in a volatile flag,
+ * so request threads never check out a pool connection just to ask "is MySQL up?".
+ * The state only flips after {@code db.health.failure-threshold} consecutive failures
+ * and back after {@code db.health.recovery-threshold} consecutive successes.
+ * The probe runs on its own thread rather than the shared Spring scheduler, so a slow
+ * relay or sweep can never delay the health signal.
+ */
+@Component
+public class DatabaseHealthMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseHealthMonitor.class);
+
+    @Autowired
+    private AppHealthCheckDao appHealthCheckDao;
+
+    @Autowired
+    private StatsDClient statsDClient;
+
+    @Value("${db.health.interval-ms:5000}")
+    private long intervalMillis;
+
+    @Value("${db.health.failure-threshold:2}")
+    private int failureThreshold;
+
+    @Value("${db.health.recovery-threshold:2}")
+    private int recoveryThreshold;
+
+    private volatile boolean healthy = true;
+
+    // Only touched by the probe thread
+    private int consecutiveFailures;
+    private int consecutiveSuccesses;
+
+    private ScheduledExecutorService prober;
+
+    @PostConstruct
+    public void init() {
+        prober = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "db-health-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+        prober.scheduleWithFixedDelay(this::probe, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        prober.shutdownNow();
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    public void probe() {
+        long start = System.nanoTime();
+        boolean success;
+        try {
+            appHealthCheckDao.checkDBConnection();
+            success = true;
+        } catch (Exception e) {
+            // Anything escaping here would cancel the fixed-delay schedule for good
+            logger.warn("Database probe failed: {}", e.getMessage());
+            success = false;
+        }
+        statsDClient.recordExecutionTime("db.health.probe.time.milliseconds", (System.nanoTime() - start) / 1_000_000);
+        record(success);
+    }
+
+    void record(boolean success) {
+        if (success) {
+            consecutiveFailures = 0;
+            consecutiveSuccesses++;
+            if (!healthy && consecutiveSuccesses >= recoveryThreshold) {
+                healthy = true;
+                logger.info("Database marked healthy after {} successful probes", consecutiveSuccesses);
+                statsDClient.incrementCounter("db.health.state.up");
+            }
+        } else {
+            consecutiveSuccesses = 0;
+            consecutiveFailures++;
+            if (healthy && consecutiveFailures >= failureThreshold) {
+                healthy = false;
+                logger.error("Database marked unhealthy after {} failed probes", consecutiveFailures);
+                statsDClient.incrementCounter("db.health.state.down");
+            }
+        }
+        statsDClient.recordGaugeValue("db.health.up", healthy ? 1 : 0);
+    }
+}
@@ -0,0 +1,90 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import com.timgroup.statsd.StatsDClient;
+import edu.northeastern.csye6225.webapp.Dao.UserDao;
+import edu.northeastern.csye6225.webapp.model.AuthenticatedUser;
+import edu.northeastern.csye6225.webapp.model.UserSnapshot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Resolves the caller's {@link AuthenticatedUser} at most once per request and keeps it
+ * as a request attribute, so GetRequestAuthFilter, the authentication provider and the
+ * controllers all share the same lookup.
+ */
+@Component
+public class IdentityContext {
+
+    private static final String ATTRIBUTE = IdentityContext.class.getName() + ".principal";
+
+    @Autowired
+    private UserDao userDao;
+
+    @Autowired
+    private CredentialCache credentialCache;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private StatsDClient statsDClient;
+
+    // Principal for this request; may come from the credential cache and carry no password hash
+    @Transactional(readOnly = true)
+    public AuthenticatedUser resolve(String email) {
+        AuthenticatedUser current = current();
+        if (current != null && current.email().equals(email)) {
+            statsDClient.incrementCounter("api.identity.request.hit");
+            return current;
+        }
+
+        if (credentialCache.peekPrincipal(email) instanceof AuthenticatedUser cached) {
+            statsDClient.incrementCounter("api.identity.cache.hit");
+            set(cached);
+            return cached;
+        }
+
+        return load(email);
+    }
+
+    // Principal with its password hash, for the DAO authentication provider
+    @Transactional(readOnly = true)
+    public AuthenticatedUser resolveWithPassword(String email) {
+        AuthenticatedUser current = current();
+        if (current != null && current.email().equals(email) && current.passwordHash() != null) {
+            statsDClient.incrementCounter("api.identity.request.hit");
+            return current;
+        }
+        return load(email);
+    }
+
+    public AuthenticatedUser current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        Object principal = attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        return principal instanceof AuthenticatedUser authenticatedUser ? authenticatedUser : null;
+    }
+
+    public void set(AuthenticatedUser principal) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            attributes.setAttribute(ATTRIBUTE, principal, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    private AuthenticatedUser load(String email) {
+        statsDClient.incrementCounter("api.identity.load");
+        UserSnapshot snapshot = userCache.get(email, userDao::findByEmail);
+        if (snapshot == null) {
+            return null;
+        }
+        AuthenticatedUser principal = snapshot.toPrincipal();
+        set(principal);
+        return principal;
+    }
+}
@@ -0,0 +1,385 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import com.timgroup.statsd.StatsDClient;
+import edu.northeastern.csye6225.webapp.Dao.ImageDao;
+import edu.northeastern.csye6225.webapp.model.Image;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds resized JPEG copies of a freshly uploaded profile picture. The upload is spooled to
+ * a temp file rather than copied onto the heap, then decoded once on a bounded worker pool, each variant is scaled down from the next larger one and
+ * stored next to the original, and the URLs are then recorded on the Image row. When the
+ * queue is full the upload is not slowed down; the image simply has no variants.
+ */
+@Service
+public class ImageVariantPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageVariantPipeline.class);
+
+    /** A variant whose longer side is at most maxDimension pixels. */
+    public record Variant(String name, int maxDimension) {
+    }
+
+    @Autowired
+    private S3Service s3Service;
+
+    @Autowired
+    private ImageDao imageDao;
+
+    @Autowired
+    private ObjectDeletionRelay objectDeletionRelay;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private StatsDClient statsDClient;
+
+    // name:maxDimension pairs; empty disables the pipeline
+    @Value("${image.variants:thumb:64,small:256,medium:512}")
+    private String variantSpec;
+
+    @Value("${image.variants.jpeg-quality:0.8}")
+    private float jpegQuality;
+
+    // 0 means one worker per core
+    @Value("${image.pipeline.threads:0}")
+    private int threads;
+
+    @Value("${image.pipeline.queue-capacity:16}")
+    private int queueCapacity;
+
+    @Value("${image.pipeline.max-source-bytes:20971520}")
+    private long maxSourceBytes;
+
+    // Guards against images that are small on disk but enormous once decoded
+    @Value("${image.pipeline.max-source-pixels:40000000}")
+    private long maxSourcePixels;
+
+    private List<Variant> variants;
+    private ThreadPoolExecutor executor;
+    // Queued originals wait here; whatever is left is removed on shutdown
+    private Path spoolDir;
+
+    @PostConstruct
+    public void init() {
+        variants = parse(variantSpec);
+        try {
+            spoolDir = Files.createTempDirectory("image-variants");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create the image variant spool directory", e);
+        }
+        // Decoded pixels stay in memory; the default disk cache only adds I/O
+        ImageIO.setUseCache(false);
+        int workers = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "image-variant-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        try {
+            FileSystemUtils.deleteRecursively(spoolDir);
+        } catch (IOException e) {
+            logger.warn("Could not remove {}: {}", spoolDir, e.getMessage());
+        }
+    }
+
+    // Must be called while the upload is still readable; false when the variants were skipped.
+    // contentHash is null for objects that are not shared by content
+    public boolean submit(UUID imageId, String originalUrl, String contentHash, MultipartFile file) {
+        if (variants.isEmpty() || file.getSize() > maxSourceBytes) {
+            return false;
+        }
+        // Checked before spooling the upload, so a full queue costs nothing
+        if (executor.getQueue().remainingCapacity() == 0) {
+            statsDClient.incrementCounter("image.pipeline.rejected");
+            return false;
+        }
+
+        // A disk-backed upload is moved rather than copied, and the worker streams it from there,
+        // so the queue holds no image bytes on the heap
+        Path original = null;
+        try {
+            original = Files.createTempFile(spoolDir, "original-", ".upload");
+            file.transferTo(original.toFile());
+        } catch (IOException e) {
+            logger.warn("Could not spool {} for its variants: {}", originalUrl, e.getMessage());
+            deleteQuietly(original);
+            return false;
+        }
+
+        long queued = System.currentTimeMillis();
+        Path spooled = original;
+        try {
+            executor.execute(() -> process(imageId, originalUrl, contentHash, spooled, queued));
+        } catch (RejectedExecutionException e) {
+            statsDClient.incrementCounter("image.pipeline.rejected");
+            deleteQuietly(spooled);
+            return false;
+        }
+        statsDClient.recordGaugeValue("image.pipeline.queue.depth", executor.getQueue().size());
+        return true;
+    }
+
+    private void process(UUID imageId, String originalUrl, String contentHash, Path original, long queued) {
+        long start = System.currentTimeMillis();
+        statsDClient.recordExecutionTime("image.pipeline.queue.time.milliseconds", start - queued);
+
+        Map<String, byte[]> rendered;
+        try {
+            rendered = render(original.toFile());
+        } catch (IOException | RuntimeException e) {
+            statsDClient.incrementCounter("image.pipeline.error");
+            logger.warn("Could not build variants of {}: {}", originalUrl, e.getMessage());
+            return;
+        } finally {
+            deleteQuietly(original);
+        }
+        if (rendered.isEmpty()) {
+            return;
+        }
+
+        // The uploads run on the S3 client; this worker is free for the next image straight away
+        String originalKey = s3Service.keyOf(originalUrl);
+        Map<String, CompletableFuture<String>> uploads = new LinkedHashMap<>();
+        rendered.forEach((name, content) ->
+                uploads.put(name, s3Service.uploadBytes(variantKey(originalKey, name), content, "image/jpeg")));
+        long uploadStart = System.currentTimeMillis();
+        CompletableFuture.allOf(uploads.values().toArray(new CompletableFuture[0])).whenComplete((done, e) -> {
+            statsDClient.recordExecutionTime("image.pipeline.upload.time.milliseconds", System.currentTimeMillis() - uploadStart);
+            List<String> keys = uploads.keySet().stream().map(name -> variantKey(originalKey, name)).toList();
+            if (e != null) {
+                statsDClient.incrementCounter("image.pipeline.error");
+                logger.warn("Could not store variants of {}: {}", originalUrl, e.getMessage());
+                discard(keys, contentHash);
+                return;
+            }
+            Map<String, String> urls = new LinkedHashMap<>();
+            uploads.forEach((name, upload) -> urls.put(name, upload.join()));
+            record(imageId, urls, keys, contentHash);
+            statsDClient.recordExecutionTime("image.pipeline.time.milliseconds", System.currentTimeMillis() - start);
+        });
+    }
+
+    private void record(UUID imageId, Map<String, String> urls, List<String> keys, String contentHash) {
+        long start = System.currentTimeMillis();
+        try {
+            boolean recorded = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                Image image = imageDao.findById(imageId).orElse(null);
+                if (image == null) {
+                    return false;
+                }
+                image.setVariants(urls);
+                imageDao.save(image);
+                return true;
+            }));
+            if (!recorded) {
+                // The picture was deleted while its variants were being made
+                discard(keys, contentHash);
+            }
+        } catch (RuntimeException e) {
+            statsDClient.incrementCounter("image.pipeline.error");
+            logger.warn("Could not record variants of image {}: {}", imageId, e.getMessage());
+            discard(keys, contentHash);
+        } finally {
+            statsDClient.recordExecutionTime("image.pipeline.record.time.milliseconds", System.currentTimeMillis() - start);
+        }
+    }
+
+    // Variants of a shared picture may belong to another image with the same content, so those go through
+    // the relay's reference check
+    private void discard(List<String> keys, String contentHash) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> keys.forEach(key -> {
+                if (contentHash == null) {
+                    objectDeletionRelay.enqueue(key);
+                } else {
+                    objectDeletionRelay.enqueueIfUnreferenced(key, contentHash);
+                }
+            }));
+        } catch (RuntimeException e) {
+            logger.error("Could not queue orphaned variants {} for deletion: {}", keys, e.getMessage());
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Could not remove {}: {}", path, e.getMessage());
+        }
+    }
+
+    public Map<String, byte[]> render(byte[] original) throws IOException {
+        return render(new ByteArrayInputStream(original));
+    }
+
+    // Decodes once, then works down from the largest variant; sizes at or above the original are skipped.
+    // The source is whatever ImageIO can open a stream on: a File is read from disk as the decoder goes
+    private Map<String, byte[]> render(Object original) throws IOException {
+        long start = System.currentTimeMillis();
+        BufferedImage source = decode(original);
+        statsDClient.recordExecutionTime("image.pipeline.decode.time.milliseconds", System.currentTimeMillis() - start);
+
+        long resizeMillis = 0;
+        long encodeMillis = 0;
+        Map<String, byte[]> rendered = new LinkedHashMap<>();
+        BufferedImage current = source;
+        List<Variant> largestFirst = new ArrayList<>(variants);
+        largestFirst.sort(Comparator.comparingInt(Variant::maxDimension).reversed());
+        for (Variant variant : largestFirst) {
+            if (variant.maxDimension() >= Math.max(source.getWidth(), source.getHeight())) {
+                continue;
+            }
+            long stageStart = System.currentTimeMillis();
+            current = scale(current, variant.maxDimension());
+            long encodeStart = System.currentTimeMillis();
+            rendered.put(variant.name(), encode(current, jpegQuality));
+            resizeMillis += encodeStart - stageStart;
+            encodeMillis += System.currentTimeMillis() - encodeStart;
+        }
+        statsDClient.recordExecutionTime("image.pipeline.resize.time.milliseconds", resizeMillis);
+        statsDClient.recordExecutionTime("image.pipeline.encode.time.milliseconds", encodeMillis);
+        return rendered;
+    }
+
+    private BufferedImage decode(Object original) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(original)) {
+            if (in == null) {
+                throw new IOException("Could not open the image");
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxSourcePixels) {
+                    throw new IOException("Image has " + pixels + " pixels, more than " + maxSourcePixels);
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Halves with bilinear filtering until within 2x of the target, which keeps detail without a slow filter
+    static BufferedImage scale(BufferedImage source, int maxDimension) {
+        double ratio = (double) maxDimension / Math.max(source.getWidth(), source.getHeight());
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            current = draw(current, width, height);
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    // JPEG has no alpha, so transparent areas are flattened onto white
+    private static BufferedImage draw(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private static byte[] encode(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (MemoryCacheImageOutputStream stream = new MemoryCacheImageOutputStream(out)) {
+            writer.setOutput(stream);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    // Next to the original, so identical pictures share their variants too: <sha256> -> <sha256>.thumb.jpg
+    static String variantKey(String originalKey, String variantName) {
+        return originalKey + "." + variantName + ".jpg";
+    }
+
+    static List<Variant> parse(String spec) {
+        List<Variant> parsed = new ArrayList<>();
+        if (spec == null || spec.isBlank()) {
+            return parsed;
+        }
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("image.variants entries must be name:maxDimension, got " + entry);
+            }
+            parsed.add(new Variant(parts[0].trim(), Integer.parseInt(parts[1].trim())));
+        }
+        return parsed;
+    }
+}
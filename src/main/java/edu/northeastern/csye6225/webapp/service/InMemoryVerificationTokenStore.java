@@ -0,0 +1,111 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import com.timgroup.statsd.StatsDClient;
+import edu.northeastern.csye6225.webapp.model.VerificationToken;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pending tokens held in memory and expired by a TimingWheel. Every save is written
+ * through to verification_tokens so tokens survive a restart; a lookup that misses the
+ * map falls back to the table (restarts, other instances, bulk-imported users).
+ */
+public class InMemoryVerificationTokenStore implements VerificationTokenStore {
+
+    private static final int WHEEL_LEVELS = 4;
+
+    private final JpaVerificationTokenStore durableStore;
+    private final StatsDClient statsDClient;
+    private final TimingWheel<VerificationToken> wheel;
+    private final Map<String, VerificationToken> byToken = new ConcurrentHashMap<>();
+    private final Map<UUID, String> tokenByUser = new ConcurrentHashMap<>();
+
+    public InMemoryVerificationTokenStore(JpaVerificationTokenStore durableStore, StatsDClient statsDClient, long tickMillis) {
+        this.durableStore = durableStore;
+        this.statsDClient = statsDClient;
+        this.wheel = new TimingWheel<>(tickMillis, WHEEL_LEVELS, System.currentTimeMillis());
+    }
+
+    @Override
+    public VerificationToken save(VerificationToken token) {
+        VerificationToken saved = durableStore.save(token);
+        // Only visible once the row (and the user it points at) is committed
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    remember(saved);
+                }
+            });
+        } else {
+            remember(saved);
+        }
+        return saved;
+    }
+
+    @Override
+    public Optional<VerificationToken> findByToken(String token) {
+        VerificationToken cached = byToken.get(token);
+        if (cached != null) {
+            statsDClient.incrementCounter("verification.token.store.hit");
+            return Optional.of(cached);
+        }
+        statsDClient.incrementCounter("verification.token.store.miss");
+        Optional<VerificationToken> stored = durableStore.findByToken(token);
+        stored.filter(found -> !found.isExpired()).ifPresent(this::remember);
+        return stored;
+    }
+
+    @Override
+    public void deleteAllByUser_Id(UUID userId) {
+        durableStore.deleteAllByUser_Id(userId);
+        String token = tokenByUser.remove(userId);
+        if (token != null) {
+            byToken.remove(token);
+        }
+    }
+
+    // Called on every tick by VerificationTokenStoreConfig
+    public void advance() {
+        int expired = wheel.advance(System.currentTimeMillis(), this::forget);
+        if (expired > 0) {
+            statsDClient.count("verification.token.store.expired", expired);
+        }
+        statsDClient.recordGaugeValue("verification.token.store.size", byToken.size());
+    }
+
+    public int size() {
+        return byToken.size();
+    }
+
+    private void remember(VerificationToken token) {
+        byToken.put(token.getToken(), token);
+        UUID userId = token.getUserId();
+        if (userId != null) {
+            String previous = tokenByUser.put(userId, token.getToken());
+            if (previous != null && !previous.equals(token.getToken())) {
+                byToken.remove(previous);
+            }
+        }
+        wheel.schedule(token, token.getExpiry().toEpochMilli());
+    }
+
+    // The wheel can't cancel, so only drop the mapping if it still points at this exact token
+    private void forget(VerificationToken token) {
+        if (token.getExpiry().isAfter(Instant.now())) {
+            wheel.schedule(token, token.getExpiry().toEpochMilli());
+            return;
+        }
+        byToken.remove(token.getToken(), token);
+        UUID userId = token.getUserId();
+        if (userId != null) {
+            tokenByUser.remove(userId, token.getToken());
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import edu.northeastern.csye6225.webapp.Dao.VerificationTokenDao;
+import edu.northeastern.csye6225.webapp.model.VerificationToken;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Tokens kept only in verification_tokens. Also the durable layer under
+ * InMemoryVerificationTokenStore, and the owner of the expired-row purge.
+ */
+public class JpaVerificationTokenStore implements VerificationTokenStore {
+
+    private final VerificationTokenDao verificationTokenDao;
+
+    public JpaVerificationTokenStore(VerificationTokenDao verificationTokenDao) {
+        this.verificationTokenDao = verificationTokenDao;
+    }
+
+    @Override
+    public VerificationToken save(VerificationToken token) {
+        return verificationTokenDao.save(token);
+    }
+
+    @Override
+    public Optional<VerificationToken> findByToken(String token) {
+        return verificationTokenDao.findWithUserByToken(token);
+    }
+
+    @Override
+    public void deleteAllByUser_Id(UUID userId) {
+        verificationTokenDao.deleteAllByUser_Id(userId);
+    }
+
+    // One short transaction per batch, so a large backlog never holds long locks on the table
+    public int purgeExpired(Instant now, int batchSize, int maxBatches) {
+        int purged = 0;
+        for (int batch = 0; batch < maxBatches; batch++) {
+            int deleted = verificationTokenDao.purgeExpired(now, batchSize);
+            purged += deleted;
+            if (deleted < batchSize) {
+                break;
+            }
+        }
+        return purged;
+    }
+}
@@ -1,22 +1,36 @@
 package edu.northeastern.csye6225.webapp.service;
 
 import edu.northeastern.csye6225.webapp.Dao.UserDao;
+import edu.northeastern.csye6225.webapp.model.AuthenticatedUser;
 import edu.northeastern.csye6225.webapp.model.User;
-import edu.northeastern.csye6225.webapp.model.UserPrincipal;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import com.timgroup.statsd.StatsDClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 @Service
-public class MyUserDetailsService implements UserDetailsService {
+public class MyUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     @Autowired
-    private UserDao userRepo;
+    private IdentityContext identityContext;
+
+    @Autowired
+    private UserDao userDao;
+
+    @Autowired
+    private CredentialCache credentialCache;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private ReadYourWritesTracker readYourWritesTracker;
 
     @Autowired
     private StatsDClient statsDClient;
@@ -24,23 +38,47 @@ public class MyUserDetailsService implements UserDetailsService {
     private static final Logger logger = LoggerFactory.getLogger(MyUserDetailsService.class);
 
     @Override
+    @Transactional(readOnly = true)
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         statsDClient.incrementCounter("api.user.loadUserByUsername");
         long start = System.currentTimeMillis();
 
         try {
-            User user = userRepo.findByEmail(username);
+            // Reuses the row GetRequestAuthFilter already loaded for this request
+            AuthenticatedUser user = identityContext.resolveWithPassword(username);
             if (user == null) {
                 logger.error("User not found with email: {}", username);
                 statsDClient.incrementCounter("api.user.loadUserByUsername.error");
                 throw new UsernameNotFoundException("User not found");
             }
 
-            logger.info("User found with email: {}", user.getEmail());
-            return new UserPrincipal(user);
+            logger.info("User found with email: {}", user.email());
+            return user;
         } finally {
             long end = System.currentTimeMillis();
             statsDClient.recordExecutionTime("api.user.loadUserByUsername.time.milliseconds", end - start);
         }
     }
+
+    // Called by DaoAuthenticationProvider when the stored hash uses an outdated algorithm or cost
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        User user = userDao.findByEmail(userDetails.getUsername());
+        if (user == null) {
+            return userDetails;
+        }
+
+        user.setPassword(newPassword);
+        userDao.save(user);
+        credentialCache.invalidate(user.getEmail());
+        userCache.evict(user.getEmail());
+        readYourWritesTracker.recordWrite(user.getEmail());
+        statsDClient.incrementCounter("api.user.passwordRehash");
+        logger.info("Rehashed stored password for user: {}", user.getEmail());
+
+        AuthenticatedUser updated = AuthenticatedUser.from(user);
+        identityContext.set(updated);
+        return updated;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,252 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import com.timgroup.statsd.StatsDClient;
+import edu.northeastern.csye6225.webapp.Dao.ImageDao;
+import edu.northeastern.csye6225.webapp.Dao.PendingObjectDeletionDao;
+import edu.northeastern.csye6225.webapp.config.SchedulingConfig;
+import edu.northeastern.csye6225.webapp.exception.ServiceBusyException;
+import edu.northeastern.csye6225.webapp.model.PendingObjectDeletion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Removes queued objects from S3 with DeleteObjects (at most 1000 keys per call). Due rows
+ * are claimed under a lease in a short transaction (SKIP LOCKED, so several instances can
+ * drain concurrently), the objects are deleted with no transaction open, and the rows are
+ * settled in a second short transaction. Keys S3 fails to delete are retried with
+ * exponential backoff and the row is removed once they are gone.
+ * Shared content-addressed objects are checked against the images table first and kept if
+ * anything refers to them again. A new reference takes the same rows back with
+ * {@link #cancelPending} and again with {@link #confirmRevived} when it saves the image, so
+ * recording an image and draining its object never overlap on one hash.
+ */
+@Component
+public class ObjectDeletionRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(ObjectDeletionRelay.class);
+
+    // S3 rejects DeleteObjects requests with more than 1000 keys
+    static final int S3_BATCH_LIMIT = 1000;
+
+    @Autowired
+    private PendingObjectDeletionDao pendingObjectDeletionDao;
+
+    @Autowired
+    private ImageDao imageDao;
+
+    @Autowired
+    private S3Service s3Service;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private StatsDClient statsDClient;
+
+    @Value("${aws.s3.deletion.poll-limit:1000}")
+    private int pollLimit;
+
+    @Value("${aws.s3.deletion.retry.initial-backoff-ms:1000}")
+    private long initialBackoffMillis;
+
+    @Value("${aws.s3.deletion.retry.max-backoff-ms:300000}")
+    private long maxBackoffMillis;
+
+    // Has to outlast the S3 calls of one poll (aws.s3.async.api-call-timeout-ms per batch of 1000);
+    // rows of an instance that dies mid-drain become due again once it runs out
+    @Value("${aws.s3.deletion.lease-ms:300000}")
+    private long leaseMillis;
+
+    // How long an unreferenced shared object survives, so a re-upload of the same picture soon after a
+    // delete, such as a default avatar, finds it still there
+    @Value("${aws.s3.dedup.deletion-grace-ms:3600000}")
+    private long dedupGraceMillis;
+
+    // Queued in the caller's transaction, so the object is only deleted if its metadata delete commits
+    public void enqueue(String objectKey) {
+        Instant now = Instant.now();
+        PendingObjectDeletion deletion = new PendingObjectDeletion();
+        deletion.setObjectKey(objectKey);
+        deletion.setCreatedAt(now);
+        deletion.setNextAttemptAt(now);
+        pendingObjectDeletionDao.save(deletion);
+        statsDClient.incrementCounter("s3.deletion.enqueued");
+    }
+
+    // For an object shared by content: queued after the grace period, and only deleted if no image points to
+    // the hash when it comes due. Runs in the caller's transaction like enqueue
+    public void enqueueIfUnreferenced(String objectKey, String contentHash) {
+        Instant now = Instant.now();
+        PendingObjectDeletion deletion = new PendingObjectDeletion();
+        deletion.setObjectKey(objectKey);
+        deletion.setContentHash(contentHash);
+        deletion.setCreatedAt(now);
+        deletion.setNextAttemptAt(now.plusMillis(dedupGraceMillis));
+        pendingObjectDeletionDao.save(deletion);
+        statsDClient.incrementCounter("s3.deletion.enqueued");
+    }
+
+    // One waiting check per hash: an existing row is pushed out to a full grace period instead of adding
+    // another, so repeated requests for the same content don't grow the queue. Runs in the caller's transaction
+    public void ensureQueuedIfUnreferenced(String objectKey, String contentHash) {
+        Instant graceEnd = Instant.now().plusMillis(dedupGraceMillis);
+        if (pendingObjectDeletionDao.postponeUnclaimed(contentHash, graceEnd) > 0
+                || pendingObjectDeletionDao.existsByContentHashAndClaimedUntilIsNull(contentHash)) {
+            statsDClient.incrementCounter("s3.deletion.alreadyQueued");
+            return;
+        }
+        enqueueIfUnreferenced(objectKey, contentHash);
+    }
+
+    // Called in a short transaction of its own before an image for this content is recorded. Rows a relay has
+    // claimed mean the object may be deleted any moment, so the caller backs off until the relay has settled
+    // them; anything still waiting is dropped, since the hash is about to be referenced again. Returns the time
+    // the rows were taken back, for confirmRevived
+    public Instant cancelPending(String contentHash) {
+        Instant now = Instant.now();
+        List<PendingObjectDeletion> pending = pendingObjectDeletionDao.lockByContentHash(contentHash);
+        if (pending.isEmpty()) {
+            return now;
+        }
+        for (PendingObjectDeletion deletion : pending) {
+            if (deletion.getClaimedUntil() != null && deletion.getClaimedUntil().isAfter(now)) {
+                statsDClient.incrementCounter("s3.deletion.inFlight");
+                throw new ServiceBusyException("Server is busy, please retry shortly.", 1);
+            }
+        }
+        pendingObjectDeletionDao.deleteAll(pending);
+        statsDClient.count("s3.deletion.revived", pending.size());
+        return now;
+    }
+
+    // Called in the transaction that saves the image, once the caller has seen the object is still stored.
+    // Rows queued for the hash after cancelPending only come due a full grace period later, so no drain can
+    // have removed the object in between unless that much time has passed. The rows are locked again until
+    // the caller commits, so a drain can't claim them before the image is visible
+    public void confirmRevived(String contentHash, Instant revivedAt) {
+        if (Instant.now().isAfter(revivedAt.plusMillis(dedupGraceMillis))) {
+            statsDClient.incrementCounter("s3.deletion.reviveExpired");
+            throw new ServiceBusyException("Server is busy, please retry shortly.", 1);
+        }
+        cancelPending(contentHash);
+    }
+
+    // No row lock or pool connection is held while S3 works
+    @Scheduled(fixedDelayString = "${aws.s3.deletion.poll-interval-ms:5000}", scheduler = SchedulingConfig.RELAY_SCHEDULER)
+    public void drain() {
+        Instant now = Instant.now();
+        List<PendingObjectDeletion> claimed = transactionTemplate.execute(status -> claim(now));
+        if (claimed == null || claimed.isEmpty()) {
+            recordPending(now);
+            return;
+        }
+
+        for (int from = 0; from < claimed.size(); from += S3_BATCH_LIMIT) {
+            delete(claimed.subList(from, Math.min(from + S3_BATCH_LIMIT, claimed.size())), now);
+        }
+        recordPending(Instant.now());
+    }
+
+    // Pushes the rows past the lease, so other instances skip them once this transaction commits
+    private List<PendingObjectDeletion> claim(Instant now) {
+        List<PendingObjectDeletion> due = dropReferenced(pendingObjectDeletionDao.lockDue(now, pollLimit));
+        Instant leaseExpiry = now.plusMillis(leaseMillis);
+        for (PendingObjectDeletion deletion : due) {
+            deletion.setClaimedUntil(leaseExpiry);
+            deletion.setNextAttemptAt(leaseExpiry);
+        }
+        pendingObjectDeletionDao.saveAll(due);
+        return due;
+    }
+
+    void delete(List<PendingObjectDeletion> batch, Instant now) {
+        List<String> keys = batch.stream().map(PendingObjectDeletion::getObjectKey).distinct().toList();
+        statsDClient.recordGaugeValue("s3.deletion.batch.size", batch.size());
+
+        Map<String, String> failed;
+        try {
+            failed = s3Service.deleteObjects(keys).join();
+        } catch (CompletionException e) {
+            logger.warn("Batch of {} object deletions could not be sent: {}", batch.size(), e.getCause() == null ? e.getMessage() : e.getCause().getMessage());
+            transactionTemplate.executeWithoutResult(status -> batch.forEach(deletion -> scheduleRetry(deletion, now)));
+            statsDClient.count("s3.deletion.failed", batch.size());
+            return;
+        }
+
+        List<PendingObjectDeletion> deleted = new ArrayList<>(batch.size());
+        List<PendingObjectDeletion> retry = new ArrayList<>();
+        for (PendingObjectDeletion deletion : batch) {
+            String code = failed.get(deletion.getObjectKey());
+            if (code == null) {
+                deleted.add(deletion);
+                statsDClient.recordExecutionTime("s3.deletion.lag.milliseconds",
+                        Duration.between(deletion.getCreatedAt(), now).toMillis());
+            } else {
+                logger.warn("Object {} was not deleted by S3: {}", deletion.getObjectKey(), code);
+                retry.add(deletion);
+                statsDClient.incrementCounter("s3.deletion.failed");
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            pendingObjectDeletionDao.deleteAll(deleted);
+            retry.forEach(deletion -> scheduleRetry(deletion, now));
+        });
+        statsDClient.count("s3.deletion.deleted", deleted.size());
+    }
+
+    // Shared objects picked up by a new image during the grace period stay; their rows are simply dropped
+    private List<PendingObjectDeletion> dropReferenced(List<PendingObjectDeletion> due) {
+        List<String> hashes = due.stream().map(PendingObjectDeletion::getContentHash).filter(Objects::nonNull).distinct().toList();
+        if (hashes.isEmpty()) {
+            return due;
+        }
+        Set<String> referenced = new HashSet<>(imageDao.findReferencedContentHashes(hashes));
+        if (referenced.isEmpty()) {
+            return due;
+        }
+        List<PendingObjectDeletion> unreferenced = new ArrayList<>(due.size());
+        List<PendingObjectDeletion> revived = new ArrayList<>();
+        for (PendingObjectDeletion deletion : due) {
+            if (referenced.contains(deletion.getContentHash())) {
+                revived.add(deletion);
+            } else {
+                unreferenced.add(deletion);
+            }
+        }
+        pendingObjectDeletionDao.deleteAll(revived);
+        statsDClient.count("s3.deletion.revived", revived.size());
+        return unreferenced;
+    }
+
+    // Doubles per attempt up to the cap; the row stays queued until S3 confirms the delete
+    private void scheduleRetry(PendingObjectDeletion deletion, Instant now) {
+        int attempts = deletion.getAttempts() + 1;
+        long backoff = initialBackoffMillis << Math.min(attempts - 1, 20);
+        deletion.setAttempts(attempts);
+        deletion.setClaimedUntil(null);
+        deletion.setNextAttemptAt(now.plusMillis(Math.min(backoff, maxBackoffMillis)));
+        pendingObjectDeletionDao.save(deletion);
+    }
+
+    private void recordPending(Instant now) {
+        statsDClient.recordGaugeValue("s3.deletion.pending", pendingObjectDeletionDao.count());
+        Instant oldest = pendingObjectDeletionDao.findOldestCreatedAt();
+        statsDClient.recordGaugeValue("s3.deletion.pending.age.milliseconds",
+                oldest == null ? 0 : Duration.between(oldest, now).toMillis());
+    }
+}
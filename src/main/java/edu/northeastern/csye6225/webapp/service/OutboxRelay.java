@@ -0,0 +1,165 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import com.timgroup.statsd.StatsDClient;
+import edu.northeastern.csye6225.webapp.Dao.OutboxMessageDao;
+import edu.northeastern.csye6225.webapp.config.SchedulingConfig;
+import edu.northeastern.csye6225.webapp.model.OutboxMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.sns.SnsClient;
+import software.amazon.awssdk.services.sns.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequestEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchResponse;
+import software.amazon.awssdk.services.sns.model.PublishBatchResultEntry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Drains the outbox to SNS with PublishBatch (at most 10 entries per call). Due rows are
+ * claimed under a lease in a short transaction (SKIP LOCKED, so several instances can relay
+ * concurrently), published with no transaction open, and settled in a second short
+ * transaction. Failed entries are retried with exponential backoff and deleted once SNS
+ * has accepted them.
+ */
+@Component
+public class OutboxRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+
+    // SNS rejects PublishBatch requests with more than 10 entries
+    static final int SNS_BATCH_LIMIT = 10;
+
+    @Autowired
+    private OutboxMessageDao outboxMessageDao;
+
+    @Autowired
+    private SnsClient snsClient;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private StatsDClient statsDClient;
+
+    @Value("${sns.topic.arn}")
+    private String snsTopicArn;
+
+    @Value("${outbox.poll-limit:100}")
+    private int pollLimit;
+
+    @Value("${outbox.retry.initial-backoff-ms:1000}")
+    private long initialBackoffMillis;
+
+    @Value("${outbox.retry.max-backoff-ms:300000}")
+    private long maxBackoffMillis;
+
+    // Has to outlast the SNS calls of one poll; rows of an instance that dies mid-relay are published
+    // again once it runs out, which subscribers already tolerate from retries
+    @Value("${outbox.lease-ms:300000}")
+    private long leaseMillis;
+
+    // No row lock or pool connection is held while SNS works
+    @Scheduled(fixedDelayString = "${outbox.poll-interval-ms:1000}", scheduler = SchedulingConfig.RELAY_SCHEDULER)
+    public void relay() {
+        Instant now = Instant.now();
+        List<OutboxMessage> claimed = transactionTemplate.execute(status -> claim(now));
+        if (claimed == null || claimed.isEmpty()) {
+            recordPendingLag(now);
+            return;
+        }
+
+        for (int from = 0; from < claimed.size(); from += SNS_BATCH_LIMIT) {
+            publish(claimed.subList(from, Math.min(from + SNS_BATCH_LIMIT, claimed.size())), now);
+        }
+        recordPendingLag(Instant.now());
+    }
+
+    // Pushes the rows past the lease, so other instances skip them once this transaction commits
+    private List<OutboxMessage> claim(Instant now) {
+        List<OutboxMessage> due = outboxMessageDao.lockDue(now, pollLimit);
+        Instant leaseExpiry = now.plusMillis(leaseMillis);
+        for (OutboxMessage message : due) {
+            message.setNextAttemptAt(leaseExpiry);
+        }
+        outboxMessageDao.saveAll(due);
+        return due;
+    }
+
+    void publish(List<OutboxMessage> batch, Instant now) {
+        Map<String, OutboxMessage> byEntryId = new HashMap<>();
+        List<PublishBatchRequestEntry> entries = new ArrayList<>(batch.size());
+        for (OutboxMessage message : batch) {
+            String entryId = String.valueOf(message.getId());
+            byEntryId.put(entryId, message);
+            entries.add(PublishBatchRequestEntry.builder().id(entryId).message(message.getPayload()).build());
+        }
+        statsDClient.recordGaugeValue("outbox.batch.size", batch.size());
+
+        PublishBatchResponse response;
+        long start = System.currentTimeMillis();
+        try {
+            response = snsClient.publishBatch(PublishBatchRequest.builder()
+                    .topicArn(snsTopicArn)
+                    .publishBatchRequestEntries(entries)
+                    .build());
+        } catch (SdkException e) {
+            logger.warn("Outbox batch of {} could not be published: {}", batch.size(), e.getMessage());
+            transactionTemplate.executeWithoutResult(status -> batch.forEach(message -> scheduleRetry(message, now)));
+            statsDClient.count("outbox.failed", batch.size());
+            return;
+        } finally {
+            statsDClient.recordExecutionTime("outbox.publish.time.milliseconds", System.currentTimeMillis() - start);
+        }
+
+        List<OutboxMessage> published = new ArrayList<>(response.successful().size());
+        for (PublishBatchResultEntry result : response.successful()) {
+            OutboxMessage message = byEntryId.get(result.id());
+            if (message != null) {
+                published.add(message);
+                statsDClient.recordExecutionTime("outbox.lag.milliseconds",
+                        Duration.between(message.getCreatedAt(), now).toMillis());
+            }
+        }
+        List<OutboxMessage> retry = new ArrayList<>(response.failed().size());
+        for (BatchResultErrorEntry error : response.failed()) {
+            OutboxMessage message = byEntryId.get(error.id());
+            if (message != null) {
+                logger.warn("Outbox message {} was rejected by SNS: {} {}", message.getId(), error.code(), error.message());
+                retry.add(message);
+                statsDClient.incrementCounter("outbox.failed");
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            outboxMessageDao.deleteAll(published);
+            retry.forEach(message -> scheduleRetry(message, now));
+        });
+        statsDClient.count("outbox.published", published.size());
+    }
+
+    // Doubles per attempt up to the cap; the row stays in the outbox until SNS accepts it
+    private void scheduleRetry(OutboxMessage message, Instant now) {
+        int attempts = message.getAttempts() + 1;
+        long backoff = initialBackoffMillis << Math.min(attempts - 1, 20);
+        message.setAttempts(attempts);
+        message.setNextAttemptAt(now.plusMillis(Math.min(backoff, maxBackoffMillis)));
+        outboxMessageDao.save(message);
+    }
+
+    private void recordPendingLag(Instant now) {
+        Instant oldest = outboxMessageDao.findOldestCreatedAt();
+        statsDClient.recordGaugeValue("outbox.pending.age.milliseconds",
+                oldest == null ? 0 : Duration.between(oldest, now).toMillis());
+    }
+}
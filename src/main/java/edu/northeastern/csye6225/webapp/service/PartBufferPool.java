@@ -0,0 +1,55 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed-size byte buffers for multipart upload parts, shared by all uploads. Buffers are
+ * allocated on first use up to maxBuffers and then recycled, so the heap spent on part
+ * data never exceeds bufferSize * maxBuffers however many or large the uploads are.
+ */
+public class PartBufferPool {
+
+    private final int bufferSize;
+    private final int maxBuffers;
+    private final BlockingQueue<byte[]> free;
+    private final AtomicInteger allocated = new AtomicInteger();
+
+    public PartBufferPool(int bufferSize, int maxBuffers) {
+        this.bufferSize = bufferSize;
+        this.maxBuffers = maxBuffers;
+        this.free = new ArrayBlockingQueue<>(maxBuffers);
+    }
+
+    // Null when no buffer came free within the timeout
+    public byte[] acquire(long timeoutMillis) throws InterruptedException {
+        byte[] buffer = free.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        while (true) {
+            int current = allocated.get();
+            if (current >= maxBuffers) {
+                break;
+            }
+            if (allocated.compareAndSet(current, current + 1)) {
+                return new byte[bufferSize];
+            }
+        }
+        return free.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void release(byte[] buffer) {
+        free.offer(buffer);
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public int inUse() {
+        return allocated.get() - free.size();
+    }
+}
@@ -0,0 +1,64 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import com.timgroup.statsd.StatsDClient;
+import edu.northeastern.csye6225.webapp.config.ReplicaRoutingDataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers which users wrote recently so their own reads stay on the primary until the
+ * replicas have caught up ({@code db.replica.read-your-writes-ms}).
+ */
+@Component
+public class ReadYourWritesTracker {
+
+    @Autowired
+    private StatsDClient statsDClient;
+
+    @Value("${db.replica.read-your-writes-ms:5000}")
+    private long windowMillis;
+
+    private final Map<String, Long> recentWriters = new ConcurrentHashMap<>();
+
+    public void recordWrite(String email) {
+        if (email != null) {
+            recentWriters.put(key(email), System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMillis));
+        }
+    }
+
+    // Pins this thread's reads to the primary when the caller wrote within the window
+    public boolean pinIfRecentWriter(String email) {
+        Long until = email == null ? null : recentWriters.get(key(email));
+        if (until == null) {
+            return false;
+        }
+        if (until - System.nanoTime() <= 0) {
+            recentWriters.remove(key(email), until);
+            return false;
+        }
+        ReplicaRoutingDataSource.pinToPrimary();
+        statsDClient.incrementCounter("db.route.readYourWrites");
+        return true;
+    }
+
+    public void clear() {
+        ReplicaRoutingDataSource.clearPin();
+    }
+
+    @Scheduled(fixedDelayString = "${db.replica.read-your-writes-ms:5000}")
+    public void evictExpired() {
+        long now = System.nanoTime();
+        recentWriters.values().removeIf(until -> until - now <= 0);
+    }
+
+    private static String key(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+}
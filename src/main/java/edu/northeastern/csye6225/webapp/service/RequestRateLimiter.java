@@ -0,0 +1,111 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import com.timgroup.statsd.StatsDClient;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Per-client limits applied by GetRequestAuthFilter before any database or hashing work.
+ * Route limits are charged per client IP on every request; failed Basic-auth attempts
+ * are charged per IP and per email, and only checked (not charged) up front.
+ */
+@Component
+public class RequestRateLimiter {
+
+    public static final String REGISTER = "register";
+    public static final String TOKEN = "token";
+
+    @Autowired
+    private StatsDClient statsDClient;
+
+    @Value("${ratelimit.register.capacity:5}")
+    private int registerCapacity;
+
+    @Value("${ratelimit.register.refill-per-second:0.1}")
+    private double registerRefillPerSecond;
+
+    @Value("${ratelimit.token.capacity:20}")
+    private int tokenCapacity;
+
+    @Value("${ratelimit.token.refill-per-second:0.5}")
+    private double tokenRefillPerSecond;
+
+    @Value("${ratelimit.auth-failure.capacity:10}")
+    private int authFailureCapacity;
+
+    @Value("${ratelimit.auth-failure.refill-per-second:0.05}")
+    private double authFailureRefillPerSecond;
+
+    @Value("${ratelimit.max-buckets:50000}")
+    private int maxBuckets;
+
+    @Value("${ratelimit.idle-seconds:600}")
+    private long idleSeconds;
+
+    @Value("${ratelimit.retry-after-seconds:1}")
+    private int retryAfterSeconds;
+
+    private Map<String, TokenBucketRateLimiter> routeLimiters;
+    private TokenBucketRateLimiter authFailures;
+
+    @PostConstruct
+    public void init() {
+        routeLimiters = Map.of(
+                REGISTER, new TokenBucketRateLimiter(registerCapacity, registerRefillPerSecond, maxBuckets, idleSeconds),
+                TOKEN, new TokenBucketRateLimiter(tokenCapacity, tokenRefillPerSecond, maxBuckets, idleSeconds));
+        authFailures = new TokenBucketRateLimiter(authFailureCapacity, authFailureRefillPerSecond, maxBuckets, idleSeconds);
+    }
+
+    public boolean tryAcquireRoute(String limit, String clientIp) {
+        TokenBucketRateLimiter limiter = routeLimiters.get(limit);
+        if (limiter == null || limiter.tryAcquire(clientIp)) {
+            return true;
+        }
+        statsDClient.incrementCounter("api.ratelimit." + limit + ".rejected");
+        return false;
+    }
+
+    public boolean allowAuthAttempt(String clientIp, String email) {
+        if (authFailures.hasToken(ipKey(clientIp)) && authFailures.hasToken(emailKey(email))) {
+            return true;
+        }
+        statsDClient.incrementCounter("api.ratelimit.authFailure.rejected");
+        return false;
+    }
+
+    public void recordAuthFailure(String clientIp, String email) {
+        authFailures.tryAcquire(ipKey(clientIp));
+        authFailures.tryAcquire(emailKey(email));
+        statsDClient.incrementCounter("api.ratelimit.authFailure.recorded");
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    // Buckets that have refilled completely carry no state, so dropping them is free
+    @Scheduled(fixedDelayString = "${ratelimit.sweep-interval-ms:60000}")
+    public void evictIdle() {
+        authFailures.evictIdle();
+        int buckets = authFailures.size();
+        for (TokenBucketRateLimiter limiter : routeLimiters.values()) {
+            limiter.evictIdle();
+            buckets += limiter.size();
+        }
+        statsDClient.recordGaugeValue("api.ratelimit.buckets", buckets);
+    }
+
+    private static String ipKey(String clientIp) {
+        return "ip:" + clientIp;
+    }
+
+    private static String emailKey(String email) {
+        return "email:" + email.toLowerCase(Locale.ROOT);
+    }
+}
@@ -1,30 +1,74 @@
 package edu.northeastern.csye6225.webapp.service;
 
-import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.model.ObjectMetadata;
-import com.amazonaws.services.s3.model.PutObjectRequest;
-import com.amazonaws.services.s3.model.DeleteObjectRequest;
 import com.timgroup.statsd.StatsDClient;
+import edu.northeastern.csye6225.webapp.exception.ServiceBusyException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Utilities;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.GetUrlRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Error;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
 
-import java.io.File;
-import java.io.FileOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 @Service
 public class S3Service {
 
     @Autowired
-    private AmazonS3 amazonS3;
+    private S3AsyncClient s3AsyncClient;
+
+    @Autowired
+    private S3Presigner s3Presigner;
 
     @Autowired
     private StatsDClient statsDClient;
@@ -32,78 +76,391 @@ public class S3Service {
     @Value("${aws.s3.bucket}")
     private String bucketName;
 
+    @Value("${aws.s3.object.cache-control:max-age=31536000, immutable}")
+    private String objectCacheControl;
+
+    // Long enough to start a direct upload, short enough that a leaked URL is soon useless
+    @Value("${aws.s3.presign.ttl-seconds:300}")
+    private long presignTtlSeconds;
+
+    @Value("${aws.s3.multipart.threshold-bytes:16777216}")
+    private long multipartThreshold;
+
+    // S3 rejects parts under 5 MiB other than the last one
+    @Value("${aws.s3.multipart.part-size-bytes:8388608}")
+    private int partSize;
+
+    @Value("${aws.s3.multipart.buffer-pool-size:8}")
+    private int bufferPoolSize;
+
+    @Value("${aws.s3.multipart.parallelism:4}")
+    private int partParallelism;
+
+    @Value("${aws.s3.multipart.buffer-wait-ms:5000}")
+    private long bufferWaitMillis;
+
+    // Reads upload streams and fills part buffers, so no request or event-loop thread ever blocks on them
+    @Value("${aws.s3.async.io-threads:8}")
+    private int ioThreads;
+
+    private PartBufferPool bufferPool;
+    private ExecutorService ioExecutor;
+    private S3Utilities utilities;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
     private static final Logger logger = LoggerFactory.getLogger(S3Service.class);
 
-    public Map<String, Object> uploadFile(MultipartFile multipartFile) throws IOException {
-        statsDClient.incrementCounter("api.s3.uploadFile");
-        long start = System.currentTimeMillis();
+    @PostConstruct
+    public void init() {
+        bufferPool = new PartBufferPool(partSize, bufferPoolSize);
+        utilities = s3AsyncClient.utilities();
+        AtomicInteger threadCount = new AtomicInteger();
+        ioExecutor = Executors.newFixedThreadPool(ioThreads, runnable -> {
+            Thread thread = new Thread(runnable, "s3-io-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ioExecutor.shutdownNow();
+    }
 
-        File file = convertMultiPartFileToFile(multipartFile);
-        String fileName = System.currentTimeMillis() + "_" + multipartFile.getOriginalFilename();
-        String fileUrl = null;
-        ObjectMetadata metadata = null;
+    // Content-addressed: the object key is the SHA-256 of the bytes, so identical pictures share one object and
+    // a repeat upload costs a HEAD instead of a PUT. Large files go up as parallel parts from the shared buffer pool.
+    // Completes on an S3 completion thread, never the caller's
+    public CompletableFuture<Map<String, Object>> uploadFile(MultipartFile multipartFile) {
+        long size = multipartFile.getSize();
+        String contentType = multipartFile.getContentType();
 
+        // One HEAD, then at most one PUT: everything the caller needs is known locally or comes back on those
+        return track("api.s3.uploadFile", () -> CompletableFuture.supplyAsync(() -> sha256(multipartFile), ioExecutor)
+                .thenCompose(contentHash -> head(contentHash).thenCompose(existing -> {
+                    if (existing != null) {
+                        statsDClient.incrementCounter("api.s3.dedup.hit");
+                        statsDClient.count("api.s3.dedup.bytesSaved", size);
+                        return CompletableFuture.completedFuture(new StoredObject(contentHash, existing.eTag(), true));
+                    }
+                    statsDClient.incrementCounter("api.s3.dedup.miss");
+                    return upload(multipartFile, contentHash, size, contentType)
+                            .thenApply(eTag -> new StoredObject(contentHash, eTag, false));
+                }))).thenApply(stored -> {
+            Map<String, Object> result = new HashMap<>();
+            result.put("fileUrl", urlOf(stored.key()));
+            result.put("contentHash", stored.key());
+            result.put("deduplicated", stored.deduplicated());
+            result.put("contentType", contentType);
+            result.put("size", size);
+            result.put("lastModified", new Date());
+            result.put("eTag", stored.eTag());
+            return result;
+        });
+    }
+
+    private record StoredObject(String key, String eTag, boolean deduplicated) {
+    }
+
+    private CompletableFuture<String> upload(MultipartFile multipartFile, String key, long size, String contentType) {
+        InputStream in;
         try {
-            amazonS3.putObject(new PutObjectRequest(bucketName, fileName, file));
-            fileUrl = amazonS3.getUrl(bucketName, fileName).toString();
-            metadata = amazonS3.getObjectMetadata(bucketName, fileName);
+            in = multipartFile.getInputStream();
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<String> eTag = size >= multipartThreshold
+                ? multipartUpload(key, in, size, contentType)
+                : putObject(key, in, size, contentType);
+        return eTag.whenComplete((tag, e) -> closeQuietly(in));
+    }
 
-        } catch (Exception e) {
-            statsDClient.incrementCounter("api.s3.uploadFile.error");
-            throw e;
+    // Runs on the I/O pool over the container's copy of the upload (memory or a local temp file), so hashing
+    // first never holds an S3 connection open and the PUT is only started once the key is known
+    private String sha256(MultipartFile multipartFile) {
+        long start = System.currentTimeMillis();
+        try (InputStream in = multipartFile.getInputStream()) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (NoSuchAlgorithmException e) {
+            // Every JRE is required to ship SHA-256
+            throw new IllegalStateException(e);
         } finally {
-            file.delete();
-            long end = System.currentTimeMillis();
-            statsDClient.recordExecutionTime("api.s3.uploadFile.time.milliseconds", end - start);
+            statsDClient.recordExecutionTime("api.s3.hash.time.milliseconds", System.currentTimeMillis() - start);
         }
+    }
 
-        Map<String, Object> result = new HashMap<>();
-        result.put("fileUrl", fileUrl);
-        if (metadata != null) {
-            result.put("contentType", metadata.getContentType());
-            result.put("size", metadata.getContentLength());
-            result.put("lastModified", metadata.getLastModified());
-        }
+    // A PUT URL for exactly these bytes: type, length and SHA-256 are signed, so S3 refuses any other body
+    // under the key. Signed locally; no request is made until the client uses it
+    public Map<String, Object> presignUpload(String contentHash, String contentType, long size) {
+        PutObjectRequest request = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(contentHash)
+                .contentType(contentType)
+                .cacheControl(objectCacheControl)
+                .contentLength(size)
+                .checksumSHA256(Base64.getEncoder().encodeToString(HexFormat.of().parseHex(contentHash)))
+                .build();
+        PresignedPutObjectRequest presigned = s3Presigner.presignPutObject(PutObjectPresignRequest.builder()
+                .signatureDuration(Duration.ofSeconds(presignTtlSeconds))
+                .putObjectRequest(request)
+                .build());
+        statsDClient.incrementCounter("api.s3.presignUpload");
 
+        // Headers the client has to send as signed; its HTTP stack sets Host and Content-Length itself
+        Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        presigned.signedHeaders().forEach((name, values) -> {
+            if (!name.equalsIgnoreCase("host") && !name.equalsIgnoreCase("content-length")) {
+                headers.put(name, String.join(",", values));
+            }
+        });
+        Map<String, Object> result = new HashMap<>();
+        result.put("uploadUrl", presigned.url().toString());
+        result.put("method", "PUT");
+        result.put("headers", headers);
+        result.put("key", contentHash);
+        result.put("expiresAt", Date.from(presigned.expiration()));
         return result;
     }
 
-    public void deleteFile(String fileUrl) {
-        statsDClient.incrementCounter("api.s3.deleteFile");
-        long start = System.currentTimeMillis();
+    // One HEAD; completes with the object's metadata, or null when nothing is stored under the key
+    public CompletableFuture<Map<String, Object>> describeObject(String key) {
+        return track("api.s3.describeObject", () -> head(key)).thenApply(response -> {
+            if (response == null) {
+                return null;
+            }
+            Map<String, Object> result = new HashMap<>();
+            result.put("fileUrl", urlOf(key));
+            result.put("contentType", response.contentType());
+            result.put("size", response.contentLength());
+            result.put("lastModified", response.lastModified() == null ? new Date() : Date.from(response.lastModified()));
+            result.put("eTag", response.eTag());
+            return result;
+        });
+    }
+
+    // Completes with null when there is no object under the key
+    private CompletableFuture<HeadObjectResponse> head(String key) {
+        return s3AsyncClient.headObject(HeadObjectRequest.builder().bucket(bucketName).key(key).build())
+                .handle((response, e) -> {
+                    if (e == null) {
+                        return response;
+                    }
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof S3Exception s3Exception && s3Exception.statusCode() == 404) {
+                        return null;
+                    }
+                    throw e instanceof CompletionException completion ? completion : new CompletionException(cause);
+                });
+    }
+
+    // For objects the application produced itself, such as resized variants; completes with the object's URL
+    public CompletableFuture<String> uploadBytes(String key, byte[] content, String contentType) {
+        PutObjectRequest request = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .cacheControl(objectCacheControl)
+                .contentLength((long) content.length)
+                .build();
+        return track("api.s3.uploadBytes", () -> s3AsyncClient.putObject(request, AsyncRequestBody.fromBytesUnsafe(content)))
+                .thenApply(response -> urlOf(key));
+    }
+
+    // Computed client-side from the bucket and region, not a request
+    private String urlOf(String key) {
+        return utilities.getUrl(GetUrlRequest.builder().bucket(bucketName).key(key).build()).toString();
+    }
+
+    // Content type and caching are fixed at write time; a key always names the same bytes, so objects are immutable
+    private CompletableFuture<String> putObject(String key, InputStream in, long size, String contentType) {
+        PutObjectRequest request = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .cacheControl(objectCacheControl)
+                .contentLength(size)
+                .build();
+        return s3AsyncClient.putObject(request, AsyncRequestBody.fromInputStream(in, size, ioExecutor))
+                .thenApply(PutObjectResponse::eTag);
+    }
+
+    // Completes with the ETag of the assembled object
+    private CompletableFuture<String> multipartUpload(String key, InputStream in, long size, String contentType) {
+        statsDClient.incrementCounter("api.s3.multipartUpload");
+        CreateMultipartUploadRequest request = CreateMultipartUploadRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .cacheControl(objectCacheControl)
+                .build();
+        return s3AsyncClient.createMultipartUpload(request)
+                .thenComposeAsync(created -> uploadParts(key, created.uploadId(), in, size), ioExecutor);
+    }
 
-        String fileName = fileUrl.substring(fileUrl.lastIndexOf("/") + 1);
+    // Runs on the I/O pool: reading the stream and waiting for a free buffer block only that thread
+    private CompletableFuture<String> uploadParts(String key, String uploadId, InputStream in, long size) {
+        // Caps this upload's share of the pool, so its heap use doesn't depend on the file size
+        Semaphore partsInFlight = new Semaphore(partParallelism);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
         try {
-            amazonS3.deleteObject(new DeleteObjectRequest(bucketName, fileName));
-        } catch (Exception e) {
-            statsDClient.incrementCounter("api.s3.deleteFile.error");
-            throw e;
-        } finally {
-            long end = System.currentTimeMillis();
-            statsDClient.recordExecutionTime("api.s3.deleteFile.time.milliseconds", end - start);
+            long remaining = size;
+            int partNumber = 1;
+            while (remaining > 0 && failure.get() == null) {
+                int length = (int) Math.min(bufferPool.getBufferSize(), remaining);
+                partsInFlight.acquire();
+                byte[] buffer = bufferPool.acquire(bufferWaitMillis);
+                if (buffer == null) {
+                    partsInFlight.release();
+                    statsDClient.incrementCounter("api.s3.multipartUpload.busy");
+                    throw new ServiceBusyException("Server is busy, please retry shortly.", 1);
+                }
+                try {
+                    readFully(in, buffer, length);
+                } catch (IOException e) {
+                    bufferPool.release(buffer);
+                    partsInFlight.release();
+                    throw e;
+                }
+                statsDClient.recordGaugeValue("api.s3.partBuffers.inUse", bufferPool.inUse());
+
+                int number = partNumber++;
+                UploadPartRequest part = UploadPartRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .partNumber(number)
+                        .contentLength((long) length)
+                        .build();
+                // The buffer is handed over without a copy and only recycled once the SDK is done with it, retries included
+                parts.add(s3AsyncClient.uploadPart(part, AsyncRequestBody.fromByteBufferUnsafe(ByteBuffer.wrap(buffer, 0, length)))
+                        .thenApply(response -> CompletedPart.builder().partNumber(number).eTag(response.eTag()).build())
+                        .whenComplete((completed, e) -> {
+                            if (e != null) {
+                                failure.compareAndSet(null, e);
+                            }
+                            bufferPool.release(buffer);
+                            partsInFlight.release();
+                        }));
+                remaining -= length;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort(key, uploadId);
+            return CompletableFuture.failedFuture(new InterruptedIOException("Interrupted while uploading " + key));
+        } catch (IOException | RuntimeException e) {
+            abort(key, uploadId);
+            return CompletableFuture.failedFuture(e);
         }
+
+        return CompletableFuture.allOf(parts.toArray(new CompletableFuture[0]))
+                .thenCompose(done -> s3AsyncClient.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .multipartUpload(CompletedMultipartUpload.builder()
+                                .parts(parts.stream().map(CompletableFuture::join).toList())
+                                .build())
+                        .build()))
+                .thenApply(CompleteMultipartUploadResponse::eTag)
+                .whenComplete((eTag, e) -> {
+                    if (e != null) {
+                        abort(key, uploadId);
+                    }
+                });
     }
 
-    private File convertMultiPartFileToFile(MultipartFile file) throws IOException {
-        statsDClient.incrementCounter("api.s3.convertFile");
-        long start = System.currentTimeMillis();
+    private void abort(String key, String uploadId) {
+        s3AsyncClient.abortMultipartUpload(AbortMultipartUploadRequest.builder().bucket(bucketName).key(key).uploadId(uploadId).build())
+                .whenComplete((response, e) -> {
+                    if (e != null) {
+                        // A lifecycle rule on incomplete uploads is the backstop for this
+                        logger.warn("Failed to abort multipart upload {} for {}: {}", uploadId, key, e.getMessage());
+                    }
+                });
+        statsDClient.incrementCounter("api.s3.multipartUpload.aborted");
+    }
 
-        // Create a temp file in the /tmp directory
-        Path tempFilePath = Files.createTempFile("upload-", "-" + file.getOriginalFilename());
-        File convertedFile = tempFilePath.toFile();
+    private static void readFully(InputStream in, byte[] buffer, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            int read = in.read(buffer, offset, length - offset);
+            if (read < 0) {
+                throw new EOFException("Upload ended after " + offset + " of " + length + " bytes of a part");
+            }
+            offset += read;
+        }
+    }
 
-        try (FileOutputStream fos = new FileOutputStream(convertedFile)) {
-            fos.write(file.getBytes());
-            logger.info("Temporary file created at: {}", convertedFile.getAbsolutePath());
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
         } catch (IOException e) {
-            statsDClient.incrementCounter("api.s3.convertFile.error");
-            logger.error("Error creating temporary file for upload: {}", e.getMessage(), e);
-            throw e;
-        } finally {
-            long end = System.currentTimeMillis();
-            statsDClient.recordExecutionTime("api.s3.convertFile.time.milliseconds", end - start);
+            logger.debug("Failed to close upload stream: {}", e.getMessage());
         }
+    }
+
+    public CompletableFuture<Void> deleteFile(String fileUrl) {
+        String fileName = keyOf(fileUrl);
+        return track("api.s3.deleteFile", () -> s3AsyncClient.deleteObject(DeleteObjectRequest.builder().bucket(bucketName).key(fileName).build()))
+                .thenApply(response -> null);
+    }
+
+    // One DeleteObjects call for up to 1000 keys; completes with the keys S3 could not delete and why
+    public CompletableFuture<Map<String, String>> deleteObjects(List<String> keys) {
+        DeleteObjectsRequest request = DeleteObjectsRequest.builder()
+                .bucket(bucketName)
+                .delete(Delete.builder()
+                        .objects(keys.stream().map(key -> ObjectIdentifier.builder().key(key).build()).toList())
+                        // Only failures come back
+                        .quiet(true)
+                        .build())
+                .build();
+        return track("api.s3.deleteObjects", () -> s3AsyncClient.deleteObjects(request))
+                .thenApply(response -> {
+                    Map<String, String> failed = new HashMap<>();
+                    for (S3Error error : response.errors()) {
+                        failed.put(error.key(), error.code());
+                    }
+                    return failed;
+                });
+    }
+
+    // Objects are stored at the bucket root under the last path segment of their URL: the content hash for
+    // uploads since content addressing, <millis>_<file name> before that
+    public String keyOf(String fileUrl) {
+        return fileUrl.substring(fileUrl.lastIndexOf("/") + 1);
+    }
+
+    // Counts, times and tracks the number of S3 operations in flight across all callers
+    private <T> CompletableFuture<T> track(String metric, Supplier<CompletableFuture<T>> operation) {
+        statsDClient.incrementCounter(metric);
+        long start = System.currentTimeMillis();
+        statsDClient.recordGaugeValue("api.s3.inFlight", inFlight.incrementAndGet());
+
+        CompletableFuture<T> future;
+        try {
+            future = operation.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        return future.whenComplete((result, e) -> {
+            statsDClient.recordGaugeValue("api.s3.inFlight", inFlight.decrementAndGet());
+            if (e != null) {
+                statsDClient.incrementCounter(metric + ".error");
+            }
+            statsDClient.recordExecutionTime(metric + ".time.milliseconds", System.currentTimeMillis() - start);
+        });
+    }
 
-        return convertedFile;
+    public int inFlight() {
+        return inFlight.get();
     }
-}
\ No newline at end of file
+}
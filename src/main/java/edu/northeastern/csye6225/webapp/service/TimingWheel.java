@@ -0,0 +1,109 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel: 64 slots per level, each level 64 times coarser than the one
+ * below. Scheduling is O(1); advancing fires the current slot and, once per rotation,
+ * cascades the next level's slot down. Items cannot be cancelled, so callers check on
+ * expiry whether the item is still current.
+ */
+public class TimingWheel<T> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    private final long tickMillis;
+    private final int levels;
+    private final long horizonTicks;
+    private final List<List<Timeout<T>>> slots;
+    private long currentTick;
+    private int size;
+
+    public TimingWheel(long tickMillis, int levels, long startMillis) {
+        if (tickMillis <= 0 || levels <= 0 || levels * SLOT_BITS >= Long.SIZE - 1) {
+            throw new IllegalArgumentException("Invalid timing wheel geometry");
+        }
+        this.tickMillis = tickMillis;
+        this.levels = levels;
+        this.horizonTicks = 1L << (levels * SLOT_BITS);
+        this.slots = new ArrayList<>(levels * SLOTS);
+        for (int i = 0; i < levels * SLOTS; i++) {
+            slots.add(new ArrayList<>());
+        }
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    // Deadlines already in the past fire on the next tick; ones beyond the top level are re-cascaded later
+    public synchronized void schedule(T item, long deadlineMillis) {
+        long deadlineTick = Math.max(Math.floorDiv(deadlineMillis, tickMillis), currentTick + 1);
+        insert(new Timeout<>(item, deadlineTick));
+        size++;
+    }
+
+    // Fires everything due up to nowMillis; returns how many items expired
+    public int advance(long nowMillis, Consumer<T> onExpire) {
+        List<T> expired = new ArrayList<>();
+        synchronized (this) {
+            long targetTick = Math.floorDiv(nowMillis, tickMillis);
+            while (currentTick < targetTick) {
+                currentTick++;
+                cascade(1);
+                List<Timeout<T>> due = slots.get((int) (currentTick & SLOT_MASK));
+                for (Timeout<T> timeout : due) {
+                    expired.add(timeout.item);
+                }
+                size -= due.size();
+                due.clear();
+            }
+        }
+        // Callbacks run outside the lock so they can touch other structures freely
+        expired.forEach(onExpire);
+        return expired.size();
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void insert(Timeout<T> timeout) {
+        long delta = timeout.deadlineTick - currentTick;
+        long deadlineTick = timeout.deadlineTick;
+        if (delta >= horizonTicks) {
+            deadlineTick = currentTick + horizonTicks - 1;
+            delta = horizonTicks - 1;
+        }
+        int level = 0;
+        while (level < levels - 1 && delta >= 1L << ((level + 1) * SLOT_BITS)) {
+            level++;
+        }
+        int slot = (int) ((deadlineTick >>> (level * SLOT_BITS)) & SLOT_MASK);
+        slots.get(level * SLOTS + slot).add(timeout);
+    }
+
+    // At the start of each rotation of a level, pull the matching slot of the level above down
+    private void cascade(int level) {
+        if (level >= levels || (currentTick & ((1L << (level * SLOT_BITS)) - 1)) != 0) {
+            return;
+        }
+        int slot = (int) ((currentTick >>> (level * SLOT_BITS)) & SLOT_MASK);
+        List<Timeout<T>> bucket = slots.get(level * SLOTS + slot);
+        if (slot == 0) {
+            cascade(level + 1);
+        }
+        if (bucket.isEmpty()) {
+            return;
+        }
+        List<Timeout<T>> moving = new ArrayList<>(bucket);
+        bucket.clear();
+        for (Timeout<T> timeout : moving) {
+            insert(timeout);
+        }
+    }
+
+    private record Timeout<T>(T item, long deadlineTick) {
+    }
+}
@@ -0,0 +1,132 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets keyed by an arbitrary string. Each bucket is a single AtomicLong that
+ * packs the last refill time (upper bits, ms since creation) and the available
+ * milli-tokens (lower 22 bits), so acquiring is one CAS and never takes a lock.
+ * Memory is bounded by {@code maxBuckets}: when the map is full, new keys share one of a
+ * fixed set of striped overflow buckets until the owner's periodic {@link #evictIdle}
+ * sweep makes room.
+ */
+public class TokenBucketRateLimiter {
+
+    private static final int TOKEN_BITS = 22;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+    private static final long MILLI_TOKENS = 1000;
+    private static final int OVERFLOW_STRIPES = 64;
+
+    private final long capacity;
+    private final double refillPerMillisecond;
+    private final int maxBuckets;
+    private final long idleMillis;
+    private final long originNanos = System.nanoTime();
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong[] overflow = new AtomicLong[OVERFLOW_STRIPES];
+
+    public TokenBucketRateLimiter(int capacity, double refillPerSecond, int maxBuckets, long idleSeconds) {
+        if (capacity <= 0 || capacity * MILLI_TOKENS > TOKEN_MASK) {
+            throw new IllegalArgumentException("Bucket capacity must be between 1 and " + TOKEN_MASK / MILLI_TOKENS);
+        }
+        this.capacity = capacity * MILLI_TOKENS;
+        // milli-tokens per millisecond is numerically the same as tokens per second
+        this.refillPerMillisecond = refillPerSecond;
+        this.maxBuckets = maxBuckets;
+        // A bucket idle for longer than a full refill is indistinguishable from a new one
+        long refillMillis = refillPerSecond > 0 ? (long) (this.capacity / refillPerSecond) : Long.MAX_VALUE / 2;
+        this.idleMillis = Math.max(TimeUnit.SECONDS.toMillis(idleSeconds), refillMillis);
+        for (int i = 0; i < OVERFLOW_STRIPES; i++) {
+            overflow[i] = new AtomicLong(fullState(0));
+        }
+    }
+
+    // Takes one token; false means the key is over its limit
+    public boolean tryAcquire(String key) {
+        return update(bucketFor(key), true);
+    }
+
+    // True when the key still has a token, without spending it
+    public boolean hasToken(String key) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = buckets.size() >= maxBuckets ? overflow[stripe(key)] : null;
+        }
+        return bucket == null || update(bucket, false);
+    }
+
+    public int evictIdle() {
+        long now = nowMillis();
+        int evicted = 0;
+        Iterator<AtomicLong> iterator = buckets.values().iterator();
+        while (iterator.hasNext()) {
+            long last = iterator.next().get() >>> TOKEN_BITS;
+            if (now - last > idleMillis) {
+                iterator.remove();
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    private AtomicLong bucketFor(String key) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        // Sweeping here would cost O(maxBuckets) per new key exactly when every client is busy;
+        // evictIdle runs on a schedule and frees slots for later keys
+        if (buckets.size() >= maxBuckets) {
+            return overflow[stripe(key)];
+        }
+        return buckets.computeIfAbsent(key, k -> new AtomicLong(fullState(nowMillis())));
+    }
+
+    private boolean update(AtomicLong bucket, boolean consume) {
+        long now = nowMillis();
+        while (true) {
+            long state = bucket.get();
+            long last = state >>> TOKEN_BITS;
+            long tokens = state & TOKEN_MASK;
+
+            long added = (long) (Math.max(0, now - last) * refillPerMillisecond);
+            long refillTime = last;
+            if (added > 0) {
+                tokens = Math.min(capacity, tokens + added);
+                refillTime = now;
+            }
+
+            if (tokens < MILLI_TOKENS) {
+                return false;
+            }
+            if (!consume) {
+                return true;
+            }
+
+            long next = (refillTime << TOKEN_BITS) | (tokens - MILLI_TOKENS);
+            if (bucket.compareAndSet(state, next)) {
+                return true;
+            }
+        }
+    }
+
+    private long fullState(long now) {
+        return (now << TOKEN_BITS) | capacity;
+    }
+
+    private long nowMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - originNanos);
+    }
+
+    private static int stripe(String key) {
+        return (key.hashCode() & 0x7fffffff) % OVERFLOW_STRIPES;
+    }
+}
@@ -0,0 +1,153 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import com.timgroup.statsd.StatsDClient;
+import edu.northeastern.csye6225.webapp.model.User;
+import edu.northeastern.csye6225.webapp.model.UserSnapshot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Size- and TTL-bounded read-through cache of users by email. Concurrent misses for
+ * the same email share one in-flight load; writers evict the entry so the next read
+ * goes back to the database. Missing users are not cached.
+ */
+@Component
+public class UserCache {
+
+    @Autowired
+    private StatsDClient statsDClient;
+
+    @Value("${user.cache.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    @Value("${user.cache.max-entries:10000}")
+    private int maxEntries;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public UserSnapshot get(String email, Function<String, User> loader) {
+        if (email == null) {
+            return null;
+        }
+
+        while (true) {
+            Entry existing = entries.get(email);
+            if (existing != null && existing.expiresAt - System.nanoTime() > 0) {
+                hits.increment();
+                statsDClient.incrementCounter("api.user.cache.hit");
+                return join(existing.snapshot);
+            }
+
+            Entry loading = new Entry(new CompletableFuture<>(), System.nanoTime() + TimeUnit.SECONDS.toNanos(ttlSeconds));
+            boolean claimed = existing == null
+                    ? entries.putIfAbsent(email, loading) == null
+                    : entries.replace(email, existing, loading);
+            if (claimed) {
+                if (existing != null) {
+                    statsDClient.incrementCounter("api.user.cache.expired");
+                }
+                return load(email, loading, loader);
+            }
+            // Another thread installed an entry first; go round and wait on it instead
+        }
+    }
+
+    public void evict(String email) {
+        if (email != null && entries.remove(email) != null) {
+            statsDClient.incrementCounter("api.user.cache.eviction");
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Scheduled(fixedDelayString = "${user.cache.report-interval-ms:60000}")
+    public void report() {
+        long hitCount = hits.sumThenReset();
+        long missCount = misses.sumThenReset();
+        long total = hitCount + missCount;
+        if (total > 0) {
+            statsDClient.recordGaugeValue("api.user.cache.hitRatio", (double) hitCount / total);
+        }
+        statsDClient.recordGaugeValue("api.user.cache.size", entries.size());
+    }
+
+    private UserSnapshot load(String email, Entry loading, Function<String, User> loader) {
+        misses.increment();
+        statsDClient.incrementCounter("api.user.cache.miss");
+        if (entries.size() > maxEntries) {
+            trim();
+        }
+
+        long start = System.currentTimeMillis();
+        try {
+            User user = loader.apply(email);
+            UserSnapshot snapshot = user == null ? null : UserSnapshot.from(user);
+            loading.snapshot.complete(snapshot);
+            if (snapshot == null) {
+                entries.remove(email, loading);
+            }
+            return snapshot;
+        } catch (RuntimeException e) {
+            // Waiters see the same failure; the next caller retries the load
+            entries.remove(email, loading);
+            loading.snapshot.completeExceptionally(e);
+            throw e;
+        } finally {
+            statsDClient.recordExecutionTime("api.user.cache.load.time.milliseconds", System.currentTimeMillis() - start);
+        }
+    }
+
+    // Drop expired entries first, then arbitrary ones until we are back under the limit
+    private void trim() {
+        long now = System.nanoTime();
+        int evicted = 0;
+
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expiresAt - now <= 0) {
+                iterator.remove();
+                evicted++;
+            }
+        }
+
+        iterator = entries.values().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evicted++;
+        }
+
+        if (evicted > 0) {
+            statsDClient.count("api.user.cache.eviction", evicted);
+        }
+    }
+
+    private static UserSnapshot join(CompletableFuture<UserSnapshot> snapshot) {
+        try {
+            return snapshot.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private record Entry(CompletableFuture<UserSnapshot> snapshot, long expiresAt) {
+    }
+}
@@ -3,15 +3,25 @@ package edu.northeastern.csye6225.webapp.service;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.northeastern.csye6225.webapp.Dao.ImageDao;
+import edu.northeastern.csye6225.webapp.Dao.OutboxMessageDao;
 import edu.northeastern.csye6225.webapp.Dao.UserDao;
-import edu.northeastern.csye6225.webapp.Dao.VerificationTokenDao;
+import edu.northeastern.csye6225.webapp.dto.ETags;
 import edu.northeastern.csye6225.webapp.dto.ImageDTO;
+import edu.northeastern.csye6225.webapp.dto.ImageVersion;
 import edu.northeastern.csye6225.webapp.dto.UserDTO;
+import edu.northeastern.csye6225.webapp.exception.PreconditionFailedException;
 import edu.northeastern.csye6225.webapp.exception.ResourceNotFoundException;
+import edu.northeastern.csye6225.webapp.exception.ServiceBusyException;
 import edu.northeastern.csye6225.webapp.model.Image;
+import edu.northeastern.csye6225.webapp.model.OutboxMessage;
 import edu.northeastern.csye6225.webapp.model.User;
+import edu.northeastern.csye6225.webapp.model.UserSnapshot;
 import edu.northeastern.csye6225.webapp.model.VerificationToken;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.NoResultException;
 import jakarta.persistence.PersistenceContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,19 +30,28 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import software.amazon.awssdk.services.sns.SnsClient;
-import software.amazon.awssdk.services.sns.model.PublishRequest;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import com.timgroup.statsd.StatsDClient;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 @Service
 public class UserService {
 
     private static final Logger logger = LoggerFactory.getLogger(UserService.class);
+    static final String VERIFICATION_EMAIL_EVENT = "user.verification";
+    static final long VERIFICATION_TOKEN_TTL_SECONDS = 120; // 2 minutes expiry
     @PersistenceContext
     private EntityManager entityManager;
     @Autowired
@@ -44,13 +63,55 @@ public class UserService {
     @Autowired
     private S3Service s3Service;
     @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private ObjectDeletionRelay objectDeletionRelay;
+    @Autowired
+    private ImageVariantPipeline imageVariantPipeline;
+    @Autowired
     private StatsDClient statsDClient;
     @Autowired
-    private VerificationTokenDao verificationTokenDao;
+    private VerificationTokenStore verificationTokenStore;
+    @Autowired
+    private VerificationLinkSigner verificationLinkSigner;
+    @Autowired
+    private OutboxMessageDao outboxMessageDao;
+    @Autowired
+    private ObjectMapper objectMapper;
     @Autowired
-    private SnsClient snsClient;
-    @Value("${sns.topic.arn}")
-    private String snsTopicArn;
+    private CredentialCache credentialCache;
+    @Autowired
+    private UserCache userCache;
+    @Autowired
+    private ReadYourWritesTracker readYourWritesTracker;
+
+    // Threads that record finished uploads; kept below the connection pool so they can't starve request threads
+    @Value("${image.attach.threads:4}")
+    private int attachThreads;
+
+    @Value("${image.attach.queue-capacity:64}")
+    private int attachQueueCapacity;
+
+    @Value("${image.attach.retry-after-seconds:1}")
+    private long attachRetryAfterSeconds;
+
+    private ThreadPoolExecutor attachExecutor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        attachExecutor = new ThreadPoolExecutor(attachThreads, attachThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(attachQueueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "image-attach-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        attachExecutor.shutdown();
+    }
 
     @Transactional
     public User createUser(User user) {
@@ -70,10 +131,11 @@ public class UserService {
         user.setVerified(false);
 
         entityManager.persist(user);
+        invalidateCachedUser(user.getEmail());
 
-        // Publish to SNS and generate verification token
+        // Generate verification token and queue the email in the same transaction
         String token = generateVerificationToken(user);
-        publishToSns(user, token);
+        enqueueVerificationEmail(user, token);
 
         long end = System.currentTimeMillis();
         statsDClient.recordExecutionTime("api.user.create.time.milliseconds", end - start);
@@ -82,13 +144,12 @@ public class UserService {
     }
 
     private void deleteUserAndTokens(User user) {
-        verificationTokenDao.deleteAllByUser_Id(user.getId());
+        verificationTokenStore.deleteAllByUser_Id(user.getId());
         userDao.delete(user);
     }
 
-    private void publishToSns(User user, String token) {
-        ObjectMapper objectMapper = new ObjectMapper();
-
+    // Written in the caller's transaction; OutboxRelay publishes it to SNS after commit
+    private void enqueueVerificationEmail(User user, String token) {
         // Create a map to hold the message data
         Map<String, String> messagePayload = new HashMap<>();
         messagePayload.put("email", user.getEmail());
@@ -102,26 +163,25 @@ public class UserService {
             throw new IllegalArgumentException("JSON processing error");
         }
 
-        // Build the PublishRequest with the JSON message
-        PublishRequest publishRequest = PublishRequest.builder()
-                .topicArn(snsTopicArn)
-                .message(message)
-                .build();
-
-        snsClient.publish(publishRequest);
-        logger.info("Published message to SNS for user: {}", user.getEmail());
+        OutboxMessage outboxMessage = new OutboxMessage();
+        outboxMessage.setEventType(VERIFICATION_EMAIL_EVENT);
+        outboxMessage.setPayload(message);
+        outboxMessage.setCreatedAt(Instant.now());
+        outboxMessage.setNextAttemptAt(outboxMessage.getCreatedAt());
+        outboxMessageDao.save(outboxMessage);
+        logger.info("Queued verification message for user: {}", user.getEmail());
     }
 
     private String generateVerificationToken(User user) {
-        String token = UUID.randomUUID().toString();
-        Instant expiry = Instant.now().plusSeconds(120); // 2 minutes expiry
+        Instant expiry = Instant.now().plusSeconds(VERIFICATION_TOKEN_TTL_SECONDS);
+        String token = verificationLinkSigner.sign(user.getId(), user.getEmail(), expiry);
 
         VerificationToken verificationToken = new VerificationToken();
         verificationToken.setUser(user);
         verificationToken.setToken(token);
         verificationToken.setExpiry(expiry);
 
-        verificationTokenDao.save(verificationToken);
+        verificationTokenStore.save(verificationToken);
         logger.info("Generated verification token for user: {}", user.getEmail());
         return token;
     }
@@ -134,14 +194,15 @@ public class UserService {
         return count > 0;
     }
 
+    // Detached copy from UserCache; use UserDao when the caller needs a managed entity
+    @Transactional(readOnly = true)
     public User findByEmail(String email) {
         statsDClient.incrementCounter("api.user.findByEmail");
         long start = System.currentTimeMillis();
 
         try {
-            return entityManager.createQuery("SELECT u FROM User u WHERE u.email = :email", User.class)
-                    .setParameter("email", email)
-                    .getSingleResult();
+            UserSnapshot snapshot = userCache.get(email, this::queryByEmail);
+            return snapshot == null ? null : snapshot.toUser();
         } catch (Exception e) {
             statsDClient.incrementCounter("api.user.findByEmail.error");
             return null;
@@ -151,8 +212,54 @@ public class UserService {
         }
     }
 
+    private User queryByEmail(String email) {
+        try {
+            return entityManager.createQuery("SELECT u FROM User u WHERE u.email = :email", User.class)
+                    .setParameter("email", email)
+                    .getSingleResult();
+        } catch (NoResultException e) {
+            return null;
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public UserDTO findUserDTO(UUID userId) {
+        statsDClient.incrementCounter("api.user.findUserDTO");
+        return userDao.findDtoById(userId);
+    }
+
+    @Transactional(readOnly = true)
+    public ImageDTO findProfileImageDTO(UUID userId) {
+        statsDClient.incrementCounter("api.user.findProfileImageDTO");
+        return imageDao.findDtoByUserId(userId);
+    }
+
+    // Version stamp for conditional GETs of /pic; skips the file name, URL and DTO of the full projection
+    @Transactional(readOnly = true)
+    public String findProfileImageETag(UUID userId) {
+        ImageVersion version = imageDao.findVersionByUserId(userId);
+        return version == null ? null : ETags.forImage(version);
+    }
+
+    @Transactional(readOnly = true)
+    public boolean hasProfileImage(UUID userId) {
+        return imageDao.existsByUserId(userId);
+    }
+
+    // Version stamp for conditional GETs; usually a UserCache hit, so no query at all
+    @Transactional(readOnly = true)
+    public String findUserETag(String email) {
+        UserSnapshot snapshot = userCache.get(email, this::queryByEmail);
+        return snapshot == null ? null : ETags.forUser(snapshot.id(), snapshot.accountUpdated());
+    }
+
     @Transactional
     public User updateUser(User user) {
+        return updateUser(user, null);
+    }
+
+    @Transactional
+    public User updateUser(User user, String ifMatch) {
         statsDClient.incrementCounter("api.user.update");
         long start = System.currentTimeMillis();
 
@@ -162,6 +269,15 @@ public class UserService {
             throw new ResourceNotFoundException("User not found with email: " + user.getEmail());
         }
 
+        if (ifMatch != null) {
+            // Re-read under a row lock so the check and the write can't interleave with another update
+            entityManager.refresh(existingUser, LockModeType.PESSIMISTIC_WRITE);
+            if (ETags.matchFails(ifMatch, ETags.forUser(convertToDTO(existingUser)))) {
+                statsDClient.incrementCounter("api.user.update.preconditionFailed");
+                throw new PreconditionFailedException("User was modified since it was last read");
+            }
+        }
+
         if (!existingUser.getEmail().equals(user.getEmail())) {
             User userWithSameEmail = userDao.findByEmail(user.getEmail());
             if (userWithSameEmail != null) {
@@ -179,6 +295,7 @@ public class UserService {
 
         existingUser.setAccountUpdated(new Date());
         User updatedUser = entityManager.merge(existingUser);
+        invalidateCachedUser(existingUser.getEmail());
 
         long end = System.currentTimeMillis();
         statsDClient.recordExecutionTime("api.user.update.time.milliseconds", end - start);
@@ -191,33 +308,171 @@ public class UserService {
         statsDClient.incrementCounter("api.user.delete");
         long start = System.currentTimeMillis();
 
-        User user = findByEmail(email);
+        User user = userDao.findByEmail(email);
         if (user != null) {
             entityManager.remove(user);
         }
+        invalidateCachedUser(email);
 
         long end = System.currentTimeMillis();
         statsDClient.recordExecutionTime("api.user.delete.time.milliseconds", end - start);
     }
 
-    @Transactional
-    public ImageDTO updateUserProfilePicture(String email, MultipartFile file) throws IOException {
+    // Short database steps around the transfer, none of them open while S3 is working:
+    // a check that the user exists, then the transactions in recordProfilePicture
+    public CompletableFuture<ImageDTO> updateUserProfilePicture(String email, MultipartFile file) {
         statsDClient.incrementCounter("api.user.updateProfilePicture");
         long start = System.currentTimeMillis();
 
+        // An unknown user never costs an upload
+        if (!userDao.existsByEmail(email)) {
+            return CompletableFuture.failedFuture(new ResourceNotFoundException("User not found with email: " + email));
+        }
+
+        return s3Service.uploadFile(file).thenCompose(uploadResult -> {
+            String fileUrl = (String) uploadResult.get("fileUrl");
+            String contentHash = (String) uploadResult.get("contentHash");
+            return attachAsync(fileUrl, contentHash, () -> {
+                ImageDTO imageDTO;
+                try {
+                    imageDTO = recordProfilePicture(email, file.getOriginalFilename(), fileUrl, contentHash);
+                } catch (RuntimeException e) {
+                    discardUpload(fileUrl, contentHash);
+                    throw e;
+                }
+                statsDClient.recordExecutionTime("api.user.updateProfilePicture.time.milliseconds", System.currentTimeMillis() - start);
+                // Resized copies follow in the background unless an image with the same content already has them
+                if (imageDTO.getVariants().isEmpty()) {
+                    imageVariantPipeline.submit(imageDTO.getId(), fileUrl, contentHash, file);
+                }
+                return imageDTO;
+            });
+        });
+    }
+
+    // Step one of a direct upload. Content S3 already holds needs no upload at all, so the client is told to
+    // call /pic/complete straight away. Otherwise the client PUTs the bytes itself with the returned URL and
+    // headers, and the object gets a reference check unless one is already waiting, so a client that never
+    // completes leaves nothing behind once the grace period is over
+    public CompletableFuture<Map<String, Object>> presignProfilePictureUpload(String contentHash, String contentType, long size) {
+        statsDClient.incrementCounter("api.user.presignProfilePictureUpload");
+        return s3Service.describeObject(contentHash).thenCompose(stored -> {
+            Map<String, Object> response = new LinkedHashMap<>();
+            if (stored != null) {
+                statsDClient.incrementCounter("api.user.presignProfilePictureUpload.alreadyUploaded");
+                response.put("alreadyUploaded", true);
+                response.put("key", contentHash);
+                return CompletableFuture.completedFuture(response);
+            }
+            response.put("alreadyUploaded", false);
+            response.putAll(s3Service.presignUpload(contentHash, contentType, size));
+            return onAttachPool(() -> {
+                transactionTemplate.executeWithoutResult(status -> objectDeletionRelay.ensureQueuedIfUnreferenced(contentHash, contentHash));
+                return response;
+            });
+        });
+    }
+
+    // Step two: one HEAD confirms the PUT landed, then the row is saved exactly as for a multipart upload.
+    // No image bytes reach this server, so variants are only attached when earlier identical content has them
+    public CompletableFuture<ImageDTO> completeProfilePictureUpload(String email, String contentHash, String fileName) {
+        statsDClient.incrementCounter("api.user.completeProfilePictureUpload");
+        long start = System.currentTimeMillis();
+
+        if (!userDao.existsByEmail(email)) {
+            return CompletableFuture.failedFuture(new ResourceNotFoundException("User not found with email: " + email));
+        }
+
+        return s3Service.describeObject(contentHash).thenCompose(stored -> {
+            if (stored == null) {
+                statsDClient.incrementCounter("api.user.completeProfilePictureUpload.missing");
+                return CompletableFuture.failedFuture(new ResourceNotFoundException("No uploaded file found for " + contentHash));
+            }
+            String fileUrl = (String) stored.get("fileUrl");
+            return attachAsync(fileUrl, contentHash, () -> {
+                ImageDTO imageDTO;
+                try {
+                    imageDTO = recordProfilePicture(email, fileName, fileUrl, contentHash);
+                } catch (RuntimeException e) {
+                    discardUpload(fileUrl, contentHash);
+                    throw e;
+                }
+                statsDClient.recordExecutionTime("api.user.completeProfilePictureUpload.time.milliseconds", System.currentTimeMillis() - start);
+                return imageDTO;
+            });
+        });
+    }
+
+    // The database step after an upload runs on its own bounded pool, never on the S3 completion threads.
+    // When that pool is full the request fails with 503 and the stored object goes back to the relay
+    private CompletableFuture<ImageDTO> attachAsync(String fileUrl, String contentHash, Supplier<ImageDTO> step) {
+        try {
+            return onAttachPool(step);
+        } catch (ServiceBusyException e) {
+            discardUpload(fileUrl, contentHash);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private <T> CompletableFuture<T> onAttachPool(Supplier<T> step) {
+        try {
+            CompletableFuture<T> result = CompletableFuture.supplyAsync(step, attachExecutor);
+            statsDClient.recordGaugeValue("api.user.attach.queue.depth", attachExecutor.getQueue().size());
+            return result;
+        } catch (RejectedExecutionException e) {
+            statsDClient.incrementCounter("api.user.attach.rejected");
+            throw new ServiceBusyException("Server is busy, please retry shortly.", attachRetryAfterSeconds);
+        }
+    }
+
+    // This row failed to commit, but other images may share the object by content, so it is never deleted
+    // straight away: the relay removes it after the grace period if nothing refers to it by then
+    private void discardUpload(String fileUrl, String contentHash) {
+        statsDClient.incrementCounter("api.user.updateProfilePicture.discarded");
+        try {
+            transactionTemplate.executeWithoutResult(status -> objectDeletionRelay.enqueueIfUnreferenced(s3Service.keyOf(fileUrl), contentHash));
+        } catch (RuntimeException e) {
+            statsDClient.incrementCounter("api.user.updateProfilePicture.discard.failure");
+            logger.error("Failed to queue {} after its image record was not saved: {}", fileUrl, e.getMessage());
+        }
+    }
+
+    // Queued deletions of the content are taken back in one short transaction, a HEAD with no transaction open
+    // confirms no drain removed the object before that, and the image is saved in a second short transaction;
+    // a retry after a 503 uploads the object again
+    private ImageDTO recordProfilePicture(String email, String fileName, String fileUrl, String contentHash) {
+        if (contentHash == null) {
+            return transactionTemplate.execute(status -> attachProfilePicture(email, fileName, fileUrl, null, null));
+        }
+        Instant revivedAt = transactionTemplate.execute(status -> objectDeletionRelay.cancelPending(contentHash));
+        if (s3Service.describeObject(contentHash).join() == null) {
+            statsDClient.incrementCounter("api.user.attachProfilePicture.objectGone");
+            throw new ServiceBusyException("Server is busy, please retry shortly.", attachRetryAfterSeconds);
+        }
+        return transactionTemplate.execute(status -> attachProfilePicture(email, fileName, fileUrl, contentHash, revivedAt));
+    }
+
+    private ImageDTO attachProfilePicture(String email, String fileName, String fileUrl, String contentHash, Instant revivedAt) {
         User user = userDao.findByEmail(email);
         if (user == null) {
             throw new ResourceNotFoundException("User not found with email: " + email);
         }
 
-        Map<String, Object> uploadResult = s3Service.uploadFile(file);
-
         // Create new Image entity
         Image profileImage = new Image();
-        profileImage.setFileName(file.getOriginalFilename());
-        profileImage.setUrl((String) uploadResult.get("fileUrl"));
+        profileImage.setFileName(fileName);
+        profileImage.setUrl(fileUrl);
         profileImage.setUploadDate(new Date());
+        profileImage.setContentHash(contentHash);
         profileImage.setUser(user);
+        if (contentHash != null) {
+            // Holds anything queued for the hash since it was taken back until this image commits
+            objectDeletionRelay.confirmRevived(contentHash, revivedAt);
+            // Same bytes, same variant keys: reuse what the pipeline already stored for an earlier copy
+            imageDao.findFirstByContentHash(contentHash)
+                    .filter(existing -> existing.getVariants() != null && !existing.getVariants().isEmpty())
+                    .ifPresent(existing -> profileImage.setVariants(new HashMap<>(existing.getVariants())));
+        }
 
         // Associate the image with the user
         user.setProfileImage(profileImage);
@@ -226,18 +481,19 @@ public class UserService {
         // Save the Image and update the User
         imageDao.save(profileImage);
         userDao.save(user);
+        invalidateCachedUser(email);
 
-        statsDClient.recordExecutionTime("api.user.updateProfilePicture.time.milliseconds", System.currentTimeMillis() - start);
-        ImageDTO imageDTO = new ImageDTO(
+        return new ImageDTO(
                 user.getProfileImage().getFileName(),
                 user.getProfileImage().getId(),
                 user.getProfileImage().getUrl(),
                 user.getProfileImage().getUploadDate(),
-                user.getId()
+                user.getId(),
+                user.getProfileImage().getVariants()
         );
-        return imageDTO;
     }
 
+    // Metadata only: the object is queued in this transaction and removed by ObjectDeletionRelay
     @Transactional
     public void deleteUserProfilePicture(String email) {
         statsDClient.incrementCounter("api.user.deleteProfilePicture");
@@ -252,8 +508,22 @@ public class UserService {
         // Fetch profile image if it exists
         Image profileImage = user.getProfileImage();
         if (profileImage != null) {
-            // Delete the file from S3
-            s3Service.deleteFile(profileImage.getUrl());
+            List<String> keys = new ArrayList<>();
+            keys.add(s3Service.keyOf(profileImage.getUrl()));
+            // Rows from before variants existed have none
+            if (profileImage.getVariants() != null) {
+                for (String variantUrl : profileImage.getVariants().values()) {
+                    keys.add(s3Service.keyOf(variantUrl));
+                }
+            }
+            String contentHash = profileImage.getContentHash();
+            if (contentHash == null) {
+                keys.forEach(objectDeletionRelay::enqueue);
+            } else {
+                // Whether other images still share the object is decided by the relay when the row comes due,
+                // under its row locks, not by a count here that a concurrent upload could invalidate
+                keys.forEach(key -> objectDeletionRelay.enqueueIfUnreferenced(key, contentHash));
+            }
 
             // Delete the Image record and clear the user's reference
             imageDao.delete(profileImage);
@@ -262,6 +532,7 @@ public class UserService {
 
             // Save updated user record
             userDao.save(user);
+            invalidateCachedUser(email);
         } else {
             throw new IllegalArgumentException("No profile picture found to delete.");
         }
@@ -271,21 +542,31 @@ public class UserService {
 
     @Transactional
     public boolean verifyUser(String token, String useremail) {
-        VerificationToken verificationToken = verificationTokenDao.findByToken(token)
+        // Pure CPU: forged, mismatched and expired links are turned away before any query
+        VerificationLinkSigner.Link link = verificationLinkSigner.parse(token, useremail);
+        if (link == null) {
+            statsDClient.incrementCounter("api.user.verify.rejected");
+            throw new ResourceNotFoundException("Invalid verification token");
+        }
+
+        if (link.isExpired()) {
+            statsDClient.incrementCounter("api.user.verify.expired");
+            throw new ResourceNotFoundException("Token has expired. Please re-register.");
+        }
+
+        // Token and user come back from one query, so the lookup below is served from the persistence context
+        VerificationToken verificationToken = verificationTokenStore.findByToken(token)
+                .filter(found -> link.userId().equals(found.getUserId()))
                 .orElseThrow(() -> new ResourceNotFoundException("Invalid verification token"));
 
-        User user = userDao.findById(verificationToken.getUser().getId())
+        User user = userDao.findById(verificationToken.getUserId())
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
 
         if(user.isVerified()){
             throw new ResourceNotFoundException("User already verified");
         }
 
-        if (verificationToken.getExpiry().isBefore(Instant.now())) {
-            throw new ResourceNotFoundException("Token has expired. Please re-register.");
-        }
-
-        if(!useremail.matches(user.getEmail())){
+        if(!user.getEmail().equalsIgnoreCase(useremail)){
             throw new ResourceNotFoundException("User not found!");
         }
 
@@ -294,12 +575,31 @@ public class UserService {
                 user.setVerified(true);
                 user.setAccountUpdated(new Date());
                 userDao.save(user);
+                invalidateCachedUser(user.getEmail());
                // verificationTokenDao.delete(verificationToken);
         }
 
         return true;
     }
 
+    // Drop now and again after commit, so a read racing the transaction can't re-cache the old state;
+    // the user's own reads then stay on the primary until replicas catch up
+    private void invalidateCachedUser(String email) {
+        credentialCache.invalidate(email);
+        userCache.evict(email);
+        readYourWritesTracker.recordWrite(email);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    credentialCache.invalidate(email);
+                    userCache.evict(email);
+                    readYourWritesTracker.recordWrite(email);
+                }
+            });
+        }
+    }
+
     public UserDTO convertToDTO(User user) {
         return new UserDTO(
                 user.getId(),
@@ -0,0 +1,140 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Verification tokens that carry their user id and expiry under an HMAC-SHA256 that also
+ * covers the user's email, so forged, mismatched or expired links are rejected before
+ * any query. Keyed from {@code verification.token.secret}, falling back to the access
+ * token secret; startup fails without one outside the dev and test profiles.
+ */
+@Service
+public class VerificationLinkSigner {
+
+    private static final Logger logger = LoggerFactory.getLogger(VerificationLinkSigner.class);
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    // user id(16) + expiry(8) + nonce(16)
+    private static final int PAYLOAD_LENGTH = 40;
+    private static final int SIGNATURE_LENGTH = 32;
+
+    private final SecureRandom random = new SecureRandom();
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${verification.token.secret:${auth.token.secret:}}")
+    private String secret;
+
+    private SecretKeySpec signingKey;
+
+    /** What a correctly signed link says; callers still check {@link #isExpired()}. */
+    public record Link(UUID userId, Instant expiry) {
+        public boolean isExpired() {
+            return Instant.now().isAfter(expiry);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        byte[] keyMaterial;
+        if (secret == null || secret.isBlank()) {
+            // Links would only verify on the node that issued them, and never after a restart
+            if (environment == null || !environment.acceptsProfiles(Profiles.of("dev", "test"))) {
+                throw new IllegalStateException("verification.token.secret is not set: set VERIFICATION_TOKEN_SECRET or TOKEN_SECRET, "
+                        + "or run with the dev or test profile");
+            }
+            logger.warn("verification.token.secret is not set, using a random per-process link key");
+            keyMaterial = new byte[32];
+            random.nextBytes(keyMaterial);
+        } else {
+            keyMaterial = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        // Separate key from access tokens even when both come from the same secret
+        byte[] derived = mac(new SecretKeySpec(keyMaterial, HMAC_ALGORITHM), "verification-link".getBytes(StandardCharsets.UTF_8), null);
+        signingKey = new SecretKeySpec(derived, HMAC_ALGORITHM);
+        Arrays.fill(derived, (byte) 0);
+    }
+
+    public String sign(UUID userId, String email, Instant expiry) {
+        byte[] nonce = new byte[16];
+        random.nextBytes(nonce);
+        byte[] payload = ByteBuffer.allocate(PAYLOAD_LENGTH)
+                .putLong(userId.getMostSignificantBits())
+                .putLong(userId.getLeastSignificantBits())
+                .putLong(expiry.getEpochSecond())
+                .put(nonce)
+                .array();
+        return ENCODER.encodeToString(payload) + "." + ENCODER.encodeToString(mac(signingKey, payload, normalize(email)));
+    }
+
+    // Null when the token is malformed, forged or was issued for a different email
+    public Link parse(String token, String email) {
+        if (token == null || email == null) {
+            return null;
+        }
+        int separator = token.indexOf('.');
+        if (separator <= 0 || separator == token.length() - 1) {
+            return null;
+        }
+
+        byte[] payload;
+        byte[] signature;
+        try {
+            payload = DECODER.decode(token.substring(0, separator));
+            signature = DECODER.decode(token.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (payload.length != PAYLOAD_LENGTH || signature.length != SIGNATURE_LENGTH) {
+            return null;
+        }
+        if (!MessageDigest.isEqual(mac(signingKey, payload, normalize(email)), signature)) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        UUID userId = new UUID(buffer.getLong(), buffer.getLong());
+        return new Link(userId, Instant.ofEpochSecond(buffer.getLong()));
+    }
+
+    private static byte[] normalize(String email) {
+        return email.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] mac(SecretKeySpec key, byte[] payload, byte[] email) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            mac.update(payload);
+            if (email != null) {
+                mac.update(email);
+            }
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+}
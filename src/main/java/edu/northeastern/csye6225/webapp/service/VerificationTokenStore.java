@@ -0,0 +1,20 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import edu.northeastern.csye6225.webapp.model.VerificationToken;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Where verification tokens live between registration and verification. Same contract
+ * as VerificationTokenDao, so either implementation can sit behind UserService; pick one
+ * with verification.token-store (memory or jpa).
+ */
+public interface VerificationTokenStore {
+
+    VerificationToken save(VerificationToken token);
+
+    Optional<VerificationToken> findByToken(String token);
+
+    void deleteAllByUser_Id(UUID userId);
+}
@@ -0,0 +1,62 @@
+package edu.northeastern.csye6225.webapp.config;
+
+import com.timgroup.statsd.StatsDClient;
+import edu.northeastern.csye6225.webapp.exception.ServiceBusyException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class BoundedPasswordEncoderUnitTest {
+
+    private final StatsDClient statsDClient = mock(StatsDClient.class);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private BoundedPasswordEncoder encoder;
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        if (encoder != null) {
+            encoder.close();
+        }
+    }
+
+    @Test
+    public void testEncode_DelegatesOnPool() {
+        PasswordEncoder delegate = mock(PasswordEncoder.class);
+        when(delegate.encode("password")).thenReturn("encodedPassword");
+        encoder = new BoundedPasswordEncoder(delegate, 1, 1, 1000, 1, statsDClient);
+
+        assertEquals("encodedPassword", encoder.encode("password"));
+    }
+
+    @Test
+    public void testEncode_RejectsWhenQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        PasswordEncoder delegate = mock(PasswordEncoder.class);
+        when(delegate.encode(anyString())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return "encodedPassword";
+        });
+        encoder = new BoundedPasswordEncoder(delegate, 1, 1, 5000, 3, statsDClient);
+
+        // One task on the single worker, one waiting in the queue
+        CompletableFuture.runAsync(() -> encoder.encode("first"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture.runAsync(() -> encoder.encode("second"));
+        Thread.sleep(100);
+
+        ServiceBusyException exception = assertThrows(ServiceBusyException.class, () -> encoder.encode("third"));
+        assertEquals(3, exception.getRetryAfterSeconds());
+        verify(statsDClient).incrementCounter("auth.hashing.rejected");
+    }
+}
@@ -0,0 +1,113 @@
+package edu.northeastern.csye6225.webapp.config;
+
+import com.timgroup.statsd.StatsDClient;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class PasswordEncoderCalibratorUnitTest {
+
+    private static final String PASSWORD = "password";
+
+    private final StatsDClient statsDClient = mock(StatsDClient.class);
+
+    // A zero budget settles on the minimum cost after one probe, which keeps the tests fast
+    private PasswordEncoder calibrate(String algorithm) {
+        return PasswordEncoderCalibrator.calibrate(algorithm, 0, statsDClient);
+    }
+
+    @Test
+    public void testCalibrate_BcryptNeverGoesBelowMinimumStrength() {
+        calibrate(PasswordEncoderCalibrator.BCRYPT);
+
+        verify(statsDClient).recordGaugeValue("auth.password.bcrypt.strength", (long) PasswordEncoderCalibrator.MIN_BCRYPT_STRENGTH);
+    }
+
+    @Test
+    public void testMatches_LegacyUnprefixedBcryptHash() {
+        PasswordEncoder encoder = calibrate(PasswordEncoderCalibrator.BCRYPT);
+        String legacy = new BCryptPasswordEncoder(4).encode(PASSWORD);
+
+        assertTrue(encoder.matches(PASSWORD, legacy));
+        assertFalse(encoder.matches("wrongPassword", legacy));
+        assertTrue(encoder.upgradeEncoding(legacy));
+    }
+
+    @Test
+    public void testEncode_WritesPrefixedHashThatNeedsNoUpgrade() {
+        PasswordEncoder encoder = calibrate(PasswordEncoderCalibrator.BCRYPT);
+
+        String hash = encoder.encode(PASSWORD);
+
+        assertTrue(hash.startsWith("{bcrypt}"));
+        assertTrue(encoder.matches(PASSWORD, hash));
+        assertFalse(encoder.upgradeEncoding(hash));
+    }
+
+    @Test
+    public void testUpgradeEncoding_LowerBcryptCost() {
+        PasswordEncoder encoder = calibrate(PasswordEncoderCalibrator.BCRYPT);
+        String cheaper = "{bcrypt}" + new BCryptPasswordEncoder(4).encode(PASSWORD);
+
+        assertTrue(encoder.matches(PASSWORD, cheaper));
+        assertTrue(encoder.upgradeEncoding(cheaper));
+    }
+
+    @Test
+    public void testUpgradeEncoding_NonDefaultAlgorithm() {
+        PasswordEncoder encoder = calibrate(PasswordEncoderCalibrator.BCRYPT);
+        String pbkdf2 = "{pbkdf2-1000}" + PasswordEncoderCalibrator.pbkdf2(1000).encode(PASSWORD);
+
+        assertTrue(encoder.matches(PASSWORD, pbkdf2));
+        assertFalse(encoder.matches("wrongPassword", pbkdf2));
+        assertTrue(encoder.upgradeEncoding(pbkdf2));
+    }
+
+    @Test
+    public void testMatches_LegacyPbkdf2HashUsesFixedIterations() {
+        PasswordEncoder encoder = calibrate(PasswordEncoderCalibrator.PBKDF2);
+        String legacy = "{pbkdf2}" + PasswordEncoderCalibrator.pbkdf2(PasswordEncoderCalibrator.MIN_PBKDF2_ITERATIONS).encode(PASSWORD);
+
+        assertTrue(encoder.matches(PASSWORD, legacy));
+        assertTrue(encoder.upgradeEncoding(legacy));
+    }
+
+    @Test
+    public void testUpgradeEncoding_Pbkdf2HashFromEarlierCalibration() {
+        PasswordEncoder encoder = calibrate(PasswordEncoderCalibrator.PBKDF2);
+        String current = encoder.encode(PASSWORD);
+        String earlier = "{pbkdf2-1000}" + PasswordEncoderCalibrator.pbkdf2(1000).encode(PASSWORD);
+
+        assertTrue(current.startsWith("{" + PasswordEncoderCalibrator.pbkdf2Id(PasswordEncoderCalibrator.MIN_PBKDF2_ITERATIONS) + "}"));
+        assertFalse(encoder.upgradeEncoding(current));
+        assertTrue(encoder.matches(PASSWORD, earlier));
+        assertTrue(encoder.upgradeEncoding(earlier));
+    }
+
+    @Test
+    public void testMatches_MalformedPbkdf2IdIsRejected() {
+        PasswordEncoder encoder = calibrate(PasswordEncoderCalibrator.BCRYPT);
+
+        assertFalse(encoder.matches(PASSWORD, "{pbkdf2-abc}" + PasswordEncoderCalibrator.pbkdf2(1000).encode(PASSWORD)));
+    }
+
+    @Test
+    public void testUpgradeEncoding_BcryptHashWhenPbkdf2IsDefault() {
+        PasswordEncoder encoder = calibrate(PasswordEncoderCalibrator.PBKDF2);
+        String bcrypt = "{bcrypt}" + new BCryptPasswordEncoder(4).encode(PASSWORD);
+
+        assertTrue(encoder.matches(PASSWORD, bcrypt));
+        assertTrue(encoder.upgradeEncoding(bcrypt));
+        assertTrue(encoder.encode(PASSWORD).startsWith("{pbkdf2-"));
+        verify(statsDClient).recordGaugeValue(eq("auth.password.pbkdf2.iterations"), anyLong());
+    }
+
+    @Test
+    public void testCalibrate_RejectsUnknownAlgorithm() {
+        assertThrows(IllegalArgumentException.class, () -> calibrate("md5"));
+    }
+}
@@ -0,0 +1,50 @@
+package edu.northeastern.csye6225.webapp.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Prints hash and verify cost for each BCrypt strength and a few PBKDF2 iteration counts
+ * on the current machine. Run with {@code mvn test -Dtest=PasswordHashingBenchmark -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class PasswordHashingBenchmark {
+
+    private static final String PASSWORD = "benchmark-password";
+    private static final int ROUNDS = 5;
+
+    @Test
+    public void reportHashingCost() {
+        for (int strength = PasswordEncoderCalibrator.MIN_BCRYPT_STRENGTH; strength <= 14; strength++) {
+            report("bcrypt strength " + strength, new BCryptPasswordEncoder(strength));
+        }
+        for (int iterations : new int[]{PasswordEncoderCalibrator.MIN_PBKDF2_ITERATIONS, 600_000, 1_200_000}) {
+            report("pbkdf2 " + iterations + " iterations", PasswordEncoderCalibrator.pbkdf2(iterations));
+        }
+
+        System.out.println("bcrypt calibrated for 250 ms: strength " + PasswordEncoderCalibrator.calibrateBcrypt(250));
+        System.out.println("pbkdf2 calibrated for 250 ms: " + PasswordEncoderCalibrator.calibratePbkdf2(250) + " iterations");
+    }
+
+    private static void report(String label, PasswordEncoder encoder) {
+        String hash = encoder.encode(PASSWORD);
+        encoder.matches(PASSWORD, hash);
+
+        long hashNanos = 0;
+        long verifyNanos = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            hash = encoder.encode(PASSWORD);
+            hashNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            encoder.matches(PASSWORD, hash);
+            verifyNanos += System.nanoTime() - start;
+        }
+
+        System.out.printf("%-32s hash %8.1f ms   verify %8.1f ms%n", label,
+                hashNanos / 1e6 / ROUNDS, verifyNanos / 1e6 / ROUNDS);
+    }
+}
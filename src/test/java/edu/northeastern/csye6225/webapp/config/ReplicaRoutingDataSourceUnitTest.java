@@ -0,0 +1,106 @@
+package edu.northeastern.csye6225.webapp.config;
+
+import com.timgroup.statsd.StatsDClient;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ReplicaRoutingDataSourceUnitTest {
+
+    private final StatsDClient statsDClient = mock(StatsDClient.class);
+    private final DataSource primary = mock(DataSource.class);
+    private final Connection primaryConnection = mock(Connection.class);
+
+    @AfterEach
+    public void tearDown() {
+        ReplicaRoutingDataSource.clearPin();
+    }
+
+    @Test
+    public void testGetConnection_UsesReplicasInTurn() throws SQLException {
+        HikariDataSource first = replica("replica-1");
+        HikariDataSource second = replica("replica-2");
+        Connection firstConnection = mock(Connection.class);
+        Connection secondConnection = mock(Connection.class);
+        when(first.getConnection()).thenReturn(firstConnection);
+        when(second.getConnection()).thenReturn(secondConnection);
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, List.of(first, second), 5, statsDClient);
+
+        assertSame(firstConnection, routing.getConnection());
+        assertSame(secondConnection, routing.getConnection());
+        verify(statsDClient, times(2)).incrementCounter("db.route.replica");
+        verifyNoInteractions(primary);
+    }
+
+    @Test
+    public void testGetConnection_PinnedRequestReadsFromPrimary() throws SQLException {
+        HikariDataSource replica = replica("replica-1");
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, List.of(replica), 5, statsDClient);
+
+        ReplicaRoutingDataSource.pinToPrimary();
+
+        assertSame(primaryConnection, routing.getConnection());
+        verify(replica, never()).getConnection();
+        verify(statsDClient).incrementCounter("db.route.primary");
+    }
+
+    @Test
+    public void testGetConnectionWithCredentials_DelegatesToPrimary() throws SQLException {
+        HikariDataSource replica = replica("replica-1");
+        when(primary.getConnection("user", "password")).thenReturn(primaryConnection);
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, List.of(replica), 5, statsDClient);
+
+        assertSame(primaryConnection, routing.getConnection("user", "password"));
+        verify(replica, never()).getConnection();
+        verify(statsDClient).incrementCounter("db.route.primary");
+    }
+
+    @Test
+    public void testGetConnection_FailingReplicaLeavesRotation() throws SQLException {
+        HikariDataSource replica = replica("replica-1");
+        when(replica.getConnection()).thenThrow(new SQLTransientConnectionException("timeout"));
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, List.of(replica), 5, statsDClient);
+
+        assertSame(primaryConnection, routing.getConnection());
+        assertFalse(routing.hasHealthyReplica());
+        assertSame(primaryConnection, routing.getConnection());
+        verify(replica, times(1)).getConnection();
+        verify(statsDClient).incrementCounter("db.replica.replica-1.down");
+    }
+
+    @Test
+    public void testProbe_ReturnsRecoveredReplicaToRotation() throws SQLException {
+        HikariDataSource replica = replica("replica-1");
+        Connection connection = mock(Connection.class);
+        when(connection.isValid(1)).thenReturn(true);
+        when(connection.createStatement()).thenThrow(new SQLException("no privilege"));
+        when(replica.getConnection()).thenThrow(new SQLTransientConnectionException("timeout")).thenReturn(connection);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, List.of(replica), 5, statsDClient);
+
+        routing.getConnection();
+        assertFalse(routing.hasHealthyReplica());
+
+        routing.probe();
+
+        assertTrue(routing.hasHealthyReplica());
+        verify(statsDClient).incrementCounter("db.replica.replica-1.up");
+    }
+
+    private static HikariDataSource replica(String name) {
+        HikariDataSource pool = mock(HikariDataSource.class);
+        when(pool.getPoolName()).thenReturn(name);
+        return pool;
+    }
+}
@@ -0,0 +1,64 @@
+package edu.northeastern.csye6225.webapp.config;
+
+import com.timgroup.statsd.StatsDClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.metrics.CoreMetric;
+import software.amazon.awssdk.http.HttpMetric;
+import software.amazon.awssdk.metrics.MetricCollector;
+
+import java.time.Duration;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class StatsDMetricPublisherUnitTest {
+
+    private StatsDClient statsDClient;
+    private StatsDMetricPublisher publisher;
+
+    @BeforeEach
+    public void setUp() {
+        statsDClient = mock(StatsDClient.class);
+        publisher = new StatsDMetricPublisher(statsDClient, "aws.s3");
+    }
+
+    @Test
+    public void testPublish_ReportsLatencyRetriesAndPoolOfLastAttempt() {
+        MetricCollector apiCall = MetricCollector.create("ApiCall");
+        apiCall.reportMetric(CoreMetric.OPERATION_NAME, "PutObject");
+        apiCall.reportMetric(CoreMetric.API_CALL_DURATION, Duration.ofMillis(42));
+        apiCall.reportMetric(CoreMetric.RETRY_COUNT, 1);
+        apiCall.reportMetric(CoreMetric.API_CALL_SUCCESSFUL, true);
+        pool(apiCall.createChild("ApiCallAttempt"), 1, 63, 0);
+        pool(apiCall.createChild("ApiCallAttempt"), 5, 59, 3);
+
+        publisher.publish(apiCall.collect());
+
+        verify(statsDClient).recordExecutionTime("aws.s3.PutObject.time.milliseconds", 42);
+        verify(statsDClient).count("aws.s3.PutObject.retries", 1);
+        verify(statsDClient).recordGaugeValue("aws.s3.pool.leased", 5L);
+        verify(statsDClient).recordGaugeValue("aws.s3.pool.available", 59L);
+        verify(statsDClient).recordGaugeValue("aws.s3.pool.pending", 3L);
+        verify(statsDClient, never()).recordGaugeValue("aws.s3.pool.leased", 1L);
+        verify(statsDClient, never()).incrementCounter(anyString());
+    }
+
+    @Test
+    public void testPublish_CountsFailedCalls() {
+        MetricCollector apiCall = MetricCollector.create("ApiCall");
+        apiCall.reportMetric(CoreMetric.OPERATION_NAME, "DeleteObject");
+        apiCall.reportMetric(CoreMetric.API_CALL_SUCCESSFUL, false);
+
+        publisher.publish(apiCall.collect());
+
+        verify(statsDClient).incrementCounter("aws.s3.DeleteObject.error");
+    }
+
+    private static void pool(MetricCollector attempt, int leased, int available, int pending) {
+        MetricCollector http = attempt.createChild("HttpClient");
+        http.reportMetric(HttpMetric.LEASED_CONCURRENCY, leased);
+        http.reportMetric(HttpMetric.AVAILABLE_CONCURRENCY, available);
+        http.reportMetric(HttpMetric.PENDING_CONCURRENCY_ACQUIRES, pending);
+    }
+}
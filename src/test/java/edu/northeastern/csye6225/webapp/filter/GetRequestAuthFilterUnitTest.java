@@ -0,0 +1,193 @@
+package edu.northeastern.csye6225.webapp.filter;
+
+import com.timgroup.statsd.StatsDClient;
+import edu.northeastern.csye6225.webapp.Dao.UserDao;
+import edu.northeastern.csye6225.webapp.config.FilterConfig;
+import edu.northeastern.csye6225.webapp.model.AuthenticatedUser;
+import edu.northeastern.csye6225.webapp.model.User;
+import edu.northeastern.csye6225.webapp.service.AccessTokenService;
+import edu.northeastern.csye6225.webapp.service.AppHealthCheckService;
+import edu.northeastern.csye6225.webapp.service.CredentialCache;
+import edu.northeastern.csye6225.webapp.service.IdentityContext;
+import edu.northeastern.csye6225.webapp.service.ReadYourWritesTracker;
+import edu.northeastern.csye6225.webapp.service.RequestRateLimiter;
+import edu.northeastern.csye6225.webapp.service.UserCache;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs Basic-auth requests through GetRequestAuthFilter with a real IdentityContext and
+ * UserCache, so the principal lookup is exercised the way a request sees it.
+ */
+public class GetRequestAuthFilterUnitTest {
+
+    private static final String EMAIL = "test@domain.com";
+
+    @Mock
+    private StatsDClient statsDClient;
+
+    @Mock
+    private UserDao userDao;
+
+    @Mock
+    private CredentialCache credentialCache;
+
+    @Mock
+    private AppHealthCheckService appHealthCheckService;
+
+    @Mock
+    private AccessTokenService accessTokenService;
+
+    @Mock
+    private RequestRateLimiter requestRateLimiter;
+
+    @Mock
+    private ReadYourWritesTracker readYourWritesTracker;
+
+    @Mock
+    private FilterChain chain;
+
+    private IdentityContext identityContext;
+    private GetRequestAuthFilter filter;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        UserCache userCache = new UserCache();
+        ReflectionTestUtils.setField(userCache, "statsDClient", statsDClient);
+        ReflectionTestUtils.setField(userCache, "ttlSeconds", 60L);
+        ReflectionTestUtils.setField(userCache, "maxEntries", 100);
+
+        identityContext = new IdentityContext();
+        ReflectionTestUtils.setField(identityContext, "userDao", userDao);
+        ReflectionTestUtils.setField(identityContext, "credentialCache", credentialCache);
+        ReflectionTestUtils.setField(identityContext, "userCache", userCache);
+        ReflectionTestUtils.setField(identityContext, "statsDClient", statsDClient);
+
+        filter = new GetRequestAuthFilter(statsDClient, new FilterConfig().routePolicyTable());
+        ReflectionTestUtils.setField(filter, "appHealthCheckService", appHealthCheckService);
+        ReflectionTestUtils.setField(filter, "identityContext", identityContext);
+        ReflectionTestUtils.setField(filter, "accessTokenService", accessTokenService);
+        ReflectionTestUtils.setField(filter, "requestRateLimiter", requestRateLimiter);
+        ReflectionTestUtils.setField(filter, "readYourWritesTracker", readYourWritesTracker);
+
+        when(appHealthCheckService.checkDatabaseConnection()).thenReturn(true);
+        when(requestRateLimiter.allowAuthAttempt(anyString(), anyString())).thenReturn(true);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void testBasicAuth_CachedPrincipalSkipsTheDatabase() throws Exception {
+        AuthenticatedUser cached = new AuthenticatedUser(UUID.randomUUID(), EMAIL, true, null);
+        when(credentialCache.peekPrincipal(EMAIL)).thenReturn(cached);
+        MockHttpServletRequest request = basicAuth("GET", "/api/v1/users/self");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, chain);
+
+        verify(chain).doFilter(request, response);
+        verify(userDao, never()).findByEmail(anyString());
+        assertSame(cached, identityContext.current());
+        verify(statsDClient).incrementCounter("api.identity.cache.hit");
+    }
+
+    @Test
+    public void testBasicAuth_LoadsFromDatabaseOncePerRequest() throws Exception {
+        when(userDao.findByEmail(EMAIL)).thenReturn(user(true));
+        MockHttpServletRequest request = basicAuth("GET", "/api/v1/users/self");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        // The authentication provider and controller resolve the same principal further down the chain
+        doAnswer(invocation -> {
+            assertEquals(EMAIL, identityContext.resolve(EMAIL).email());
+            return null;
+        }).when(chain).doFilter(request, response);
+
+        filter.doFilter(request, response, chain);
+
+        verify(chain).doFilter(request, response);
+        verify(userDao, times(1)).findByEmail(EMAIL);
+        verify(statsDClient).incrementCounter("api.identity.request.hit");
+        verify(readYourWritesTracker).pinIfRecentWriter(EMAIL);
+        verify(readYourWritesTracker).clear();
+    }
+
+    @Test
+    public void testBasicAuth_UnknownUserIsForbidden() throws Exception {
+        MockHttpServletRequest request = basicAuth("GET", "/api/v1/users/self");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, chain);
+
+        assertEquals(403, response.getStatus());
+        assertTrue(response.getContentAsString().contains("User does not exist."));
+        verify(chain, never()).doFilter(any(), any());
+        verify(statsDClient).incrementCounter("api.request.user.notFound");
+    }
+
+    @Test
+    public void testBasicAuth_UnverifiedUserIsForbiddenOnSelf() throws Exception {
+        assertUnverifiedIsForbidden("/api/v1/users/self");
+    }
+
+    @Test
+    public void testBasicAuth_UnverifiedUserIsForbiddenOnPic() throws Exception {
+        assertUnverifiedIsForbidden("/api/v1/users/pic");
+    }
+
+    private void assertUnverifiedIsForbidden(String path) throws Exception {
+        when(userDao.findByEmail(EMAIL)).thenReturn(user(false));
+        MockHttpServletRequest request = basicAuth("GET", path);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, chain);
+
+        assertEquals(403, response.getStatus());
+        assertTrue(response.getContentAsString().contains("User is not verified."));
+        verify(chain, never()).doFilter(any(), any());
+        verify(statsDClient).incrementCounter("api.request.user.notVerified");
+    }
+
+    // Bound to the current thread the way RequestContextFilter does it, so IdentityContext can keep the principal
+    private static MockHttpServletRequest basicAuth(String method, String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        String credentials = Base64.getEncoder().encodeToString((EMAIL + ":password").getBytes(StandardCharsets.UTF_8));
+        request.addHeader("Authorization", "Basic " + credentials);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        return request;
+    }
+
+    private static User user(boolean verified) {
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setEmail(EMAIL);
+        user.setFirstName("John");
+        user.setLastName("Doe");
+        user.setPassword("$2a$10$hash");
+        user.setAccountCreated(new Date());
+        user.setAccountUpdated(new Date());
+        user.setVerified(verified);
+        return user;
+    }
+}
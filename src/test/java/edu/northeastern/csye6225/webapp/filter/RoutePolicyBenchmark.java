@@ -0,0 +1,110 @@
+package edu.northeastern.csye6225.webapp.filter;
+
+import edu.northeastern.csye6225.webapp.config.FilterConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Rough comparison of the compiled route table against the string-comparison chain the
+ * filter used before. Run with {@code mvn test -Dtest=RoutePolicyBenchmark -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class RoutePolicyBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 2_000_000;
+    private static final int MEASURED_ITERATIONS = 10_000_000;
+
+    private static final String[][] REQUESTS = {
+            {"GET", "/api/v1/users/self"},
+            {"GET", "/api/v1/users/pic"},
+            {"POST", "/api/v1/users/pic"},
+            {"PUT", "/api/v1/users/update"},
+            {"POST", "/api/v1/users/register"},
+            {"GET", "/healthz"},
+            {"GET", "/api/v1/users/verify"},
+            {"DELETE", "/api/v1/users/pic"},
+    };
+
+    private static final List<String> ALLOWED_METHODS = Arrays.asList("GET", "POST", "PUT", "DELETE");
+    private static final List<String> PUBLIC_URIS = Arrays.asList("/api/v1/users/register", "/healthz", "/api/v1/users/verify");
+
+    @Test
+    public void compareRouteDecisions() {
+        RoutePolicyTable table = new FilterConfig().routePolicyTable();
+
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            String[] request = REQUESTS[i & 7];
+            sink += legacyDecision(request[0], request[1], "Basic abc");
+            sink += table.lookup(request[0], request[1]).getAccess().ordinal();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            String[] request = REQUESTS[i & 7];
+            sink += legacyDecision(request[0], request[1], "Basic abc");
+        }
+        long legacyNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            String[] request = REQUESTS[i & 7];
+            sink += table.lookup(request[0], request[1]).getAccess().ordinal();
+        }
+        long tableNanos = System.nanoTime() - start;
+
+        System.out.printf("legacy if-chain: %.1f ns/op%n", (double) legacyNanos / MEASURED_ITERATIONS);
+        System.out.printf("route table:     %.1f ns/op%n", (double) tableNanos / MEASURED_ITERATIONS);
+        System.out.println("(sink " + sink + ")");
+    }
+
+    // The decision part of the old GetRequestAuthFilter.doFilter, without the I/O
+    private static int legacyDecision(String method, String requestURI, String authorizationHeader) {
+        if ("HEAD".equalsIgnoreCase(method) || "OPTIONS".equalsIgnoreCase(method)) {
+            return 0;
+        }
+        if ("/api/v1/users/pic".equals(requestURI) &&
+                ("DELETE".equalsIgnoreCase(method) || "POST".equalsIgnoreCase(method) || "GET".equalsIgnoreCase(method))) {
+            if (authorizationHeader == null || authorizationHeader.isEmpty()) {
+                return 1;
+            }
+        } else if ("DELETE".equalsIgnoreCase(method)) {
+            return 2;
+        }
+        if (!ALLOWED_METHODS.contains(method)) {
+            return 3;
+        }
+        if ("/healthz".equals(requestURI) && "GET".equalsIgnoreCase(method)) {
+            return authorizationHeader != null ? 4 : 5;
+        }
+        if ("/healthz".equals(requestURI)) {
+            return 5;
+        }
+        if ("POST".equalsIgnoreCase(method)) {
+            if ("/api/v1/users/pic".equals(requestURI)) {
+                if (authorizationHeader == null || authorizationHeader.isEmpty()) {
+                    return 1;
+                }
+            } else if (authorizationHeader != null) {
+                return 6;
+            }
+        }
+        if ("GET".equalsIgnoreCase(method)) {
+            if ("/api/v1/users/verify".equals(requestURI)) {
+                return authorizationHeader != null ? 7 : 8;
+            } else if (authorizationHeader == null) {
+                return 1;
+            }
+        }
+        if ("PUT".equalsIgnoreCase(method) && authorizationHeader == null) {
+            return 1;
+        }
+        if (PUBLIC_URIS.contains(requestURI)) {
+            return 9;
+        }
+        return 10;
+    }
+}
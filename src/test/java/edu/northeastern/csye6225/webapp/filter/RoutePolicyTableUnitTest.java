@@ -0,0 +1,75 @@
+package edu.northeastern.csye6225.webapp.filter;
+
+import edu.northeastern.csye6225.webapp.config.FilterConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RoutePolicyTableUnitTest {
+
+    private RoutePolicyTable routePolicyTable;
+
+    @BeforeEach
+    public void setUp() {
+        routePolicyTable = new FilterConfig().routePolicyTable();
+    }
+
+    @Test
+    public void testLookup_HealthzIsPublicWithoutDatabaseCheck() {
+        RoutePolicy policy = routePolicyTable.lookup("GET", "/healthz");
+
+        assertEquals(RoutePolicy.Access.PUBLIC, policy.getAccess());
+        assertEquals(RoutePolicy.AuthHeader.FORBIDDEN, policy.getAuthHeader());
+        assertFalse(policy.isPayloadAllowed());
+        assertFalse(policy.isDatabaseRequired());
+    }
+
+    @Test
+    public void testLookup_PicRequiresAuthHeader() {
+        for (String method : new String[]{"GET", "POST", "DELETE"}) {
+            RoutePolicy policy = routePolicyTable.lookup(method, "/api/v1/users/pic");
+            assertEquals(RoutePolicy.Access.AUTHENTICATED, policy.getAccess());
+            assertEquals(RoutePolicy.AuthHeader.REQUIRED, policy.getAuthHeader());
+        }
+    }
+
+    @Test
+    public void testLookup_DirectUploadStepsRequireAuthHeader() {
+        for (String path : new String[]{"/api/v1/users/pic/upload-url", "/api/v1/users/pic/complete"}) {
+            RoutePolicy policy = routePolicyTable.lookup("POST", path);
+            assertEquals(RoutePolicy.Access.AUTHENTICATED, policy.getAccess());
+            assertEquals(RoutePolicy.AuthHeader.REQUIRED, policy.getAuthHeader());
+        }
+    }
+
+    @Test
+    public void testLookup_DeleteOnOtherPathIsRejected() {
+        RoutePolicy policy = routePolicyTable.lookup("DELETE", "/api/v1/users/self");
+
+        assertEquals(RoutePolicy.Access.REJECT, policy.getAccess());
+        assertEquals(405, policy.getRejectStatus());
+    }
+
+    @Test
+    public void testLookup_UnknownMethodIsRejected() {
+        RoutePolicy policy = routePolicyTable.lookup("PROPFIND", "/api/v1/users/self");
+
+        assertEquals(RoutePolicy.Access.REJECT, policy.getAccess());
+        assertEquals(405, policy.getRejectStatus());
+    }
+
+    @Test
+    public void testLookup_OnlyETagResourcesMayBeStored() {
+        assertEquals(RoutePolicy.PRIVATE_REVALIDATE, routePolicyTable.lookup("GET", "/api/v1/users/self").getCacheControl());
+        assertEquals(RoutePolicy.PRIVATE_REVALIDATE, routePolicyTable.lookup("GET", "/api/v1/users/pic").getCacheControl());
+        assertEquals(RoutePolicy.NO_STORE, routePolicyTable.lookup("PUT", "/api/v1/users/update").getCacheControl());
+        assertEquals(RoutePolicy.NO_STORE, routePolicyTable.lookup("POST", "/api/v1/users/token").getCacheControl());
+        assertEquals(RoutePolicy.NO_STORE, routePolicyTable.lookup("GET", "/healthz").getCacheControl());
+    }
+
+    @Test
+    public void testBuild_MissingDefaultFails() {
+        assertThrows(IllegalStateException.class, () -> RoutePolicyTable.builder().build());
+    }
+}
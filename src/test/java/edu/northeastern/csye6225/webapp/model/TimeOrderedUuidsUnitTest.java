@@ -0,0 +1,81 @@
+package edu.northeastern.csye6225.webapp.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimeOrderedUuidsUnitTest {
+
+    @Test
+    public void testNext_IsVersion7WithEmbeddedTime() {
+        long before = System.currentTimeMillis();
+        UUID id = TimeOrderedUuids.next();
+
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+        assertTrue(TimeOrderedUuids.timestampMillis(id) >= before);
+    }
+
+    @Test
+    public void testNext_BinaryFormSortsByCreationOrder() {
+        byte[] previous = toBytes(TimeOrderedUuids.next());
+        for (int i = 0; i < 100_000; i++) {
+            byte[] current = toBytes(TimeOrderedUuids.next());
+            assertTrue(Arrays.compareUnsigned(previous, current) < 0);
+            previous = current;
+        }
+    }
+
+    @Test
+    public void testNext_StaysMonotonicWhenTheClockGoesBack() {
+        UUID later = TimeOrderedUuids.next(System.currentTimeMillis() + 10_000);
+        UUID earlier = TimeOrderedUuids.next(System.currentTimeMillis());
+
+        assertTrue(Arrays.compareUnsigned(toBytes(later), toBytes(earlier)) < 0);
+    }
+
+    @Test
+    public void testNext_UniqueAcrossThreads() throws Exception {
+        Set<UUID> ids = ConcurrentHashMap.newKeySet();
+        AtomicBoolean duplicate = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 50_000; i++) {
+                        if (!ids.add(TimeOrderedUuids.next())) {
+                            duplicate.set(true);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertFalse(duplicate.get());
+        assertEquals(400_000, new HashSet<>(ids).size());
+    }
+
+    private static byte[] toBytes(UUID id) {
+        return ByteBuffer.allocate(16).putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits()).array();
+    }
+}
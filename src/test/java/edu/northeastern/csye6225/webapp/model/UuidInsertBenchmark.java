@@ -0,0 +1,89 @@
+package edu.northeastern.csye6225.webapp.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Inserts the same number of rows into two copies of a users-shaped InnoDB table, one
+ * keyed by random UUIDs and one by TimeOrderedUuids, and prints rows/s per million rows
+ * plus the final index size. Needs a scratch MySQL schema:
+ * {@code mvn test -Dtest=UuidInsertBenchmark -Dbenchmark=true -Dbenchmark.db.url=jdbc:mysql://localhost/bench
+ * -Dbenchmark.db.username=... -Dbenchmark.db.password=... [-Dbenchmark.rows=5000000]}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class UuidInsertBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int REPORT_EVERY = 1_000_000;
+
+    @Test
+    public void compareRandomAndTimeOrderedKeys() throws SQLException {
+        int rows = Integer.getInteger("benchmark.rows", 5_000_000);
+        String url = System.getProperty("benchmark.db.url") + "?rewriteBatchedStatements=true";
+        try (Connection connection = DriverManager.getConnection(url,
+                System.getProperty("benchmark.db.username"), System.getProperty("benchmark.db.password"))) {
+            run(connection, "bench_users_random", rows, UUID::randomUUID);
+            run(connection, "bench_users_ordered", rows, TimeOrderedUuids::next);
+        }
+    }
+
+    private static void run(Connection connection, String table, int rows, Supplier<UUID> ids) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + table);
+            statement.execute("CREATE TABLE " + table + " (id BINARY(16) NOT NULL PRIMARY KEY, "
+                    + "email VARCHAR(255) NOT NULL, first_name VARCHAR(255), last_name VARCHAR(255), "
+                    + "password VARCHAR(255) NOT NULL, creation_time DATETIME(6), update_time DATETIME(6), "
+                    + "verified BIT NOT NULL) ENGINE=InnoDB");
+        }
+
+        connection.setAutoCommit(false);
+        String sql = "INSERT INTO " + table + " VALUES (?, ?, 'Bench', 'User', "
+                + "'{bcrypt}$2a$10$abcdefghijklmnopqrstuuabcdefghijklmnopqrstuvwxyz01234', NOW(6), NOW(6), 0)";
+        long start = System.nanoTime();
+        long windowStart = start;
+        try (PreparedStatement insert = connection.prepareStatement(sql)) {
+            for (int i = 1; i <= rows; i++) {
+                insert.setBytes(1, toBytes(ids.get()));
+                insert.setString(2, "user" + i + "@bench.example");
+                insert.addBatch();
+                if (i % BATCH_SIZE == 0) {
+                    insert.executeBatch();
+                    connection.commit();
+                }
+                if (i % REPORT_EVERY == 0) {
+                    long now = System.nanoTime();
+                    System.out.printf("%-20s rows %,10d: %,9.0f rows/s%n", table, i, REPORT_EVERY * 1e9 / (now - windowStart));
+                    windowStart = now;
+                }
+            }
+            insert.executeBatch();
+            connection.commit();
+        }
+        connection.setAutoCommit(true);
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE TABLE " + table);
+            try (ResultSet size = statement.executeQuery("SELECT data_length, data_free FROM information_schema.tables "
+                    + "WHERE table_schema = DATABASE() AND table_name = '" + table + "'")) {
+                size.next();
+                System.out.printf("%-20s total %,d rows in %.1f s (%,.0f rows/s), clustered index %,d MB, free %,d MB%n",
+                        table, rows, seconds, rows / seconds, size.getLong(1) >> 20, size.getLong(2) >> 20);
+            }
+        }
+    }
+
+    private static byte[] toBytes(UUID id) {
+        return ByteBuffer.allocate(16).putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits()).array();
+    }
+}
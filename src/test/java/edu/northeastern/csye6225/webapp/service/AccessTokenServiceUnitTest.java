@@ -0,0 +1,117 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import com.timgroup.statsd.StatsDClient;
+import edu.northeastern.csye6225.webapp.model.AuthenticatedUser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class AccessTokenServiceUnitTest {
+
+    private AccessTokenService accessTokenService;
+
+    private StatsDClient statsDClient;
+
+    private AuthenticatedUser user;
+
+    @BeforeEach
+    public void setUp() {
+        statsDClient = mock(StatsDClient.class);
+        accessTokenService = newService("test-secret", 900);
+        user = new AuthenticatedUser(UUID.randomUUID(), "test@domain.com", true, "hash");
+    }
+
+    private AccessTokenService newService(String secret, long ttlSeconds) {
+        return newService(secret, null, ttlSeconds);
+    }
+
+    private AccessTokenService newService(String secret, String previousSecret, long ttlSeconds) {
+        AccessTokenService service = new AccessTokenService();
+        ReflectionTestUtils.setField(service, "statsDClient", statsDClient);
+        ReflectionTestUtils.setField(service, "environment", new MockEnvironment());
+        ReflectionTestUtils.setField(service, "secret", secret);
+        ReflectionTestUtils.setField(service, "previousSecret", previousSecret);
+        ReflectionTestUtils.setField(service, "ttlSeconds", ttlSeconds);
+        ReflectionTestUtils.setField(service, "rotationSeconds", 3600L);
+        service.init();
+        return service;
+    }
+
+    @Test
+    public void testValidate_RoundTrip() {
+        String token = accessTokenService.issue(user);
+
+        AuthenticatedUser principal = accessTokenService.validate(token);
+
+        assertNotNull(principal);
+        assertEquals(user.id(), principal.id());
+        assertEquals("test@domain.com", principal.email());
+        assertTrue(principal.verified());
+        assertNull(principal.passwordHash());
+        verify(statsDClient).incrementCounter("api.auth.token.valid");
+    }
+
+    @Test
+    public void testValidate_TamperedTokenRejected() {
+        String token = accessTokenService.issue(user);
+        int signatureStart = token.indexOf('.') + 1;
+        char first = token.charAt(signatureStart);
+        String tampered = token.substring(0, signatureStart) + (first == 'A' ? 'B' : 'A') + token.substring(signatureStart + 1);
+
+        assertNull(accessTokenService.validate(tampered));
+        assertNull(accessTokenService.validate("not-a-token"));
+        verify(statsDClient, times(2)).incrementCounter("api.auth.token.invalid");
+    }
+
+    @Test
+    public void testValidate_OtherSecretRejected() {
+        String token = newService("other-secret", 900).issue(user);
+
+        assertNull(accessTokenService.validate(token));
+    }
+
+    @Test
+    public void testValidate_PreviousSecretStillAcceptedAfterRotation() {
+        String issuedBeforeRotation = newService("old-secret", 900).issue(user);
+        AccessTokenService rotated = newService("new-secret", "old-secret", 900);
+
+        assertNotNull(rotated.validate(issuedBeforeRotation));
+        // New tokens are signed with the new secret only
+        assertNull(newService("old-secret", 900).validate(rotated.issue(user)));
+        assertNotNull(newService("new-secret", 900).validate(rotated.issue(user)));
+    }
+
+    @Test
+    public void testInit_MissingSecretFailsStartup() {
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> newService("", 900));
+        assertTrue(e.getMessage().contains("TOKEN_SECRET"));
+    }
+
+    @Test
+    public void testInit_MissingSecretAllowedInDevProfile() {
+        AccessTokenService service = new AccessTokenService();
+        MockEnvironment environment = new MockEnvironment();
+        environment.setActiveProfiles("dev");
+        ReflectionTestUtils.setField(service, "statsDClient", statsDClient);
+        ReflectionTestUtils.setField(service, "environment", environment);
+        ReflectionTestUtils.setField(service, "secret", "");
+        ReflectionTestUtils.setField(service, "ttlSeconds", 900L);
+        ReflectionTestUtils.setField(service, "rotationSeconds", 3600L);
+        service.init();
+
+        assertNotNull(service.validate(service.issue(user)));
+    }
+
+    @Test
+    public void testValidate_ExpiredTokenRejected() {
+        String token = newService("test-secret", 0).issue(user);
+
+        assertNull(accessTokenService.validate(token));
+    }
+}
@@ -0,0 +1,107 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.timgroup.statsd.StatsDClient;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class BulkUserImportServiceUnitTest {
+
+    @InjectMocks
+    private BulkUserImportService bulkUserImportService;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private PasswordEncoder passwordEncoder;
+
+    @Mock
+    private StatsDClient statsDClient;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(bulkUserImportService, "batchSize", 2);
+        ReflectionTestUtils.setField(bulkUserImportService, "hashParallelism", 2);
+        VerificationLinkSigner verificationLinkSigner = new VerificationLinkSigner();
+        ReflectionTestUtils.setField(verificationLinkSigner, "secret", "test-secret");
+        verificationLinkSigner.init();
+        ReflectionTestUtils.setField(bulkUserImportService, "verificationLinkSigner", verificationLinkSigner);
+        bulkUserImportService.init();
+        when(passwordEncoder.encode(anyString())).thenReturn("{bcrypt}hash");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        bulkUserImportService.shutdown();
+    }
+
+    @Test
+    public void testImportUsers_ReportsEachRow() throws Exception {
+        when(namedParameterJdbcTemplate.queryForList(anyString(), any(SqlParameterSource.class), eq(String.class)))
+                .thenReturn(List.of("taken@domain.com"));
+        String body = """
+                {"email":"new@domain.com","firstName":"Jane","lastName":"Doe","password":"secret123"}
+                {"email":"not-an-email","firstName":"Jane","lastName":"Doe","password":"secret123"}
+                {"email":"taken@domain.com","firstName":"John","lastName":"Doe","password":"secret123"}
+                not json
+                """;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BulkUserImportService.Summary summary = bulkUserImportService.importUsers(
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), BulkUserImportService.Format.NDJSON, out);
+
+        assertEquals(1, summary.created());
+        assertEquals(3, summary.rejected());
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(4, lines.length);
+        assertTrue(lines[0].contains("\"status\":\"created\""));
+        assertTrue(lines[1].contains("\"status\":\"rejected\""));
+        assertTrue(lines[2].contains("Email already exists"));
+        assertTrue(lines[3].contains("Malformed row"));
+        verify(passwordEncoder, times(1)).encode("secret123");
+        verify(transactionTemplate, times(1)).executeWithoutResult(any());
+    }
+
+    @Test
+    public void testSplitCsv_HandlesQuotedFields() {
+        assertEquals(List.of("a@b.com", "Doe, Jane", "say \"hi\"", ""),
+                BulkUserImportService.splitCsv("a@b.com,\"Doe, Jane\",\"say \"\"hi\"\"\","));
+    }
+}
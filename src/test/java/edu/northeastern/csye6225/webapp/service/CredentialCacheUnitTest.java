@@ -0,0 +1,87 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import com.timgroup.statsd.StatsDClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class CredentialCacheUnitTest {
+
+    private CredentialCache credentialCache;
+
+    private StatsDClient statsDClient;
+
+    private UserDetails principal;
+
+    @BeforeEach
+    public void setUp() {
+        statsDClient = mock(StatsDClient.class);
+        credentialCache = new CredentialCache();
+        ReflectionTestUtils.setField(credentialCache, "statsDClient", statsDClient);
+        ReflectionTestUtils.setField(credentialCache, "ttlSeconds", 300L);
+        ReflectionTestUtils.setField(credentialCache, "maxEntries", 2);
+        principal = User.withUsername("test@domain.com").password("").authorities("USER").build();
+    }
+
+    @Test
+    public void testGet_HitWithSamePassword() {
+        credentialCache.put("test@domain.com", "password", principal, credentialCache.generation("test@domain.com"));
+
+        assertSame(principal, credentialCache.get("test@domain.com", "password"));
+        verify(statsDClient).incrementCounter("auth.cache.hit");
+    }
+
+    @Test
+    public void testGet_MissWithDifferentPassword() {
+        credentialCache.put("test@domain.com", "password", principal, credentialCache.generation("test@domain.com"));
+
+        assertNull(credentialCache.get("test@domain.com", "wrong"));
+        verify(statsDClient).incrementCounter("auth.cache.miss");
+    }
+
+    @Test
+    public void testGet_ExpiredEntryIsEvicted() {
+        ReflectionTestUtils.setField(credentialCache, "ttlSeconds", 0L);
+        credentialCache.put("test@domain.com", "password", principal, credentialCache.generation("test@domain.com"));
+
+        assertNull(credentialCache.get("test@domain.com", "password"));
+        assertEquals(0, credentialCache.size());
+        verify(statsDClient).incrementCounter("auth.cache.eviction");
+    }
+
+    @Test
+    public void testInvalidate_RemovesEntry() {
+        credentialCache.put("test@domain.com", "password", principal, credentialCache.generation("test@domain.com"));
+        credentialCache.invalidate("test@domain.com");
+
+        assertNull(credentialCache.get("test@domain.com", "password"));
+    }
+
+    @Test
+    public void testPut_StaysWithinMaxEntries() {
+        credentialCache.put("a@domain.com", "password", principal, credentialCache.generation("a@domain.com"));
+        credentialCache.put("b@domain.com", "password", principal, credentialCache.generation("b@domain.com"));
+        credentialCache.put("c@domain.com", "password", principal, credentialCache.generation("c@domain.com"));
+
+        assertTrue(credentialCache.size() <= 2);
+        assertNotNull(credentialCache.get("c@domain.com", "password"));
+    }
+
+    @Test
+    public void testPut_SkippedAfterInvalidationSinceGenerationWasRead() {
+        long generation = credentialCache.generation("test@domain.com");
+        // Password changed while the old one was being checked against the database
+        credentialCache.invalidate("test@domain.com");
+
+        credentialCache.put("test@domain.com", "password", principal, generation);
+
+        assertNull(credentialCache.get("test@domain.com", "password"));
+        assertEquals(0, credentialCache.size());
+        verify(statsDClient).incrementCounter("auth.cache.staleWrite");
+    }
+}
@@ -0,0 +1,77 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import com.timgroup.statsd.StatsDClient;
+import edu.northeastern.csye6225.webapp.Dao.AppHealthCheckDao;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class DatabaseHealthMonitorUnitTest {
+
+    @InjectMocks
+    private DatabaseHealthMonitor databaseHealthMonitor;
+
+    @Mock
+    private AppHealthCheckDao appHealthCheckDao;
+
+    @Mock
+    private StatsDClient statsDClient;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(databaseHealthMonitor, "failureThreshold", 2);
+        ReflectionTestUtils.setField(databaseHealthMonitor, "recoveryThreshold", 2);
+    }
+
+    @Test
+    public void testProbe_SingleFailureKeepsHealthy() throws Exception {
+        doThrow(new RuntimeException("down")).when(appHealthCheckDao).checkDBConnection();
+
+        databaseHealthMonitor.probe();
+
+        assertTrue(databaseHealthMonitor.isHealthy());
+    }
+
+    @Test
+    public void testProbe_ThresholdFailuresThenRecovery() throws Exception {
+        doThrow(new RuntimeException("down")).when(appHealthCheckDao).checkDBConnection();
+        databaseHealthMonitor.probe();
+        databaseHealthMonitor.probe();
+        assertFalse(databaseHealthMonitor.isHealthy());
+        verify(statsDClient).incrementCounter("db.health.state.down");
+
+        doNothing().when(appHealthCheckDao).checkDBConnection();
+        databaseHealthMonitor.probe();
+        assertFalse(databaseHealthMonitor.isHealthy());
+        databaseHealthMonitor.probe();
+        assertTrue(databaseHealthMonitor.isHealthy());
+        verify(statsDClient).incrementCounter("db.health.state.up");
+    }
+
+    @Test
+    public void testInit_ProbesOnItsOwnThread() throws Exception {
+        CompletableFuture<String> probeThread = new CompletableFuture<>();
+        doAnswer(inv -> {
+            probeThread.complete(Thread.currentThread().getName());
+            return null;
+        }).when(appHealthCheckDao).checkDBConnection();
+        ReflectionTestUtils.setField(databaseHealthMonitor, "intervalMillis", 60_000L);
+
+        databaseHealthMonitor.init();
+        try {
+            assertEquals("db-health-probe", probeThread.get(5, TimeUnit.SECONDS));
+        } finally {
+            databaseHealthMonitor.shutdown();
+        }
+    }
+}
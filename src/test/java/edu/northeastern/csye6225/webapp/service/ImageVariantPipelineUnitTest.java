@@ -0,0 +1,195 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import com.timgroup.statsd.StatsDClient;
+import edu.northeastern.csye6225.webapp.Dao.ImageDao;
+import edu.northeastern.csye6225.webapp.model.Image;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class ImageVariantPipelineUnitTest {
+
+    @InjectMocks
+    private ImageVariantPipeline pipeline;
+
+    @Mock
+    private S3Service s3Service;
+
+    @Mock
+    private ImageDao imageDao;
+
+    @Mock
+    private ObjectDeletionRelay objectDeletionRelay;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private StatsDClient statsDClient;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(pipeline, "variantSpec", "thumb:64,small:256,medium:512");
+        ReflectionTestUtils.setField(pipeline, "jpegQuality", 0.8f);
+        ReflectionTestUtils.setField(pipeline, "threads", 1);
+        ReflectionTestUtils.setField(pipeline, "queueCapacity", 1);
+        ReflectionTestUtils.setField(pipeline, "maxSourceBytes", 20L << 20);
+        ReflectionTestUtils.setField(pipeline, "maxSourcePixels", 40_000_000L);
+        pipeline.init();
+
+        when(s3Service.keyOf(anyString())).thenReturn("1_me.png");
+        when(s3Service.uploadBytes(anyString(), any(byte[].class), eq("image/jpeg"))).thenAnswer(invocation ->
+                CompletableFuture.completedFuture("https://bucket.s3.amazonaws.com/" + invocation.getArgument(0)));
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
+        doAnswer(invocation -> {
+            ((Consumer<TransactionStatus>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pipeline.shutdown();
+    }
+
+    @Test
+    public void testRender_ScalesDownButNeverUp() throws IOException {
+        Map<String, byte[]> rendered = pipeline.render(png(400, 200));
+
+        assertEquals(2, rendered.size());
+        assertFalse(rendered.containsKey("medium"));
+        BufferedImage small = ImageIO.read(new ByteArrayInputStream(rendered.get("small")));
+        assertEquals(256, small.getWidth());
+        assertEquals(128, small.getHeight());
+        BufferedImage thumb = ImageIO.read(new ByteArrayInputStream(rendered.get("thumb")));
+        assertEquals(64, thumb.getWidth());
+        assertEquals(32, thumb.getHeight());
+    }
+
+    @Test
+    public void testRender_RefusesImagesOverThePixelLimit() {
+        ReflectionTestUtils.setField(pipeline, "maxSourcePixels", 10_000L);
+
+        assertThrows(IOException.class, () -> pipeline.render(png(400, 200)));
+    }
+
+    @Test
+    public void testSubmit_RecordsVariantUrlsOnTheImage() throws IOException {
+        UUID imageId = UUID.randomUUID();
+        Image image = new Image();
+        when(imageDao.findById(imageId)).thenReturn(Optional.of(image));
+
+        assertTrue(pipeline.submit(imageId, "https://bucket.s3.amazonaws.com/1_me.png", null, upload(png(600, 600))));
+
+        verify(imageDao, timeout(5000)).save(image);
+        assertEquals("https://bucket.s3.amazonaws.com/1_me.png.thumb.jpg", image.getVariants().get("thumb"));
+        assertEquals(3, image.getVariants().size());
+        verify(objectDeletionRelay, never()).enqueue(anyString());
+        // The spooled original is gone once it has been decoded
+        try (Stream<Path> spooled = Files.list((Path) ReflectionTestUtils.getField(pipeline, "spoolDir"))) {
+            assertEquals(0, spooled.count());
+        }
+    }
+
+    @Test
+    public void testSubmit_VariantsOfADeletedImageAreQueuedForDeletion() throws IOException {
+        UUID imageId = UUID.randomUUID();
+        when(imageDao.findById(imageId)).thenReturn(Optional.empty());
+
+        pipeline.submit(imageId, "https://bucket.s3.amazonaws.com/1_me.png", null, upload(png(600, 600)));
+
+        verify(objectDeletionRelay, timeout(5000)).enqueue("1_me.png.thumb.jpg");
+        verify(objectDeletionRelay).enqueue("1_me.png.small.jpg");
+        verify(objectDeletionRelay).enqueue("1_me.png.medium.jpg");
+        verify(imageDao, never()).save(any(Image.class));
+    }
+
+    @Test
+    public void testSubmit_SharedVariantsOfADeletedImageWaitForTheReferenceCheck() throws IOException {
+        UUID imageId = UUID.randomUUID();
+        when(imageDao.findById(imageId)).thenReturn(Optional.empty());
+        when(s3Service.keyOf(anyString())).thenReturn("5e1f");
+
+        pipeline.submit(imageId, "https://bucket.s3.amazonaws.com/5e1f", "5e1f", upload(png(600, 600)));
+
+        verify(objectDeletionRelay, timeout(5000)).enqueueIfUnreferenced("5e1f.thumb.jpg", "5e1f");
+        verify(objectDeletionRelay).enqueueIfUnreferenced("5e1f.small.jpg", "5e1f");
+        verify(objectDeletionRelay).enqueueIfUnreferenced("5e1f.medium.jpg", "5e1f");
+        verify(objectDeletionRelay, never()).enqueue(anyString());
+    }
+
+    @Test
+    public void testSubmit_FullQueueSkipsVariantsWithoutSpoolingTheUpload() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch busy = new CountDownLatch(1);
+        when(s3Service.keyOf(anyString())).thenAnswer(invocation -> {
+            busy.countDown();
+            release.await();
+            return "1_me.png";
+        });
+        MultipartFile image = upload(png(100, 100));
+        try {
+            assertTrue(pipeline.submit(UUID.randomUUID(), "https://bucket.s3.amazonaws.com/1_me.png", null, image));
+            busy.await();
+            assertTrue(pipeline.submit(UUID.randomUUID(), "https://bucket.s3.amazonaws.com/2_me.png", null, image));
+
+            MultipartFile overflow = mock(MultipartFile.class);
+            when(overflow.getSize()).thenReturn(1024L);
+            assertFalse(pipeline.submit(UUID.randomUUID(), "https://bucket.s3.amazonaws.com/3_me.png", null, overflow));
+
+            verify(overflow, never()).transferTo(any(File.class));
+            verify(overflow, never()).getBytes();
+            verify(statsDClient).incrementCounter("image.pipeline.rejected");
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private static MultipartFile upload(byte[] content) {
+        return new MockMultipartFile("file", "me.png", "image/png", content);
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.ORANGE);
+        graphics.fillOval(0, 0, width, height);
+        graphics.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,91 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import com.timgroup.statsd.NoOpStatsDClient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Decode + resize + encode throughput of ImageVariantPipeline.render, in images per second
+ * and per second per core, for 1..N worker threads on a camera-sized JPEG:
+ * {@code mvn test -Dtest=ImageVariantThroughputBenchmark -Dbenchmark=true [-Dbenchmark.images=200]
+ * [-Dbenchmark.image.width=3000] [-Dbenchmark.image.height=2000]}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class ImageVariantThroughputBenchmark {
+
+    @Test
+    public void throughputPerCore() throws Exception {
+        int images = Integer.getInteger("benchmark.images", 200);
+        byte[] original = photo(Integer.getInteger("benchmark.image.width", 3000), Integer.getInteger("benchmark.image.height", 2000));
+
+        ImageVariantPipeline pipeline = new ImageVariantPipeline();
+        ReflectionTestUtils.setField(pipeline, "statsDClient", new NoOpStatsDClient());
+        ReflectionTestUtils.setField(pipeline, "variantSpec", System.getProperty("benchmark.variants", "thumb:64,small:256,medium:512"));
+        ReflectionTestUtils.setField(pipeline, "jpegQuality", 0.8f);
+        ReflectionTestUtils.setField(pipeline, "threads", 1);
+        ReflectionTestUtils.setField(pipeline, "queueCapacity", 1);
+        ReflectionTestUtils.setField(pipeline, "maxSourceBytes", Long.MAX_VALUE);
+        ReflectionTestUtils.setField(pipeline, "maxSourcePixels", Long.MAX_VALUE);
+        pipeline.init();
+
+        // Warm up the JIT and the codecs
+        for (int i = 0; i < 10; i++) {
+            pipeline.render(original);
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%d x %d KiB source, %d cores%n", images, original.length / 1024, cores);
+        try {
+            for (int threads = 1; threads <= cores; threads *= 2) {
+                ExecutorService executor = Executors.newFixedThreadPool(threads);
+                try {
+                    long start = System.nanoTime();
+                    List<Future<?>> done = new ArrayList<>(images);
+                    for (int i = 0; i < images; i++) {
+                        done.add(executor.submit(() -> pipeline.render(original)));
+                    }
+                    for (Future<?> future : done) {
+                        future.get();
+                    }
+                    double seconds = (System.nanoTime() - start) / 1e9;
+                    System.out.printf("%2d threads: %7.1f images/s  %6.1f images/s/core%n",
+                            threads, images / seconds, images / seconds / threads);
+                } finally {
+                    executor.shutdownNow();
+                }
+            }
+        } finally {
+            pipeline.shutdown();
+        }
+    }
+
+    // Noise keeps the JPEG codec from getting an unrealistically easy image
+    private static byte[] photo(int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.BLUE, width, height, Color.ORANGE));
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        Random random = new Random(42);
+        for (int i = 0; i < width * height / 20; i++) {
+            image.setRGB(random.nextInt(width), random.nextInt(height), random.nextInt(0xFFFFFF));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+}
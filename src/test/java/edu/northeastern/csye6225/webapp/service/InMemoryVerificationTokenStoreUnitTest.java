@@ -0,0 +1,94 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import com.timgroup.statsd.StatsDClient;
+import edu.northeastern.csye6225.webapp.Dao.VerificationTokenDao;
+import edu.northeastern.csye6225.webapp.model.User;
+import edu.northeastern.csye6225.webapp.model.VerificationToken;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class InMemoryVerificationTokenStoreUnitTest {
+
+    private final VerificationTokenDao verificationTokenDao = mock(VerificationTokenDao.class);
+    private final StatsDClient statsDClient = mock(StatsDClient.class);
+    private InMemoryVerificationTokenStore store;
+
+    @BeforeEach
+    public void setUp() {
+        when(verificationTokenDao.save(any(VerificationToken.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        store = new InMemoryVerificationTokenStore(new JpaVerificationTokenStore(verificationTokenDao), statsDClient, 10);
+    }
+
+    @Test
+    public void testSave_WritesThroughAndServesFromMemory() {
+        VerificationToken token = token("abc", Instant.now().plusSeconds(120));
+
+        store.save(token);
+
+        verify(verificationTokenDao).save(token);
+        assertSame(token, store.findByToken("abc").orElseThrow());
+        verify(verificationTokenDao, never()).findWithUserByToken(anyString());
+    }
+
+    @Test
+    public void testAdvance_DropsExpiredTokens() throws InterruptedException {
+        store.save(token("abc", Instant.now().plusMillis(30)));
+        assertEquals(1, store.size());
+
+        Thread.sleep(60);
+        store.advance();
+
+        assertEquals(0, store.size());
+        when(verificationTokenDao.findWithUserByToken("abc")).thenReturn(Optional.empty());
+        assertTrue(store.findByToken("abc").isEmpty());
+    }
+
+    @Test
+    public void testFindByToken_FallsBackToTableAfterRestart() {
+        VerificationToken stored = token("abc", Instant.now().plusSeconds(120));
+        when(verificationTokenDao.findWithUserByToken("abc")).thenReturn(Optional.of(stored));
+
+        assertSame(stored, store.findByToken("abc").orElseThrow());
+        assertSame(stored, store.findByToken("abc").orElseThrow());
+
+        verify(verificationTokenDao, times(1)).findWithUserByToken("abc");
+    }
+
+    @Test
+    public void testDeleteAllByUserId_RemovesFromMemoryAndTable() {
+        VerificationToken token = token("abc", Instant.now().plusSeconds(120));
+        store.save(token);
+
+        store.deleteAllByUser_Id(token.getUserId());
+
+        verify(verificationTokenDao).deleteAllByUser_Id(token.getUserId());
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testPurgeExpired_StopsAfterAShortBatch() {
+        when(verificationTokenDao.purgeExpired(any(Instant.class), eq(100))).thenReturn(100, 100, 40);
+
+        int purged = new JpaVerificationTokenStore(verificationTokenDao).purgeExpired(Instant.now(), 100, 10);
+
+        assertEquals(240, purged);
+        verify(verificationTokenDao, times(3)).purgeExpired(any(Instant.class), eq(100));
+    }
+
+    private static VerificationToken token(String value, Instant expiry) {
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        VerificationToken token = new VerificationToken();
+        token.setUser(user);
+        token.setToken(value);
+        token.setExpiry(expiry);
+        return token;
+    }
+}
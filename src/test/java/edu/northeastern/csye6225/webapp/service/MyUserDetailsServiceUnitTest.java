@@ -0,0 +1,85 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import com.timgroup.statsd.StatsDClient;
+import edu.northeastern.csye6225.webapp.Dao.UserDao;
+import edu.northeastern.csye6225.webapp.model.AuthenticatedUser;
+import edu.northeastern.csye6225.webapp.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class MyUserDetailsServiceUnitTest {
+
+    private static final String EMAIL = "test@domain.com";
+
+    @InjectMocks
+    private MyUserDetailsService myUserDetailsService;
+
+    @Mock
+    private IdentityContext identityContext;
+
+    @Mock
+    private UserDao userDao;
+
+    @Mock
+    private CredentialCache credentialCache;
+
+    @Mock
+    private UserCache userCache;
+
+    @Mock
+    private ReadYourWritesTracker readYourWritesTracker;
+
+    @Mock
+    private StatsDClient statsDClient;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    public void testUpdatePassword_PersistsHashAndEvictsCaches() {
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setEmail(EMAIL);
+        user.setPassword("$2a$04$legacyHash");
+        user.setVerified(true);
+        when(userDao.findByEmail(EMAIL)).thenReturn(user);
+        UserDetails stale = AuthenticatedUser.from(user);
+
+        UserDetails updated = myUserDetailsService.updatePassword(stale, "{bcrypt}$2a$12$newHash");
+
+        assertEquals("{bcrypt}$2a$12$newHash", user.getPassword());
+        verify(userDao).save(user);
+        verify(credentialCache).invalidate(EMAIL);
+        verify(userCache).evict(EMAIL);
+        verify(readYourWritesTracker).recordWrite(EMAIL);
+        assertEquals("{bcrypt}$2a$12$newHash", updated.getPassword());
+        verify(identityContext).set((AuthenticatedUser) updated);
+    }
+
+    @Test
+    public void testUpdatePassword_UserGoneLeavesEverythingAlone() {
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setEmail(EMAIL);
+        user.setPassword("$2a$04$legacyHash");
+        UserDetails stale = AuthenticatedUser.from(user);
+
+        assertSame(stale, myUserDetailsService.updatePassword(stale, "{bcrypt}$2a$12$newHash"));
+
+        verify(userDao, never()).save(any());
+        verify(credentialCache, never()).invalidate(anyString());
+        verify(userCache, never()).evict(anyString());
+    }
+}
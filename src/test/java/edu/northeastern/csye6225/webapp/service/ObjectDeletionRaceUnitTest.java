@@ -0,0 +1,272 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import com.timgroup.statsd.StatsDClient;
+import edu.northeastern.csye6225.webapp.Dao.ImageDao;
+import edu.northeastern.csye6225.webapp.Dao.PendingObjectDeletionDao;
+import edu.northeastern.csye6225.webapp.Dao.UserDao;
+import edu.northeastern.csye6225.webapp.exception.ServiceBusyException;
+import edu.northeastern.csye6225.webapp.model.Image;
+import edu.northeastern.csye6225.webapp.model.PendingObjectDeletion;
+import edu.northeastern.csye6225.webapp.model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs a drain and a dedup-hit upload of the same content side by side against an in-memory
+ * bucket and deletion queue. The queue's rows share one lock, taken the way MySQL takes the row
+ * locks: SKIP LOCKED for the relay's claim, waiting for the upload's lock by hash.
+ */
+public class ObjectDeletionRaceUnitTest {
+
+    private static final String HASH = "5e1f";
+    private static final String EMAIL = "test@domain.com";
+
+    private final Set<String> bucket = ConcurrentHashMap.newKeySet();
+    private final List<PendingObjectDeletion> queue = new CopyOnWriteArrayList<>();
+    private final Set<String> referencedHashes = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<List<String>> uncommittedHashes = ThreadLocal.withInitial(ArrayList::new);
+    private final ReentrantLock rowLock = new ReentrantLock();
+
+    private UserService userService;
+    private ObjectDeletionRelay objectDeletionRelay;
+    private ExecutorService racers;
+
+    @BeforeEach
+    public void setUp() {
+        StatsDClient statsDClient = mock(StatsDClient.class);
+        TransactionTemplate transactionTemplate = transactionTemplate();
+        PendingObjectDeletionDao pendingObjectDeletionDao = pendingObjectDeletionDao();
+        ImageDao imageDao = imageDao();
+        S3Service s3Service = s3Service();
+
+        objectDeletionRelay = new ObjectDeletionRelay();
+        ReflectionTestUtils.setField(objectDeletionRelay, "pendingObjectDeletionDao", pendingObjectDeletionDao);
+        ReflectionTestUtils.setField(objectDeletionRelay, "imageDao", imageDao);
+        ReflectionTestUtils.setField(objectDeletionRelay, "s3Service", s3Service);
+        ReflectionTestUtils.setField(objectDeletionRelay, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(objectDeletionRelay, "statsDClient", statsDClient);
+        ReflectionTestUtils.setField(objectDeletionRelay, "pollLimit", 1000);
+        ReflectionTestUtils.setField(objectDeletionRelay, "initialBackoffMillis", 1000L);
+        ReflectionTestUtils.setField(objectDeletionRelay, "maxBackoffMillis", 60000L);
+        ReflectionTestUtils.setField(objectDeletionRelay, "leaseMillis", 300000L);
+        ReflectionTestUtils.setField(objectDeletionRelay, "dedupGraceMillis", 3600000L);
+
+        UserDao userDao = mock(UserDao.class);
+        when(userDao.existsByEmail(EMAIL)).thenReturn(true);
+        when(userDao.findByEmail(EMAIL)).thenAnswer(invocation -> {
+            User user = new User();
+            user.setId(UUID.randomUUID());
+            user.setEmail(EMAIL);
+            return user;
+        });
+
+        userService = new UserService();
+        ReflectionTestUtils.setField(userService, "userDao", userDao);
+        ReflectionTestUtils.setField(userService, "imageDao", imageDao);
+        ReflectionTestUtils.setField(userService, "s3Service", s3Service);
+        ReflectionTestUtils.setField(userService, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(userService, "objectDeletionRelay", objectDeletionRelay);
+        ReflectionTestUtils.setField(userService, "imageVariantPipeline", mock(ImageVariantPipeline.class));
+        ReflectionTestUtils.setField(userService, "statsDClient", statsDClient);
+        ReflectionTestUtils.setField(userService, "credentialCache", mock(CredentialCache.class));
+        ReflectionTestUtils.setField(userService, "userCache", mock(UserCache.class));
+        ReflectionTestUtils.setField(userService, "readYourWritesTracker", mock(ReadYourWritesTracker.class));
+        ReflectionTestUtils.setField(userService, "attachThreads", 2);
+        ReflectionTestUtils.setField(userService, "attachQueueCapacity", 4);
+        ReflectionTestUtils.setField(userService, "attachRetryAfterSeconds", 1L);
+        userService.init();
+
+        racers = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        racers.shutdownNow();
+        userService.shutdown();
+    }
+
+    @Test
+    public void testDrainAndDedupHitUpload_SavedImageAlwaysHasItsObject() throws Exception {
+        for (int round = 0; round < 200; round++) {
+            // A picture deleted an hour ago whose object is now due, uploaded again by someone else
+            bucket.clear();
+            bucket.add(HASH);
+            queue.clear();
+            referencedHashes.clear();
+            PendingObjectDeletion due = new PendingObjectDeletion();
+            due.setId((long) round);
+            due.setObjectKey(HASH);
+            due.setContentHash(HASH);
+            due.setCreatedAt(Instant.now().minusSeconds(3600));
+            due.setNextAttemptAt(due.getCreatedAt());
+            queue.add(due);
+
+            CountDownLatch start = new CountDownLatch(1);
+            Future<?> drain = racers.submit(() -> {
+                start.await();
+                objectDeletionRelay.drain();
+                return null;
+            });
+            Future<Boolean> upload = racers.submit(() -> {
+                start.await();
+                // A client retries on 503 the way Retry-After tells it to
+                for (int attempt = 0; attempt < 50; attempt++) {
+                    try {
+                        userService.updateUserProfilePicture(EMAIL, picture()).join();
+                        return true;
+                    } catch (CompletionException e) {
+                        if (!(e.getCause() instanceof ServiceBusyException)) {
+                            throw e;
+                        }
+                        Thread.sleep(1);
+                    }
+                }
+                return false;
+            });
+            start.countDown();
+            drain.get(10, TimeUnit.SECONDS);
+
+            assertTrue(upload.get(10, TimeUnit.SECONDS), "upload never got through in round " + round);
+            assertTrue(referencedHashes.contains(HASH));
+            assertTrue(bucket.contains(HASH), "image saved but its object was deleted in round " + round);
+        }
+    }
+
+    private static MockMultipartFile picture() {
+        return new MockMultipartFile("profilePic", "me.png", "image/png", new byte[]{1, 2, 3});
+    }
+
+    // Commits the images saved in the callback and releases the row lock when it returns, as a commit would
+    private TransactionTemplate transactionTemplate() {
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                inTransaction(() -> ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null)));
+        doAnswer(invocation -> inTransaction(() -> {
+            ((Consumer<TransactionStatus>) invocation.getArgument(0)).accept(null);
+            return null;
+        })).when(transactionTemplate).executeWithoutResult(any());
+        return transactionTemplate;
+    }
+
+    private Object inTransaction(Supplier<Object> work) {
+        try {
+            Object result = work.get();
+            referencedHashes.addAll(uncommittedHashes.get());
+            return result;
+        } finally {
+            uncommittedHashes.get().clear();
+            while (rowLock.isHeldByCurrentThread()) {
+                rowLock.unlock();
+            }
+        }
+    }
+
+    private PendingObjectDeletionDao pendingObjectDeletionDao() {
+        PendingObjectDeletionDao dao = mock(PendingObjectDeletionDao.class);
+        when(dao.lockDue(any(Instant.class), anyInt())).thenAnswer(invocation -> {
+            if (!rowLock.tryLock()) {
+                return List.of();
+            }
+            Instant now = invocation.getArgument(0);
+            return queue.stream().filter(deletion -> !deletion.getNextAttemptAt().isAfter(now)).toList();
+        });
+        when(dao.lockByContentHash(anyString())).thenAnswer(invocation -> {
+            rowLock.lock();
+            String contentHash = invocation.getArgument(0);
+            return queue.stream().filter(deletion -> contentHash.equals(deletion.getContentHash())).toList();
+        });
+        when(dao.save(any(PendingObjectDeletion.class))).thenAnswer(invocation -> {
+            PendingObjectDeletion deletion = invocation.getArgument(0);
+            if (!queue.contains(deletion)) {
+                queue.add(deletion);
+            }
+            return deletion;
+        });
+        doAnswer(invocation -> {
+            rowLock.lock();
+            for (Object deletion : (Iterable<?>) invocation.getArgument(0)) {
+                queue.remove(deletion);
+            }
+            return null;
+        }).when(dao).deleteAll(anyIterable());
+        return dao;
+    }
+
+    private ImageDao imageDao() {
+        ImageDao imageDao = mock(ImageDao.class);
+        when(imageDao.save(any(Image.class))).thenAnswer(invocation -> {
+            Image image = invocation.getArgument(0);
+            uncommittedHashes.get().add(image.getContentHash());
+            return image;
+        });
+        when(imageDao.findReferencedContentHashes(anyCollection())).thenAnswer(invocation -> {
+            Collection<String> hashes = invocation.getArgument(0);
+            return hashes.stream().filter(referencedHashes::contains).toList();
+        });
+        return imageDao;
+    }
+
+    private S3Service s3Service() {
+        S3Service s3Service = mock(S3Service.class);
+        when(s3Service.keyOf(anyString())).thenAnswer(invocation -> {
+            String fileUrl = invocation.getArgument(0);
+            return fileUrl.substring(fileUrl.lastIndexOf("/") + 1);
+        });
+        // HEAD first, PUT only when the content is not stored yet
+        when(s3Service.uploadFile(any())).thenAnswer(invocation -> {
+            boolean deduplicated = !bucket.add(HASH);
+            return CompletableFuture.completedFuture(
+                    Map.of("fileUrl", "https://bucket.s3.amazonaws.com/" + HASH, "contentHash", HASH, "deduplicated", deduplicated));
+        });
+        when(s3Service.describeObject(anyString())).thenAnswer(invocation -> {
+            String key = invocation.getArgument(0);
+            return CompletableFuture.completedFuture(
+                    bucket.contains(key) ? Map.of("fileUrl", "https://bucket.s3.amazonaws.com/" + key) : null);
+        });
+        when(s3Service.deleteObjects(anyList())).thenAnswer(invocation -> {
+            List<String> keys = invocation.getArgument(0);
+            return CompletableFuture.supplyAsync(() -> {
+                // Spread the delete over the window an upload can land in
+                try {
+                    Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                keys.forEach(bucket::remove);
+                return Map.<String, String>of();
+            });
+        });
+        return s3Service;
+    }
+}
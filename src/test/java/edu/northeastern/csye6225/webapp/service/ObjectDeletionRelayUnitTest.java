@@ -0,0 +1,248 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import com.timgroup.statsd.StatsDClient;
+import edu.northeastern.csye6225.webapp.Dao.ImageDao;
+import edu.northeastern.csye6225.webapp.Dao.PendingObjectDeletionDao;
+import edu.northeastern.csye6225.webapp.exception.ServiceBusyException;
+import edu.northeastern.csye6225.webapp.model.PendingObjectDeletion;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class ObjectDeletionRelayUnitTest {
+
+    @InjectMocks
+    private ObjectDeletionRelay objectDeletionRelay;
+
+    @Mock
+    private PendingObjectDeletionDao pendingObjectDeletionDao;
+
+    @Mock
+    private ImageDao imageDao;
+
+    @Mock
+    private S3Service s3Service;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private StatsDClient statsDClient;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(objectDeletionRelay, "pollLimit", 2500);
+        ReflectionTestUtils.setField(objectDeletionRelay, "initialBackoffMillis", 1000L);
+        ReflectionTestUtils.setField(objectDeletionRelay, "maxBackoffMillis", 60000L);
+        ReflectionTestUtils.setField(objectDeletionRelay, "dedupGraceMillis", 3600000L);
+        ReflectionTestUtils.setField(objectDeletionRelay, "leaseMillis", 300000L);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
+        doAnswer(invocation -> {
+            ((Consumer<TransactionStatus>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    @Test
+    public void testDrain_S3IsCalledBetweenTwoShortTransactions() {
+        List<PendingObjectDeletion> due = deletions(2);
+        when(pendingObjectDeletionDao.lockDue(any(Instant.class), anyInt())).thenReturn(due);
+        when(s3Service.deleteObjects(anyList())).thenAnswer(invocation -> {
+            // Claimed under a lease that has already been committed
+            due.forEach(deletion -> assertNotNull(deletion.getClaimedUntil()));
+            return CompletableFuture.completedFuture(Map.of());
+        });
+
+        Instant before = Instant.now();
+        objectDeletionRelay.drain();
+
+        InOrder order = inOrder(transactionTemplate, pendingObjectDeletionDao, s3Service);
+        order.verify(transactionTemplate).execute(any());
+        order.verify(pendingObjectDeletionDao).saveAll(due);
+        order.verify(s3Service).deleteObjects(List.of("1.png", "2.png"));
+        order.verify(transactionTemplate).executeWithoutResult(any());
+        order.verify(pendingObjectDeletionDao).deleteAll(List.of(due.get(0), due.get(1)));
+        assertFalse(due.get(0).getNextAttemptAt().isBefore(before.plusMillis(300000L)));
+    }
+
+    @Test
+    public void testEnqueueIfUnreferenced_WaitsOutTheGracePeriod() {
+        Instant before = Instant.now();
+        objectDeletionRelay.enqueueIfUnreferenced("5e1f", "5e1f");
+
+        ArgumentCaptor<PendingObjectDeletion> deletion = ArgumentCaptor.forClass(PendingObjectDeletion.class);
+        verify(pendingObjectDeletionDao).save(deletion.capture());
+        assertEquals("5e1f", deletion.getValue().getContentHash());
+        assertFalse(deletion.getValue().getNextAttemptAt().isBefore(before.plusMillis(3600000L)));
+    }
+
+    @Test
+    public void testDrain_SharedObjectsReferencedAgainAreKept() {
+        List<PendingObjectDeletion> due = deletions(3);
+        due.get(0).setContentHash("aaa");
+        due.get(1).setContentHash("bbb");
+        when(pendingObjectDeletionDao.lockDue(any(Instant.class), anyInt())).thenReturn(due);
+        when(imageDao.findReferencedContentHashes(List.of("aaa", "bbb"))).thenReturn(List.of("bbb"));
+        when(s3Service.deleteObjects(anyList())).thenReturn(CompletableFuture.completedFuture(Map.of()));
+
+        objectDeletionRelay.drain();
+
+        verify(s3Service).deleteObjects(List.of("1.png", "3.png"));
+        verify(pendingObjectDeletionDao).deleteAll(List.of(due.get(1)));
+        verify(pendingObjectDeletionDao).deleteAll(List.of(due.get(0), due.get(2)));
+        verify(statsDClient).count("s3.deletion.revived", 1);
+    }
+
+    @Test
+    public void testDrain_DeletesInBatchesOfAThousand() {
+        when(pendingObjectDeletionDao.lockDue(any(Instant.class), eq(2500))).thenReturn(deletions(2500));
+        when(s3Service.deleteObjects(anyList())).thenReturn(CompletableFuture.completedFuture(Map.of()));
+
+        objectDeletionRelay.drain();
+
+        ArgumentCaptor<List<String>> batches = ArgumentCaptor.forClass(List.class);
+        verify(s3Service, times(3)).deleteObjects(batches.capture());
+        assertEquals(List.of(1000, 1000, 500), batches.getAllValues().stream().map(List::size).toList());
+        verify(pendingObjectDeletionDao, times(3)).deleteAll(anyList());
+    }
+
+    @Test
+    public void testDrain_FailedKeysAreRescheduledWithBackoff() {
+        List<PendingObjectDeletion> due = deletions(2);
+        due.get(1).setAttempts(2);
+        when(pendingObjectDeletionDao.lockDue(any(Instant.class), anyInt())).thenReturn(due);
+        when(s3Service.deleteObjects(anyList())).thenReturn(CompletableFuture.completedFuture(Map.of("2.png", "SlowDown")));
+
+        Instant before = Instant.now();
+        objectDeletionRelay.drain();
+
+        PendingObjectDeletion failed = due.get(1);
+        assertEquals(3, failed.getAttempts());
+        assertNull(failed.getClaimedUntil());
+        // Third attempt waits 1s * 2^2
+        assertFalse(failed.getNextAttemptAt().isBefore(before.plusMillis(4000)));
+        verify(pendingObjectDeletionDao).save(failed);
+        verify(pendingObjectDeletionDao).deleteAll(List.of(due.get(0)));
+    }
+
+    @Test
+    public void testDrain_UnreachableS3KeepsWholeBatchQueued() {
+        List<PendingObjectDeletion> due = deletions(3);
+        when(pendingObjectDeletionDao.lockDue(any(Instant.class), anyInt())).thenReturn(due);
+        when(s3Service.deleteObjects(anyList())).thenReturn(CompletableFuture.failedFuture(new RuntimeException("connection refused")));
+
+        objectDeletionRelay.drain();
+
+        due.forEach(deletion -> assertEquals(1, deletion.getAttempts()));
+        verify(pendingObjectDeletionDao, times(3)).save(any(PendingObjectDeletion.class));
+        verify(pendingObjectDeletionDao, never()).deleteAll(anyList());
+    }
+
+    @Test
+    public void testEnsureQueuedIfUnreferenced_WaitingRowIsPostponedNotDuplicated() {
+        when(pendingObjectDeletionDao.postponeUnclaimed(eq("5e1f"), any(Instant.class))).thenReturn(1);
+
+        Instant before = Instant.now();
+        objectDeletionRelay.ensureQueuedIfUnreferenced("5e1f", "5e1f");
+
+        ArgumentCaptor<Instant> graceEnd = ArgumentCaptor.forClass(Instant.class);
+        verify(pendingObjectDeletionDao).postponeUnclaimed(eq("5e1f"), graceEnd.capture());
+        assertFalse(graceEnd.getValue().isBefore(before.plusMillis(3600000)));
+        verify(pendingObjectDeletionDao, never()).save(any(PendingObjectDeletion.class));
+    }
+
+    @Test
+    public void testEnsureQueuedIfUnreferenced_QueuesWhenNothingIsWaiting() {
+        objectDeletionRelay.ensureQueuedIfUnreferenced("5e1f", "5e1f");
+
+        ArgumentCaptor<PendingObjectDeletion> saved = ArgumentCaptor.forClass(PendingObjectDeletion.class);
+        verify(pendingObjectDeletionDao).save(saved.capture());
+        assertEquals("5e1f", saved.getValue().getContentHash());
+    }
+
+    @Test
+    public void testCancelPending_NewReferenceDropsWaitingRows() {
+        List<PendingObjectDeletion> pending = deletions(2);
+        when(pendingObjectDeletionDao.lockByContentHash("5e1f")).thenReturn(pending);
+
+        objectDeletionRelay.cancelPending("5e1f");
+
+        verify(pendingObjectDeletionDao).deleteAll(pending);
+    }
+
+    @Test
+    public void testCancelPending_ClaimedRowIsBusyAndLeftToTheRelay() {
+        List<PendingObjectDeletion> pending = deletions(1);
+        pending.get(0).setClaimedUntil(Instant.now().plusSeconds(300));
+        when(pendingObjectDeletionDao.lockByContentHash("5e1f")).thenReturn(pending);
+
+        assertThrows(ServiceBusyException.class, () -> objectDeletionRelay.cancelPending("5e1f"));
+
+        verify(pendingObjectDeletionDao, never()).deleteAll(anyList());
+    }
+
+    @Test
+    public void testCancelPending_ExpiredLeaseIsDropped() {
+        List<PendingObjectDeletion> pending = deletions(1);
+        pending.get(0).setClaimedUntil(Instant.now().minusSeconds(1));
+        when(pendingObjectDeletionDao.lockByContentHash("5e1f")).thenReturn(pending);
+
+        objectDeletionRelay.cancelPending("5e1f");
+
+        verify(pendingObjectDeletionDao).deleteAll(pending);
+    }
+
+    @Test
+    public void testConfirmRevived_DropsRowsQueuedSinceCancel() {
+        List<PendingObjectDeletion> pending = deletions(1);
+        when(pendingObjectDeletionDao.lockByContentHash("5e1f")).thenReturn(pending);
+
+        objectDeletionRelay.confirmRevived("5e1f", Instant.now());
+
+        verify(pendingObjectDeletionDao).deleteAll(pending);
+    }
+
+    @Test
+    public void testConfirmRevived_BusyOnceAGracePeriodHasPassed() {
+        Instant revivedAt = Instant.now().minusMillis(3600000L + 1);
+
+        assertThrows(ServiceBusyException.class, () -> objectDeletionRelay.confirmRevived("5e1f", revivedAt));
+
+        verify(pendingObjectDeletionDao, never()).lockByContentHash(anyString());
+        verify(statsDClient).incrementCounter("s3.deletion.reviveExpired");
+    }
+
+    private static List<PendingObjectDeletion> deletions(int count) {
+        List<PendingObjectDeletion> deletions = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            PendingObjectDeletion deletion = new PendingObjectDeletion();
+            deletion.setId((long) i);
+            deletion.setObjectKey(i + ".png");
+            deletion.setCreatedAt(Instant.now());
+            deletion.setNextAttemptAt(deletion.getCreatedAt());
+            deletions.add(deletion);
+        }
+        return deletions;
+    }
+}
@@ -0,0 +1,162 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import com.timgroup.statsd.StatsDClient;
+import edu.northeastern.csye6225.webapp.Dao.OutboxMessageDao;
+import edu.northeastern.csye6225.webapp.model.OutboxMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.sns.SnsClient;
+import software.amazon.awssdk.services.sns.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchResponse;
+import software.amazon.awssdk.services.sns.model.PublishBatchResultEntry;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class OutboxRelayUnitTest {
+
+    @InjectMocks
+    private OutboxRelay outboxRelay;
+
+    @Mock
+    private OutboxMessageDao outboxMessageDao;
+
+    @Mock
+    private SnsClient snsClient;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private StatsDClient statsDClient;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(outboxRelay, "snsTopicArn", "arn:aws:sns:us-east-1:123456789012:verify");
+        ReflectionTestUtils.setField(outboxRelay, "pollLimit", 100);
+        ReflectionTestUtils.setField(outboxRelay, "initialBackoffMillis", 1000L);
+        ReflectionTestUtils.setField(outboxRelay, "maxBackoffMillis", 60000L);
+        ReflectionTestUtils.setField(outboxRelay, "leaseMillis", 300000L);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
+        doAnswer(invocation -> {
+            ((Consumer<TransactionStatus>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    @Test
+    public void testRelay_SnsIsCalledBetweenTwoShortTransactions() {
+        List<OutboxMessage> due = messages(2);
+        Instant before = Instant.now();
+        when(outboxMessageDao.lockDue(any(Instant.class), anyInt())).thenReturn(due);
+        when(snsClient.publishBatch(any(PublishBatchRequest.class))).thenAnswer(invocation -> {
+            // Claimed under a lease that has already been committed
+            due.forEach(message -> assertFalse(message.getNextAttemptAt().isBefore(before.plusMillis(300000L))));
+            return PublishBatchResponse.builder()
+                    .successful(PublishBatchResultEntry.builder().id("1").build(), PublishBatchResultEntry.builder().id("2").build())
+                    .build();
+        });
+
+        outboxRelay.relay();
+
+        InOrder order = inOrder(transactionTemplate, outboxMessageDao, snsClient);
+        order.verify(transactionTemplate).execute(any());
+        order.verify(outboxMessageDao).saveAll(due);
+        order.verify(snsClient).publishBatch(any(PublishBatchRequest.class));
+        order.verify(transactionTemplate).executeWithoutResult(any());
+        order.verify(outboxMessageDao).deleteAll(due);
+    }
+
+    @Test
+    public void testRelay_UnreachableSnsReschedulesTheBatch() {
+        List<OutboxMessage> due = messages(2);
+        when(outboxMessageDao.lockDue(any(Instant.class), anyInt())).thenReturn(due);
+        when(snsClient.publishBatch(any(PublishBatchRequest.class))).thenThrow(SdkClientException.create("timeout"));
+
+        Instant before = Instant.now();
+        outboxRelay.relay();
+
+        due.forEach(message -> {
+            assertEquals(1, message.getAttempts());
+            assertTrue(message.getNextAttemptAt().isBefore(before.plusMillis(300000L)));
+        });
+        verify(outboxMessageDao, times(2)).save(any(OutboxMessage.class));
+        verify(outboxMessageDao, never()).deleteAll(anyList());
+    }
+
+    @Test
+    public void testRelay_PublishesInBatchesOfTen() {
+        when(outboxMessageDao.lockDue(any(Instant.class), eq(100))).thenReturn(messages(23));
+        when(snsClient.publishBatch(any(PublishBatchRequest.class))).thenAnswer(invocation -> {
+            PublishBatchRequest request = invocation.getArgument(0);
+            return PublishBatchResponse.builder()
+                    .successful(request.publishBatchRequestEntries().stream()
+                            .map(entry -> PublishBatchResultEntry.builder().id(entry.id()).build())
+                            .toList())
+                    .build();
+        });
+
+        outboxRelay.relay();
+
+        ArgumentCaptor<PublishBatchRequest> requests = ArgumentCaptor.forClass(PublishBatchRequest.class);
+        verify(snsClient, times(3)).publishBatch(requests.capture());
+        assertEquals(List.of(10, 10, 3), requests.getAllValues().stream()
+                .map(request -> request.publishBatchRequestEntries().size())
+                .toList());
+        verify(outboxMessageDao, times(3)).deleteAll(anyList());
+    }
+
+    @Test
+    public void testRelay_FailedEntriesAreRescheduledWithBackoff() {
+        List<OutboxMessage> due = messages(2);
+        due.get(1).setAttempts(2);
+        when(outboxMessageDao.lockDue(any(Instant.class), anyInt())).thenReturn(due);
+        when(snsClient.publishBatch(any(PublishBatchRequest.class))).thenReturn(PublishBatchResponse.builder()
+                .successful(PublishBatchResultEntry.builder().id("1").build())
+                .failed(BatchResultErrorEntry.builder().id("2").code("Throttled").senderFault(false).build())
+                .build());
+
+        Instant before = Instant.now();
+        outboxRelay.relay();
+
+        OutboxMessage failed = due.get(1);
+        assertEquals(3, failed.getAttempts());
+        // Third attempt waits 1s * 2^2
+        assertFalse(failed.getNextAttemptAt().isBefore(before.plusMillis(4000)));
+        verify(outboxMessageDao).save(failed);
+        verify(outboxMessageDao).deleteAll(List.of(due.get(0)));
+    }
+
+    private static List<OutboxMessage> messages(int count) {
+        List<OutboxMessage> messages = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            OutboxMessage message = new OutboxMessage();
+            message.setId((long) i);
+            message.setEventType("user.verification");
+            message.setPayload("{\"email\":\"user" + i + "@domain.com\"}");
+            message.setCreatedAt(Instant.now());
+            message.setNextAttemptAt(message.getCreatedAt());
+            messages.add(message);
+        }
+        return messages;
+    }
+}
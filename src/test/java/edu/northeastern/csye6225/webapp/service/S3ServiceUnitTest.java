@@ -0,0 +1,323 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import com.timgroup.statsd.StatsDClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Utilities;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Error;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class S3ServiceUnitTest {
+
+    private static final int PART_SIZE = 1024;
+
+    @InjectMocks
+    private S3Service s3Service;
+
+    @Mock
+    private S3AsyncClient s3AsyncClient;
+
+    @Mock
+    private StatsDClient statsDClient;
+
+    // Presigning is local, so a real presigner with made-up credentials is enough
+    private final S3Presigner s3Presigner = S3Presigner.builder()
+            .region(Region.US_EAST_1)
+            .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("AKIDEXAMPLE", "secret")))
+            .build();
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(s3Service, "bucketName", "bucket");
+        ReflectionTestUtils.setField(s3Service, "objectCacheControl", "max-age=31536000, immutable");
+        ReflectionTestUtils.setField(s3Service, "multipartThreshold", 4L * PART_SIZE);
+        ReflectionTestUtils.setField(s3Service, "partSize", PART_SIZE);
+        ReflectionTestUtils.setField(s3Service, "bufferPoolSize", 2);
+        ReflectionTestUtils.setField(s3Service, "partParallelism", 2);
+        ReflectionTestUtils.setField(s3Service, "bufferWaitMillis", 1000L);
+        ReflectionTestUtils.setField(s3Service, "ioThreads", 2);
+        ReflectionTestUtils.setField(s3Service, "s3Presigner", s3Presigner);
+        ReflectionTestUtils.setField(s3Service, "presignTtlSeconds", 300L);
+        when(s3AsyncClient.utilities()).thenReturn(S3Utilities.builder().region(Region.US_EAST_1).build());
+        s3Service.init();
+        when(s3AsyncClient.headObject(any(HeadObjectRequest.class)))
+                .thenReturn(CompletableFuture.failedFuture(NoSuchKeyException.builder().statusCode(404).build()));
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(CompletableFuture.completedFuture(PutObjectResponse.builder().eTag("put-etag").build()));
+        when(s3AsyncClient.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(CompleteMultipartUploadResponse.builder().eTag("multipart-etag").build()));
+        when(s3AsyncClient.abortMultipartUpload(any(AbortMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(AbortMultipartUploadResponse.builder().build()));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        s3Service.shutdown();
+        s3Presigner.close();
+    }
+
+    @Test
+    public void testUploadFile_SmallFileStreamsWithKnownLength() {
+        MockMultipartFile file = new MockMultipartFile("file", "me.png", "image/png", new byte[PART_SIZE]);
+
+        s3Service.uploadFile(file).join();
+
+        ArgumentCaptor<PutObjectRequest> request = ArgumentCaptor.forClass(PutObjectRequest.class);
+        ArgumentCaptor<AsyncRequestBody> body = ArgumentCaptor.forClass(AsyncRequestBody.class);
+        verify(s3AsyncClient).putObject(request.capture(), body.capture());
+        assertEquals(PART_SIZE, request.getValue().contentLength());
+        assertEquals("image/png", request.getValue().contentType());
+        assertEquals(PART_SIZE, body.getValue().contentLength().orElseThrow());
+        verify(s3AsyncClient, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
+
+    @Test
+    public void testUploadFile_NewContentIsStoredUnderItsHash() throws Exception {
+        byte[] content = "not seen before".getBytes();
+        MockMultipartFile file = new MockMultipartFile("file", "me.png", "image/png", content);
+
+        Map<String, Object> result = s3Service.uploadFile(file).join();
+
+        String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        assertEquals(hash, result.get("contentHash"));
+        assertEquals(false, result.get("deduplicated"));
+        assertEquals("image/png", result.get("contentType"));
+        assertEquals((long) content.length, result.get("size"));
+        assertEquals("put-etag", result.get("eTag"));
+        assertNotNull(result.get("lastModified"));
+        assertTrue(((String) result.get("fileUrl")).endsWith("/" + hash));
+
+        ArgumentCaptor<PutObjectRequest> request = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(s3AsyncClient).putObject(request.capture(), any(AsyncRequestBody.class));
+        assertEquals(hash, request.getValue().key());
+        assertEquals("max-age=31536000, immutable", request.getValue().cacheControl());
+        // The existence check is the only other request; nothing is read back after the PUT
+        verify(s3AsyncClient, times(1)).headObject(any(HeadObjectRequest.class));
+        verify(statsDClient).incrementCounter("api.s3.dedup.miss");
+    }
+
+    @Test
+    public void testUploadFile_StoredContentSkipsThePut() {
+        when(s3AsyncClient.headObject(any(HeadObjectRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(HeadObjectResponse.builder().eTag("stored-etag").build()));
+
+        Map<String, Object> result = s3Service.uploadFile(new MockMultipartFile("file", "avatar.png", "image/png", new byte[PART_SIZE])).join();
+
+        assertEquals(true, result.get("deduplicated"));
+        assertEquals("stored-etag", result.get("eTag"));
+        verify(s3AsyncClient, never()).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+        verify(s3AsyncClient, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+        verify(statsDClient).incrementCounter("api.s3.dedup.hit");
+        verify(statsDClient).count("api.s3.dedup.bytesSaved", PART_SIZE);
+    }
+
+    @Test
+    public void testUploadFile_FailedExistenceCheckFailsTheUpload() {
+        when(s3AsyncClient.headObject(any(HeadObjectRequest.class)))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("connection reset")));
+
+        CompletableFuture<Map<String, Object>> upload =
+                s3Service.uploadFile(new MockMultipartFile("file", "me.png", "image/png", new byte[PART_SIZE]));
+
+        assertThrows(CompletionException.class, upload::join);
+        verify(s3AsyncClient, never()).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+        verify(statsDClient).incrementCounter("api.s3.uploadFile.error");
+    }
+
+    @Test
+    public void testUploadFile_LargeFileGoesUpInParts() {
+        byte[] content = new byte[5 * PART_SIZE + 100];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        when(s3AsyncClient.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(CreateMultipartUploadResponse.builder().uploadId("upload-1").build()));
+        when(s3AsyncClient.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+            UploadPartRequest part = invocation.getArgument(0);
+            byte[] body = read(invocation.getArgument(1));
+            assertEquals(part.contentLength(), body.length);
+            assertEquals(content[(part.partNumber() - 1) * PART_SIZE], body[0]);
+            return CompletableFuture.completedFuture(UploadPartResponse.builder().eTag("etag-" + part.partNumber()).build());
+        });
+
+        Map<String, Object> result = s3Service.uploadFile(new MockMultipartFile("file", "big.png", "image/png", content)).join();
+
+        assertEquals("multipart-etag", result.get("eTag"));
+
+        ArgumentCaptor<CompleteMultipartUploadRequest> complete = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(s3AsyncClient).completeMultipartUpload(complete.capture());
+        List<CompletedPart> parts = complete.getValue().multipartUpload().parts();
+        assertEquals(6, parts.size());
+        assertEquals(6, parts.get(5).partNumber());
+        assertEquals("etag-6", parts.get(5).eTag());
+        verify(s3AsyncClient, never()).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+    }
+
+    @Test
+    public void testUploadFile_FailedPartAbortsUpload() {
+        when(s3AsyncClient.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(CreateMultipartUploadResponse.builder().uploadId("upload-1").build()));
+        when(s3AsyncClient.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("connection reset")));
+
+        CompletableFuture<Map<String, Object>> upload =
+                s3Service.uploadFile(new MockMultipartFile("file", "big.png", "image/png", new byte[8 * PART_SIZE]));
+
+        assertThrows(CompletionException.class, upload::join);
+        verify(s3AsyncClient).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(s3AsyncClient, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+        verify(statsDClient).incrementCounter("api.s3.uploadFile.error");
+    }
+
+    @Test
+    public void testPresignUpload_SignsTypeLengthAndChecksumWithoutARequest() {
+        String hash = "5e1f".repeat(16);
+
+        Map<String, Object> upload = s3Service.presignUpload(hash, "image/png", 2048);
+
+        String url = (String) upload.get("uploadUrl");
+        assertTrue(url.startsWith("https://bucket.s3.amazonaws.com/" + hash + "?"));
+        assertTrue(url.contains("X-Amz-Expires=300"));
+        assertEquals("PUT", upload.get("method"));
+        Map<String, String> headers = (Map<String, String>) upload.get("headers");
+        assertEquals("image/png", headers.get("Content-Type"));
+        assertEquals(Base64.getEncoder().encodeToString(HexFormat.of().parseHex(hash)), headers.get("x-amz-checksum-sha256"));
+        assertFalse(headers.containsKey("Host"));
+        // Signing is local; init() only borrowed the client's utilities
+        verify(s3AsyncClient, never()).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+        verify(s3AsyncClient, never()).headObject(any(HeadObjectRequest.class));
+    }
+
+    @Test
+    public void testDescribeObject_OneHead() {
+        Instant lastModified = Instant.parse("2026-01-01T00:00:00Z");
+        when(s3AsyncClient.headObject(any(HeadObjectRequest.class))).thenReturn(CompletableFuture.completedFuture(
+                HeadObjectResponse.builder().contentType("image/jpeg").contentLength(2048L).eTag("stored-etag").lastModified(lastModified).build()));
+
+        Map<String, Object> stored = s3Service.describeObject("5e1f").join();
+
+        assertEquals("https://bucket.s3.amazonaws.com/5e1f", stored.get("fileUrl"));
+        assertEquals("image/jpeg", stored.get("contentType"));
+        assertEquals(2048L, stored.get("size"));
+        assertEquals("stored-etag", stored.get("eTag"));
+        verify(s3AsyncClient, times(1)).headObject(any(HeadObjectRequest.class));
+    }
+
+    @Test
+    public void testDescribeObject_MissingObjectIsNull() {
+        assertNull(s3Service.describeObject("5e1f").join());
+    }
+
+    @Test
+    public void testDeleteFile_ReturnsBeforeS3AnswersAndTracksInFlight() {
+        CompletableFuture<DeleteObjectResponse> response = new CompletableFuture<>();
+        when(s3AsyncClient.deleteObject(any(DeleteObjectRequest.class))).thenReturn(response);
+
+        CompletableFuture<Void> deleted = s3Service.deleteFile("https://bucket.s3.amazonaws.com/1_me.png");
+
+        assertFalse(deleted.isDone());
+        assertEquals(1, s3Service.inFlight());
+        ArgumentCaptor<DeleteObjectRequest> request = ArgumentCaptor.forClass(DeleteObjectRequest.class);
+        verify(s3AsyncClient).deleteObject(request.capture());
+        assertEquals("1_me.png", request.getValue().key());
+
+        response.complete(DeleteObjectResponse.builder().build());
+
+        assertTrue(deleted.isDone());
+        assertEquals(0, s3Service.inFlight());
+        verify(statsDClient).recordGaugeValue("api.s3.inFlight", 1L);
+        verify(statsDClient).recordGaugeValue("api.s3.inFlight", 0L);
+    }
+
+    @Test
+    public void testDeleteObjects_OneQuietRequestReportsOnlyFailures() {
+        when(s3AsyncClient.deleteObjects(any(DeleteObjectsRequest.class))).thenReturn(CompletableFuture.completedFuture(
+                DeleteObjectsResponse.builder().errors(S3Error.builder().key("b.png").code("AccessDenied").build()).build()));
+
+        Map<String, String> failed = s3Service.deleteObjects(List.of("a.png", "b.png", "c.png")).join();
+
+        assertEquals(Map.of("b.png", "AccessDenied"), failed);
+        ArgumentCaptor<DeleteObjectsRequest> request = ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+        verify(s3AsyncClient).deleteObjects(request.capture());
+        assertEquals(3, request.getValue().delete().objects().size());
+        assertTrue(request.getValue().delete().quiet());
+    }
+
+    private static byte[] read(AsyncRequestBody body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        body.subscribe(new Subscriber<ByteBuffer>() {
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer buffer) {
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                out.writeBytes(bytes);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                done.completeExceptionally(t);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(null);
+            }
+        });
+        done.join();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,103 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import com.timgroup.statsd.NoOpStatsDClient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Compares per-upload latency of the original path (PUT followed by a HEAD for the
+ * metadata) with S3Service.uploadFile for new content (hash, HEAD miss, PUT) and for
+ * content that is already stored (hash, HEAD hit, no PUT) against a local S3 stand-in
+ * such as MinIO or LocalStack:
+ * {@code mvn test -Dtest=S3UploadLatencyBenchmark -Dbenchmark=true -Dbenchmark.s3.endpoint=http://localhost:9000
+ * -Dbenchmark.s3.bucket=bench -Dbenchmark.s3.accessKey=... -Dbenchmark.s3.secretKey=... [-Dbenchmark.uploads=500]}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class S3UploadLatencyBenchmark {
+
+    @Test
+    public void compareUploadPaths() throws Exception {
+        int uploads = Integer.getInteger("benchmark.uploads", 500);
+        String bucket = System.getProperty("benchmark.s3.bucket", "bench");
+        S3AsyncClient s3AsyncClient = S3AsyncClient.builder()
+                .endpointOverride(URI.create(System.getProperty("benchmark.s3.endpoint")))
+                .region(Region.US_EAST_1)
+                .forcePathStyle(true)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(
+                        System.getProperty("benchmark.s3.accessKey"), System.getProperty("benchmark.s3.secretKey"))))
+                .build();
+        try {
+            s3AsyncClient.headBucket(b -> b.bucket(bucket)).join();
+        } catch (CompletionException e) {
+            if (!(e.getCause() instanceof NoSuchBucketException)) {
+                throw e;
+            }
+            s3AsyncClient.createBucket(b -> b.bucket(bucket)).join();
+        }
+
+        S3Service s3Service = new S3Service();
+        ReflectionTestUtils.setField(s3Service, "s3AsyncClient", s3AsyncClient);
+        ReflectionTestUtils.setField(s3Service, "statsDClient", new NoOpStatsDClient());
+        ReflectionTestUtils.setField(s3Service, "bucketName", bucket);
+        ReflectionTestUtils.setField(s3Service, "objectCacheControl", "max-age=31536000, immutable");
+        ReflectionTestUtils.setField(s3Service, "multipartThreshold", 16L << 20);
+        ReflectionTestUtils.setField(s3Service, "partSize", 8 << 20);
+        ReflectionTestUtils.setField(s3Service, "bufferPoolSize", 4);
+        ReflectionTestUtils.setField(s3Service, "partParallelism", 2);
+        ReflectionTestUtils.setField(s3Service, "bufferWaitMillis", 5000L);
+        ReflectionTestUtils.setField(s3Service, "ioThreads", 4);
+        s3Service.init();
+
+        byte[] image = new byte[200 * 1024];
+        Arrays.fill(image, (byte) 7);
+        try {
+            long[] putPlusHead = new long[uploads];
+            long[] newContent = new long[uploads];
+            long[] repeatContent = new long[uploads];
+            for (int i = 0; i < uploads; i++) {
+                // Distinct bytes per iteration, so only the repeat below is a dedup hit
+                image[0] = (byte) i;
+                image[1] = (byte) (i >> 8);
+                image[2] = (byte) (i >> 16);
+                long start = System.nanoTime();
+                String key = "old-" + i + ".png";
+                s3AsyncClient.putObject(b -> b.bucket(bucket).key(key).contentType("image/png").contentLength((long) image.length),
+                        AsyncRequestBody.fromBytes(image)).join();
+                s3AsyncClient.headObject(b -> b.bucket(bucket).key(key)).join();
+                putPlusHead[i] = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                s3Service.uploadFile(new MockMultipartFile("file", "new-" + i + ".png", "image/png", image)).join();
+                newContent[i] = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                s3Service.uploadFile(new MockMultipartFile("file", "again-" + i + ".png", "image/png", image)).join();
+                repeatContent[i] = System.nanoTime() - start;
+            }
+            report("PUT + HEAD", putPlusHead);
+            report("new", newContent);
+            report("repeat", repeatContent);
+        } finally {
+            s3Service.shutdown();
+            s3AsyncClient.close();
+        }
+    }
+
+    private static void report(String label, long[] samples) {
+        Arrays.sort(samples);
+        System.out.printf("%-10s p50 %6.2f ms  p99 %6.2f ms%n", label,
+                samples[samples.length / 2] / 1e6, samples[(int) (samples.length * 0.99)] / 1e6);
+    }
+}
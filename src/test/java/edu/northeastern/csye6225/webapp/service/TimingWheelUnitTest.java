@@ -0,0 +1,58 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimingWheelUnitTest {
+
+    @Test
+    public void testAdvance_FiresItemsOnTheirTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 4, 0);
+        wheel.schedule("a", 250);
+        wheel.schedule("b", 520);
+        List<String> expired = new ArrayList<>();
+
+        wheel.advance(199, expired::add);
+        assertTrue(expired.isEmpty());
+
+        wheel.advance(200, expired::add);
+        assertEquals(List.of("a"), expired);
+
+        wheel.advance(500, expired::add);
+        assertEquals(List.of("a", "b"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testAdvance_CascadesFromHigherLevels() {
+        TimingWheel<Long> wheel = new TimingWheel<>(1, 3, 0);
+        long[] deadlines = {63, 64, 65, 130, 4095, 4096, 5000, 200_000};
+        for (long deadline : deadlines) {
+            wheel.schedule(deadline, deadline);
+        }
+
+        for (long deadline : deadlines) {
+            List<Long> expired = new ArrayList<>();
+            wheel.advance(deadline - 1, expired::add);
+            assertFalse(expired.contains(deadline), "fired early: " + deadline);
+            wheel.advance(deadline, expired::add);
+            assertTrue(expired.contains(deadline), "not fired: " + deadline);
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testSchedule_PastDeadlineFiresOnNextTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 2, 1000);
+        wheel.schedule("late", 500);
+        List<String> expired = new ArrayList<>();
+
+        wheel.advance(1010, expired::add);
+
+        assertEquals(List.of("late"), expired);
+    }
+}
@@ -0,0 +1,68 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenBucketRateLimiterUnitTest {
+
+    @Test
+    void testTryAcquire_StopsAtCapacity() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(3, 0, 100, 60);
+
+        assertTrue(limiter.tryAcquire("10.0.0.1"));
+        assertTrue(limiter.tryAcquire("10.0.0.1"));
+        assertTrue(limiter.tryAcquire("10.0.0.1"));
+        assertFalse(limiter.tryAcquire("10.0.0.1"));
+
+        // Other clients have their own bucket
+        assertTrue(limiter.tryAcquire("10.0.0.2"));
+    }
+
+    @Test
+    void testHasToken_DoesNotConsume() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 0, 100, 60);
+
+        assertTrue(limiter.hasToken("user@example.com"));
+        assertEquals(0, limiter.size());
+        assertTrue(limiter.tryAcquire("user@example.com"));
+        assertFalse(limiter.hasToken("user@example.com"));
+    }
+
+    @Test
+    void testTryAcquire_RefillsOverTime() throws InterruptedException {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 100, 100, 60);
+
+        assertTrue(limiter.tryAcquire("10.0.0.1"));
+        assertFalse(limiter.tryAcquire("10.0.0.1"));
+        Thread.sleep(50);
+        assertTrue(limiter.tryAcquire("10.0.0.1"));
+    }
+
+    @Test
+    void testTryAcquire_BoundedMemoryFallsBackToSharedBuckets() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 0, 2, 60);
+
+        assertTrue(limiter.tryAcquire("a"));
+        assertTrue(limiter.tryAcquire("b"));
+        limiter.tryAcquire("c");
+        limiter.tryAcquire("d");
+
+        assertEquals(2, limiter.size());
+    }
+
+    @Test
+    void testTryAcquire_FullMapWaitsForTheSweep() throws InterruptedException {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 1000, 1, 0);
+
+        assertTrue(limiter.tryAcquire("a"));
+        Thread.sleep(5);
+        // "a" is idle now, but a new key does not sweep the map itself
+        limiter.tryAcquire("b");
+        assertEquals(1, limiter.size());
+
+        assertEquals(1, limiter.evictIdle());
+        limiter.tryAcquire("b");
+        assertEquals(1, limiter.size());
+    }
+}
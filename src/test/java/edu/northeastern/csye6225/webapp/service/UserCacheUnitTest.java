@@ -0,0 +1,98 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import com.timgroup.statsd.StatsDClient;
+import edu.northeastern.csye6225.webapp.model.User;
+import edu.northeastern.csye6225.webapp.model.UserSnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class UserCacheUnitTest {
+
+    @Mock
+    private StatsDClient statsDClient;
+
+    private UserCache userCache;
+    private User user;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        userCache = new UserCache();
+        ReflectionTestUtils.setField(userCache, "statsDClient", statsDClient);
+        ReflectionTestUtils.setField(userCache, "ttlSeconds", 60L);
+        ReflectionTestUtils.setField(userCache, "maxEntries", 100);
+
+        user = new User();
+        user.setId(UUID.randomUUID());
+        user.setEmail("test@domain.com");
+        user.setFirstName("John");
+        user.setLastName("Doe");
+        user.setPassword("hash");
+    }
+
+    @Test
+    public void testGet_ConcurrentMissesLoadOnce() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<UserSnapshot>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> userCache.get("test@domain.com", email -> {
+                    loads.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return user;
+                })));
+            }
+            Thread.sleep(100);
+            release.countDown();
+
+            for (Future<UserSnapshot> result : results) {
+                assertEquals(user.getId(), result.get(5, TimeUnit.SECONDS).id());
+            }
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testEvict_NextReadReloads() {
+        AtomicInteger loads = new AtomicInteger();
+
+        userCache.get("test@domain.com", email -> { loads.incrementAndGet(); return user; });
+        userCache.get("test@domain.com", email -> { loads.incrementAndGet(); return user; });
+        assertEquals(1, loads.get());
+
+        userCache.evict("test@domain.com");
+        userCache.get("test@domain.com", email -> { loads.incrementAndGet(); return user; });
+        assertEquals(2, loads.get());
+        verify(statsDClient).incrementCounter("api.user.cache.eviction");
+    }
+
+    @Test
+    public void testGet_MissingUserIsNotCached() {
+        assertNull(userCache.get("missing@domain.com", email -> null));
+        assertEquals(0, userCache.size());
+    }
+}
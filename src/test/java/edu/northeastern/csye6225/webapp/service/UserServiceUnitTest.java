@@ -1,22 +1,48 @@
 package edu.northeastern.csye6225.webapp.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.timgroup.statsd.StatsDClient;
+import edu.northeastern.csye6225.webapp.Dao.ImageDao;
+import edu.northeastern.csye6225.webapp.Dao.OutboxMessageDao;
 import edu.northeastern.csye6225.webapp.Dao.UserDao;
-import edu.northeastern.csye6225.webapp.Dao.VerificationTokenDao;
+import edu.northeastern.csye6225.webapp.dto.ETags;
+import edu.northeastern.csye6225.webapp.dto.ImageDTO;
+import edu.northeastern.csye6225.webapp.dto.ImageVersion;
+import edu.northeastern.csye6225.webapp.dto.UserDTO;
+import edu.northeastern.csye6225.webapp.exception.PreconditionFailedException;
 import edu.northeastern.csye6225.webapp.exception.ResourceNotFoundException;
+import edu.northeastern.csye6225.webapp.exception.ServiceBusyException;
+import edu.northeastern.csye6225.webapp.model.Image;
+import edu.northeastern.csye6225.webapp.model.OutboxMessage;
 import edu.northeastern.csye6225.webapp.model.User;
 import edu.northeastern.csye6225.webapp.model.VerificationToken;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
 import jakarta.persistence.TypedQuery;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 import software.amazon.awssdk.services.sns.SnsClient;
 
+import java.time.Instant;
 import java.util.Date;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -39,17 +65,60 @@ public class UserServiceUnitTest {
     private StatsDClient statsDClient;
 
     @Mock
-    private VerificationTokenDao verificationTokenDao;
+    private VerificationTokenStore verificationTokenStore;
 
     @Mock
     private SnsClient snsClient;
 
+    @Mock
+    private OutboxMessageDao outboxMessageDao;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Mock
+    private CredentialCache credentialCache;
+
+    @Mock
+    private ReadYourWritesTracker readYourWritesTracker;
+
+    @Mock
+    private ImageDao imageDao;
+
+    @Mock
+    private S3Service s3Service;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private ObjectDeletionRelay objectDeletionRelay;
+
+    @Mock
+    private ImageVariantPipeline imageVariantPipeline;
+
+    private VerificationLinkSigner verificationLinkSigner;
+
     private User user;
 
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.openMocks(this);
+        UserCache userCache = new UserCache();
+        ReflectionTestUtils.setField(userCache, "statsDClient", statsDClient);
+        ReflectionTestUtils.setField(userCache, "ttlSeconds", 60L);
+        ReflectionTestUtils.setField(userCache, "maxEntries", 100);
+        ReflectionTestUtils.setField(userService, "userCache", userCache);
+        verificationLinkSigner = new VerificationLinkSigner();
+        ReflectionTestUtils.setField(verificationLinkSigner, "secret", "test-secret");
+        verificationLinkSigner.init();
+        ReflectionTestUtils.setField(userService, "verificationLinkSigner", verificationLinkSigner);
+        ReflectionTestUtils.setField(userService, "attachThreads", 2);
+        ReflectionTestUtils.setField(userService, "attachQueueCapacity", 4);
+        ReflectionTestUtils.setField(userService, "attachRetryAfterSeconds", 1L);
+        userService.init();
         user = new User();
+        user.setId(UUID.randomUUID());
         user.setEmail("test@domain.com");
         user.setFirstName("John");
         user.setLastName("Doe");
@@ -59,6 +128,11 @@ public class UserServiceUnitTest {
         //System.setProperty("metrics.enabled", "false");
     }
 
+    @AfterEach
+    public void tearDown() {
+        userService.shutdown();
+    }
+
     @Test
     public void testCreateUser_Success() {
         // Mock TypedQuery behavior
@@ -72,7 +146,7 @@ public class UserServiceUnitTest {
         // Mock verification token save behavior
         VerificationToken mockedToken = new VerificationToken();
         mockedToken.setToken("mockedToken");
-        when(verificationTokenDao.save(any(VerificationToken.class))).thenReturn(mockedToken);
+        when(verificationTokenStore.save(any(VerificationToken.class))).thenReturn(mockedToken);
 
         // Call the method under test
         userService.createUser(user);
@@ -80,7 +154,9 @@ public class UserServiceUnitTest {
         // Verify behaviors
         verify(entityManager, times(1)).persist(user);
         verify(statsDClient, atLeastOnce()).incrementCounter(anyString());
-        verify(verificationTokenDao, times(1)).save(any(VerificationToken.class)); // Ensure token is saved
+        verify(verificationTokenStore, times(1)).save(any(VerificationToken.class)); // Ensure token is saved
+        verify(outboxMessageDao, times(1)).save(any(OutboxMessage.class)); // Email is queued, not published inline
+        verifyNoInteractions(snsClient);
     }
 
     @Test
@@ -114,6 +190,40 @@ public class UserServiceUnitTest {
         verify(statsDClient, atLeastOnce()).incrementCounter(anyString());
     }
 
+    @Test
+    public void testFindByEmail_ServedFromCacheUntilUpdated() {
+        TypedQuery<User> mockedQuery = mock(TypedQuery.class);
+        when(mockedQuery.setParameter(anyString(), any())).thenReturn(mockedQuery);
+        when(mockedQuery.getSingleResult()).thenReturn(user);
+        when(entityManager.createQuery(anyString(), eq(User.class))).thenReturn(mockedQuery);
+
+        User first = userService.findByEmail("test@domain.com");
+        first.setFirstName("Changed");
+        User second = userService.findByEmail("test@domain.com");
+
+        // Callers get detached copies, so the mutation above never reaches the cache
+        assertEquals("John", second.getFirstName());
+        verify(mockedQuery, times(1)).getSingleResult();
+
+        when(userDao.findByEmail(anyString())).thenReturn(user);
+        when(entityManager.merge(any(User.class))).thenReturn(user);
+        userService.updateUser(user);
+
+        userService.findByEmail("test@domain.com");
+        verify(mockedQuery, times(2)).getSingleResult();
+    }
+
+    @Test
+    public void testFindUserDTO_UsesProjectionWithoutLoadingEntity() {
+        UUID id = UUID.randomUUID();
+        UserDTO projected = new UserDTO(id, "test@domain.com", "John", "Doe", new Date(), new Date(), true);
+        when(userDao.findDtoById(id)).thenReturn(projected);
+
+        assertSame(projected, userService.findUserDTO(id));
+        verify(userDao, never()).findByEmail(anyString());
+        verify(entityManager, never()).createQuery(anyString(), eq(User.class));
+    }
+
     @Test
     public void testUpdateUser_Success() {
         when(userDao.findByEmail(anyString())).thenReturn(user);
@@ -132,6 +242,7 @@ public class UserServiceUnitTest {
         User updatedUser = userService.updateUser(user);
 
         verify(entityManager, times(1)).merge(user);
+        verify(credentialCache, atLeastOnce()).invalidate("test@domain.com");
         verify(statsDClient, atLeastOnce()).incrementCounter(anyString());
         assertNotNull(updatedUser);
         assertEquals("Jane", updatedUser.getFirstName());
@@ -148,4 +259,359 @@ public class UserServiceUnitTest {
         });
         verify(statsDClient, atLeastOnce()).incrementCounter(anyString());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testVerifyUser_ForgedOrMismatchedLinkNeverQueries() {
+        String token = verificationLinkSigner.sign(user.getId(), user.getEmail(), Instant.now().plusSeconds(120));
+
+        assertThrows(ResourceNotFoundException.class, () -> userService.verifyUser(token, "other@domain.com"));
+        assertThrows(ResourceNotFoundException.class, () -> userService.verifyUser(token + "x", user.getEmail()));
+        assertThrows(ResourceNotFoundException.class, () -> userService.verifyUser(UUID.randomUUID().toString(), user.getEmail()));
+
+        verifyNoInteractions(verificationTokenStore, userDao);
+    }
+
+    @Test
+    public void testVerifyUser_ExpiredLinkNeverQueries() {
+        String token = verificationLinkSigner.sign(user.getId(), user.getEmail(), Instant.now().minusSeconds(1));
+
+        ResourceNotFoundException e = assertThrows(ResourceNotFoundException.class, () -> userService.verifyUser(token, user.getEmail()));
+
+        assertEquals("Token has expired. Please re-register.", e.getMessage());
+        verifyNoInteractions(verificationTokenStore, userDao);
+    }
+
+    @Test
+    public void testVerifyUser_ValidLinkMarksUserVerified() {
+        String token = verificationLinkSigner.sign(user.getId(), user.getEmail(), Instant.now().plusSeconds(120));
+        VerificationToken stored = new VerificationToken();
+        stored.setUser(user);
+        stored.setToken(token);
+        stored.setExpiry(Instant.now().plusSeconds(120));
+        when(verificationTokenStore.findByToken(token)).thenReturn(Optional.of(stored));
+        when(userDao.findById(user.getId())).thenReturn(Optional.of(user));
+
+        assertTrue(userService.verifyUser(token, "TEST@domain.com"));
+
+        assertTrue(user.isVerified());
+        verify(userDao).save(user);
+    }
+
+    @Test
+    public void testUpdateUser_StaleIfMatchIsRejected() {
+        user.setAccountUpdated(new Date(1_000L));
+        when(userDao.findByEmail("test@domain.com")).thenReturn(user);
+        String staleETag = ETags.forUser(user.getId(), 500L);
+
+        assertThrows(PreconditionFailedException.class, () -> userService.updateUser(user, staleETag));
+
+        verify(entityManager).refresh(user, LockModeType.PESSIMISTIC_WRITE);
+        verify(entityManager, never()).merge(any(User.class));
+    }
+
+    @Test
+    public void testUpdateUser_CurrentIfMatchIsApplied() {
+        user.setAccountUpdated(new Date(1_000L));
+        when(userDao.findByEmail("test@domain.com")).thenReturn(user);
+        when(entityManager.merge(user)).thenReturn(user);
+
+        userService.updateUser(user, ETags.forUser(user.getId(), 1_000L));
+
+        verify(entityManager).merge(user);
+    }
+
+    @Test
+    public void testFindUserETag_ServedFromUserCache() {
+        TypedQuery<User> query = mock(TypedQuery.class);
+        when(query.setParameter(anyString(), any())).thenReturn(query);
+        when(query.getSingleResult()).thenReturn(user);
+        when(entityManager.createQuery(anyString(), eq(User.class))).thenReturn(query);
+
+        String first = userService.findUserETag("test@domain.com");
+        String second = userService.findUserETag("test@domain.com");
+
+        assertEquals(ETags.forUser(user.getId(), user.getAccountUpdated().getTime()), first);
+        assertEquals(first, second);
+        verify(query, times(1)).getSingleResult();
+    }
+
+    @Test
+    public void testFindProfileImageETag_MatchesFullProjectionWithoutReadingIt() {
+        UUID imageId = UUID.randomUUID();
+        Date uploaded = new Date();
+        Map<String, String> variants = Map.of("thumb", "https://bucket.s3.amazonaws.com/5e1f.thumb.jpg");
+        when(imageDao.findVersionByUserId(user.getId())).thenReturn(new ImageVersion(imageId, uploaded, variants));
+
+        String etag = userService.findProfileImageETag(user.getId());
+
+        assertEquals(ETags.forImage(new ImageDTO("me.png", imageId, "https://bucket.s3.amazonaws.com/5e1f", uploaded, user.getId(), variants)), etag);
+        verify(imageDao, never()).findDtoByUserId(any());
+    }
+
+    @Test
+    public void testFindProfileImageETag_NoPicture() {
+        assertNull(userService.findProfileImageETag(user.getId()));
+    }
+
+    @Test
+    public void testUpdateUserProfilePicture_UnknownUserSkipsUpload() {
+        when(userDao.existsByEmail("test@domain.com")).thenReturn(false);
+
+        CompletableFuture<ImageDTO> upload = userService.updateUserProfilePicture("test@domain.com", picture());
+
+        CompletionException e = assertThrows(CompletionException.class, upload::join);
+        assertInstanceOf(ResourceNotFoundException.class, e.getCause());
+        verify(s3Service, never()).uploadFile(any());
+    }
+
+    @Test
+    public void testUpdateUserProfilePicture_SavesImageAfterUpload() {
+        String fileUrl = "https://bucket.s3.amazonaws.com/1_me.png";
+        when(userDao.existsByEmail("test@domain.com")).thenReturn(true);
+        when(userDao.findByEmail("test@domain.com")).thenReturn(user);
+        when(s3Service.uploadFile(any())).thenReturn(CompletableFuture.completedFuture(Map.of("fileUrl", fileUrl)));
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
+
+        ImageDTO imageDTO = userService.updateUserProfilePicture("test@domain.com", picture()).join();
+
+        assertEquals(fileUrl, imageDTO.getUrl());
+        verify(imageDao).save(any(Image.class));
+        verify(imageVariantPipeline).submit(any(), eq(fileUrl), any(), any());
+        verify(s3Service, never()).deleteFile(anyString());
+    }
+
+    @Test
+    public void testUpdateUserProfilePicture_DatabaseStepRunsOffS3CompletionThread() {
+        String fileUrl = "https://bucket.s3.amazonaws.com/1_me.png";
+        when(userDao.existsByEmail("test@domain.com")).thenReturn(true);
+        when(userDao.findByEmail("test@domain.com")).thenReturn(user);
+        when(s3Service.uploadFile(any())).thenReturn(CompletableFuture.completedFuture(Map.of("fileUrl", fileUrl)));
+        String[] transactionThread = new String[1];
+        when(transactionTemplate.execute(any())).thenAnswer(invocation -> {
+            transactionThread[0] = Thread.currentThread().getName();
+            return ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null);
+        });
+
+        userService.updateUserProfilePicture("test@domain.com", picture()).join();
+
+        assertTrue(transactionThread[0].startsWith("image-attach-"), transactionThread[0]);
+    }
+
+    @Test
+    public void testUpdateUserProfilePicture_FullAttachPoolIsBusyAndQueuesObject() {
+        String fileUrl = "https://bucket.s3.amazonaws.com/5e1f";
+        userService.shutdown();
+        when(userDao.existsByEmail("test@domain.com")).thenReturn(true);
+        when(s3Service.uploadFile(any())).thenReturn(CompletableFuture.completedFuture(Map.of("fileUrl", fileUrl, "contentHash", "5e1f")));
+        when(s3Service.keyOf(fileUrl)).thenReturn("5e1f");
+        doAnswer(invocation -> {
+            ((Consumer<TransactionStatus>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        CompletableFuture<ImageDTO> upload = userService.updateUserProfilePicture("test@domain.com", picture());
+
+        CompletionException e = assertThrows(CompletionException.class, upload::join);
+        assertInstanceOf(ServiceBusyException.class, e.getCause());
+        verify(objectDeletionRelay).enqueueIfUnreferenced("5e1f", "5e1f");
+        verify(statsDClient).incrementCounter("api.user.attach.rejected");
+    }
+
+    @Test
+    public void testUpdateUserProfilePicture_RepeatedContentReusesVariants() {
+        String fileUrl = "https://bucket.s3.amazonaws.com/5e1f";
+        Image earlier = new Image();
+        earlier.setVariants(Map.of("thumb", fileUrl + ".thumb.jpg"));
+        when(userDao.existsByEmail("test@domain.com")).thenReturn(true);
+        when(userDao.findByEmail("test@domain.com")).thenReturn(user);
+        when(s3Service.uploadFile(any())).thenReturn(CompletableFuture.completedFuture(
+                Map.of("fileUrl", fileUrl, "contentHash", "5e1f", "deduplicated", true)));
+        when(imageDao.findFirstByContentHash("5e1f")).thenReturn(Optional.of(earlier));
+        when(s3Service.describeObject("5e1f")).thenReturn(CompletableFuture.completedFuture(Map.of("fileUrl", fileUrl)));
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
+
+        ImageDTO imageDTO = userService.updateUserProfilePicture("test@domain.com", picture()).join();
+
+        assertEquals(fileUrl + ".thumb.jpg", imageDTO.getVariants().get("thumb"));
+        assertEquals("5e1f", user.getProfileImage().getContentHash());
+        verify(objectDeletionRelay).cancelPending("5e1f");
+        verify(objectDeletionRelay).confirmRevived(eq("5e1f"), any());
+        verify(imageVariantPipeline, never()).submit(any(), any(), any(), any());
+    }
+
+    @Test
+    public void testUpdateUserProfilePicture_ObjectDrainedBeforeLockIsBusy() {
+        String fileUrl = "https://bucket.s3.amazonaws.com/5e1f";
+        when(userDao.existsByEmail("test@domain.com")).thenReturn(true);
+        when(userDao.findByEmail("test@domain.com")).thenReturn(user);
+        when(s3Service.uploadFile(any())).thenReturn(CompletableFuture.completedFuture(
+                Map.of("fileUrl", fileUrl, "contentHash", "5e1f", "deduplicated", true)));
+        when(s3Service.keyOf(fileUrl)).thenReturn("5e1f");
+        // The relay deleted the object after the upload's HEAD and settled before the row lock was taken
+        when(s3Service.describeObject("5e1f")).thenReturn(CompletableFuture.completedFuture(null));
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
+
+        CompletableFuture<ImageDTO> upload = userService.updateUserProfilePicture("test@domain.com", picture());
+
+        CompletionException e = assertThrows(CompletionException.class, upload::join);
+        assertInstanceOf(ServiceBusyException.class, e.getCause());
+        verify(imageDao, never()).save(any(Image.class));
+        verify(objectDeletionRelay, never()).confirmRevived(anyString(), any());
+    }
+
+    @Test
+    public void testUpdateUserProfilePicture_HeadRunsOutsideTransactions() {
+        String fileUrl = "https://bucket.s3.amazonaws.com/5e1f";
+        AtomicBoolean inTransaction = new AtomicBoolean();
+        when(userDao.existsByEmail("test@domain.com")).thenReturn(true);
+        when(userDao.findByEmail("test@domain.com")).thenReturn(user);
+        when(s3Service.uploadFile(any())).thenReturn(CompletableFuture.completedFuture(
+                Map.of("fileUrl", fileUrl, "contentHash", "5e1f", "deduplicated", true)));
+        when(s3Service.describeObject("5e1f")).thenAnswer(invocation -> {
+            assertFalse(inTransaction.get(), "HEAD sent with a transaction open");
+            return CompletableFuture.completedFuture(Map.of("fileUrl", fileUrl));
+        });
+        when(transactionTemplate.execute(any())).thenAnswer(invocation -> {
+            inTransaction.set(true);
+            try {
+                return ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null);
+            } finally {
+                inTransaction.set(false);
+            }
+        });
+
+        userService.updateUserProfilePicture("test@domain.com", picture()).join();
+
+        verify(s3Service).describeObject("5e1f");
+        verify(transactionTemplate, times(2)).execute(any());
+    }
+
+    @Test
+    public void testUpdateUserProfilePicture_FailedSaveQueuesUploadedObject() {
+        String fileUrl = "https://bucket.s3.amazonaws.com/5e1f";
+        when(userDao.existsByEmail("test@domain.com")).thenReturn(true);
+        when(s3Service.uploadFile(any())).thenReturn(CompletableFuture.completedFuture(Map.of("fileUrl", fileUrl, "contentHash", "5e1f")));
+        when(s3Service.keyOf(fileUrl)).thenReturn("5e1f");
+        when(transactionTemplate.execute(any())).thenThrow(new IllegalStateException("Deadlock found"));
+        doAnswer(invocation -> {
+            ((Consumer<TransactionStatus>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        CompletableFuture<ImageDTO> upload = userService.updateUserProfilePicture("test@domain.com", picture());
+
+        assertThrows(CompletionException.class, upload::join);
+        // Another image may share the object, so it is never deleted directly
+        verify(objectDeletionRelay).enqueueIfUnreferenced("5e1f", "5e1f");
+        verify(s3Service, never()).deleteFile(anyString());
+        verify(statsDClient).incrementCounter("api.user.updateProfilePicture.discarded");
+    }
+
+    @Test
+    public void testPresignProfilePictureUpload_QueuesReferenceCheckForAbandonedUploads() {
+        when(s3Service.describeObject("5e1f")).thenReturn(CompletableFuture.completedFuture(null));
+        when(s3Service.presignUpload("5e1f", "image/png", 2048L)).thenReturn(Map.of("uploadUrl", "https://bucket.s3.amazonaws.com/5e1f?X-Amz-Signature=x"));
+        doAnswer(invocation -> {
+            ((Consumer<TransactionStatus>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        Map<String, Object> upload = userService.presignProfilePictureUpload("5e1f", "image/png", 2048L).join();
+
+        assertEquals("https://bucket.s3.amazonaws.com/5e1f?X-Amz-Signature=x", upload.get("uploadUrl"));
+        assertEquals(false, upload.get("alreadyUploaded"));
+        // At most one waiting check per hash, however often the URL is requested
+        verify(objectDeletionRelay).ensureQueuedIfUnreferenced("5e1f", "5e1f");
+        verify(objectDeletionRelay, never()).enqueueIfUnreferenced(anyString(), anyString());
+        verify(s3Service, never()).uploadFile(any());
+    }
+
+    @Test
+    public void testPresignProfilePictureUpload_StoredContentSkipsTheUpload() {
+        when(s3Service.describeObject("5e1f")).thenReturn(CompletableFuture.completedFuture(Map.of("fileUrl", "https://bucket.s3.amazonaws.com/5e1f")));
+
+        Map<String, Object> upload = userService.presignProfilePictureUpload("5e1f", "image/png", 2048L).join();
+
+        assertEquals(true, upload.get("alreadyUploaded"));
+        assertFalse(upload.containsKey("uploadUrl"));
+        verify(s3Service, never()).presignUpload(anyString(), anyString(), anyLong());
+        verifyNoInteractions(objectDeletionRelay);
+    }
+
+    @Test
+    public void testCompleteProfilePictureUpload_SavesImageOnceObjectIsConfirmed() {
+        String fileUrl = "https://bucket.s3.amazonaws.com/5e1f";
+        when(userDao.existsByEmail("test@domain.com")).thenReturn(true);
+        when(userDao.findByEmail("test@domain.com")).thenReturn(user);
+        when(s3Service.describeObject("5e1f")).thenReturn(CompletableFuture.completedFuture(Map.of("fileUrl", fileUrl)));
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
+
+        ImageDTO imageDTO = userService.completeProfilePictureUpload("test@domain.com", "5e1f", "me.png").join();
+
+        assertEquals(fileUrl, imageDTO.getUrl());
+        assertEquals("me.png", imageDTO.getFileName());
+        assertEquals("5e1f", user.getProfileImage().getContentHash());
+        // Once to find the upload, once more under the row lock before committing
+        verify(s3Service, times(2)).describeObject("5e1f");
+        verify(objectDeletionRelay).cancelPending("5e1f");
+        verify(s3Service, never()).uploadFile(any());
+    }
+
+    @Test
+    public void testCompleteProfilePictureUpload_NothingUploadedIsNotFound() {
+        when(userDao.existsByEmail("test@domain.com")).thenReturn(true);
+        when(s3Service.describeObject("5e1f")).thenReturn(CompletableFuture.completedFuture(null));
+
+        CompletableFuture<ImageDTO> completion = userService.completeProfilePictureUpload("test@domain.com", "5e1f", "me.png");
+
+        CompletionException e = assertThrows(CompletionException.class, completion::join);
+        assertInstanceOf(ResourceNotFoundException.class, e.getCause());
+        verify(imageDao, never()).save(any(Image.class));
+    }
+
+    @Test
+    public void testDeleteUserProfilePicture_QueuesObjectWithoutCallingS3() {
+        Image image = new Image();
+        image.setUrl("https://bucket.s3.amazonaws.com/1_me.png");
+        user.setProfileImage(image);
+        when(userDao.findByEmail("test@domain.com")).thenReturn(user);
+        when(s3Service.keyOf(image.getUrl())).thenReturn("1_me.png");
+
+        userService.deleteUserProfilePicture("test@domain.com");
+
+        verify(objectDeletionRelay).enqueue("1_me.png");
+        verify(imageDao).delete(image);
+        assertNull(user.getProfileImage());
+        verify(s3Service, never()).deleteFile(anyString());
+    }
+
+    @Test
+    public void testDeleteUserProfilePicture_SharedObjectIsLeftToTheRelaysReferenceCheck() {
+        Image image = new Image();
+        image.setUrl("https://bucket.s3.amazonaws.com/5e1f");
+        image.setContentHash("5e1f");
+        image.setVariants(Map.of("thumb", "https://bucket.s3.amazonaws.com/5e1f.thumb.jpg"));
+        user.setProfileImage(image);
+        when(userDao.findByEmail("test@domain.com")).thenReturn(user);
+        when(s3Service.keyOf(anyString())).thenAnswer(invocation -> {
+            String url = invocation.getArgument(0);
+            return url.substring(url.lastIndexOf('/') + 1);
+        });
+
+        userService.deleteUserProfilePicture("test@domain.com");
+
+        verify(objectDeletionRelay).enqueueIfUnreferenced("5e1f", "5e1f");
+        verify(objectDeletionRelay).enqueueIfUnreferenced("5e1f.thumb.jpg", "5e1f");
+        verify(objectDeletionRelay, never()).enqueue(anyString());
+        verify(objectDeletionRelay, never()).cancelPending(anyString());
+        verify(imageDao).delete(image);
+    }
+
+    private static MockMultipartFile picture() {
+        return new MockMultipartFile("file", "me.png", "image/png", new byte[16]);
+    }
+}
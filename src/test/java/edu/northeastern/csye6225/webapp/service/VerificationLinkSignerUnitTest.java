@@ -0,0 +1,52 @@
+package edu.northeastern.csye6225.webapp.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VerificationLinkSignerUnitTest {
+
+    private VerificationLinkSigner newSigner(String secret, String... profiles) {
+        VerificationLinkSigner signer = new VerificationLinkSigner();
+        MockEnvironment environment = new MockEnvironment();
+        environment.setActiveProfiles(profiles);
+        ReflectionTestUtils.setField(signer, "environment", environment);
+        ReflectionTestUtils.setField(signer, "secret", secret);
+        return signer;
+    }
+
+    @Test
+    public void testInit_MissingSecretFailsStartup() {
+        VerificationLinkSigner signer = newSigner("");
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, signer::init);
+        assertTrue(e.getMessage().contains("VERIFICATION_TOKEN_SECRET"));
+    }
+
+    @Test
+    public void testInit_MissingSecretAllowedInTestProfile() {
+        VerificationLinkSigner signer = newSigner("", "test");
+        signer.init();
+
+        UUID userId = UUID.randomUUID();
+        String token = signer.sign(userId, "test@domain.com", Instant.now().plusSeconds(60));
+        assertEquals(userId, signer.parse(token, "test@domain.com").userId());
+    }
+
+    @Test
+    public void testSign_SameSecretVerifiesOnAnotherNode() {
+        VerificationLinkSigner issuer = newSigner("shared-secret");
+        VerificationLinkSigner verifier = newSigner("shared-secret");
+        issuer.init();
+        verifier.init();
+
+        UUID userId = UUID.randomUUID();
+        String token = issuer.sign(userId, "test@domain.com", Instant.now().plusSeconds(60));
+        assertEquals(userId, verifier.parse(token, "test@domain.com").userId());
+    }
+}